@@ -0,0 +1,100 @@
+package emulator;
+
+import game.Level;
+import org.openjdk.jmh.annotations.*;
+import util.TreeNode;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moving around a 50k tick rewind history. The history has two branches
+ * that share their first 49000 ticks, each ending at tick 50000, with
+ * savestates at the end of both and at tick 25000, and the last savestate
+ * restored was on another branch.
+ * <p>
+ * Baseline (JDK 17, a single core), in microseconds, with the history
+ * walked as linked lists and then indexed by depth:
+ * <pre>
+ *   Benchmark        Linked list    By depth
+ *   chipHistory           ~1990         ~39
+ *   depth                  ~260      ~0.001
+ *   jumpToTick              ~34      ~0.010
+ *   restoreOnBranch        ~900         ~11
+ *   switchBranch          ~1520         ~41
+ *   truncate               ~790         ~31
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+
+    private static final int TICKS = 50000, BRANCH = 49000, MIDDLE = 25000;
+    private static final int FIRST_END = 1, SECOND_END = 2, MIDDLE_KEY = 3;
+
+    private final SuperCC emulator = new SuperCC(false);
+    private SavestateManager manager;
+    private Level level;
+    private int jump;
+
+    @Setup
+    public void setup() {
+        emulator.openLevelset(new File("./testData/sets/CCLP1.DAT"));
+        manager = emulator.getSavestates();
+        level = emulator.getLevel();
+        for (int i = 0; i < TICKS; i++)
+            manager.addRewindState(level, SuperCC.WAIT);
+        manager.addSavestate(FIRST_END);
+        manager.playbackRewind(MIDDLE);
+        manager.addSavestate(MIDDLE_KEY);
+        manager.playbackRewind(BRANCH);
+        for (int i = BRANCH; i < TICKS; i++)
+            manager.addRewindState(level, SuperCC.WAIT);
+        manager.addSavestate(SECOND_END);
+        manager.load(FIRST_END, level);
+        manager.load(SECOND_END, level);
+    }
+
+    @Benchmark
+    public int depth() {
+        return manager.getNode().depth();
+    }
+
+    @Benchmark
+    public TreeNode<byte[]> jumpToTick() {
+        jump = (jump + 7919) % TICKS;
+        manager.playbackRewind(jump);
+        return manager.getNode();
+    }
+
+    /** Restores the savestate in the middle and the one at the end of the current branch. */
+    @Benchmark
+    public boolean restoreOnBranch() {
+        return manager.load(MIDDLE_KEY, level) & manager.load(SECOND_END, level);
+    }
+
+    /** Restores the savestate at the end of the other branch and back again. */
+    @Benchmark
+    public boolean switchBranch() {
+        return manager.load(FIRST_END, level) & manager.load(SECOND_END, level);
+    }
+
+    /** Restores the end of the branch, then rewinds 1000 ticks and makes a move, cutting off the ticks after it. */
+    @Benchmark
+    public TreeNode<byte[]> truncate() {
+        manager.load(SECOND_END, level);
+        manager.playbackRewind(BRANCH);
+        manager.addRewindState(level, SuperCC.WAIT);
+        return manager.getNode();
+    }
+
+    @Benchmark
+    public List<?> chipHistory() {
+        return manager.getChipHistory();
+    }
+}
@@ -0,0 +1,57 @@
+package emulator;
+
+import game.Level;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A level of one of the test levelsets together with its solution from the
+ * matching public TWS file, used as a fixed workload by the benchmarks.
+ * Replays are named {@code LEVELSET:LEVEL}, e.g. {@code CCLP1-Lynx:118},
+ * and read from testData, so the benchmarks have to be run from the project
+ * root.
+ */
+public class Replay {
+
+    public final SuperCC emulator = new SuperCC(false);
+    public final File levelset;
+    public final File tws;
+    public final int levelNumber;
+    public final Solution solution;
+    private final byte[] start;
+
+    public Replay(String replay) throws IOException {
+        int colon = replay.indexOf(':');
+        String name = replay.substring(0, colon);
+        levelNumber = Integer.parseInt(replay.substring(colon + 1));
+        levelset = new File("./testData/sets/" + name + ".DAT");
+        tws = new File("./testData/tws/public_" + name.replace("-Lynx", "-lynx") + ".dac.tws");
+        emulator.openLevelset(levelset);
+        emulator.setTWSFile(tws);
+        emulator.loadLevel(levelNumber);
+        solution = emulator.twsReader.readSolution(emulator.getLevel());
+        emulator.loadLevel(levelNumber, solution.rngSeed, solution.step, false, solution.ruleset,
+                solution.initialSlide);
+        start = getLevel().save();
+    }
+
+    public Level getLevel() {
+        return emulator.getLevel();
+    }
+
+    /** Puts the level back to its first tick. */
+    public void restart() {
+        getLevel().load(start);
+    }
+
+    /**
+     * Replays the whole solution from the first tick.
+     * @return The number of ticks played.
+     */
+    public int play() {
+        restart();
+        solution.loadMoves(emulator, TickFlags.LIGHT, false);
+        return getLevel().getTickNumber();
+    }
+}
@@ -0,0 +1,59 @@
+package emulator;
+
+import org.openjdk.jmh.annotations.*;
+import util.CharList;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting solutions between the formats SuperCC stores and reads them in:
+ * the move list of the savestate manager into basic moves, and the JSON
+ * used by solution files and the clipboard.
+ * <p>
+ * Baseline (JDK 17, a single core):
+ * <pre>
+ *   Replay             succToBasic     toJSON      fromJSON
+ *   CCLP1:118             ~5.5us       ~11us         ~16us
+ *   CCLP1-Lynx:118         ~13us       ~93us         ~25us
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolutionBenchmark {
+
+    @Param({"CCLP1:118", "CCLP1-Lynx:118"})
+    public String replay;
+
+    private Solution solution;
+    private CharList succMoves;
+    private String json;
+
+    @Setup
+    public void setup() throws IOException {
+        Replay level = new Replay(replay);
+        solution = level.solution;
+        level.solution.load(level.emulator, TickFlags.PRELOADING);
+        succMoves = level.emulator.getSavestates().getMoveList();
+        json = solution.toString();
+    }
+
+    @Benchmark
+    public Solution succToBasic() {
+        return new Solution(succMoves, solution.rngSeed, solution.step, solution.ruleset, solution.initialSlide);
+    }
+
+    @Benchmark
+    public String toJSON() {
+        return solution.toString();
+    }
+
+    @Benchmark
+    public Solution fromJSON() {
+        return Solution.fromJSON(json);
+    }
+}
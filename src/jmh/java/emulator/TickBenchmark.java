@@ -0,0 +1,60 @@
+package emulator;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tick throughput of both rulesets, replaying fixed solutions with
+ * {@link TickFlags#LIGHT} from the first tick. The score is replays per
+ * second, the secondary ticks score is ticks per second.
+ * <p>
+ * The replays are the first level of CHIPS, which has no monsters, and
+ * Runaway Train, which clones well over a hundred.
+ * <p>
+ * Baseline (JDK 17, a single core):
+ * <pre>
+ *   Replay             Replays/s     Ticks/s
+ *   CHIPS:1              ~70000      ~12.5M
+ *   CCLP1:118               ~68      ~66000
+ *   CHIPS-Lynx:1         ~35000      ~12.7M
+ *   CCLP1-Lynx:118          ~43      ~88000
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TickBenchmark {
+
+    @Param({"CHIPS:1", "CCLP1:118", "CHIPS-Lynx:1", "CCLP1-Lynx:118"})
+    public String replay;
+
+    private Replay level;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Ticks {
+        public long ticks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            ticks = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        level = new Replay(replay);
+    }
+
+    @Benchmark
+    public int tick(Ticks ticks) {
+        int played = level.play();
+        ticks.ticks += played;
+        return played;
+    }
+}
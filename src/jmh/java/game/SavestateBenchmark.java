@@ -0,0 +1,69 @@
+package game;
+
+import emulator.Replay;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving, loading and hashing the state at the end of a replay, which the
+ * savestate manager and the search tools do on every move they try.
+ * <p>
+ * Baseline (JDK 17, a single core):
+ * <pre>
+ *   Replay             save    saveInto      load    stateHash
+ *   CHIPS:1          ~550ns       ~80ns    ~190ns        ~90ns
+ *   CCLP1:118        ~1.5us      ~850ns    ~5.0us       ~1.3us
+ *   CHIPS-Lynx:1     ~730ns      ~730ns    ~960ns        ~80ns
+ *   CCLP1-Lynx:118   ~2.2us      ~1.7us    ~3.6us       ~1.1us
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SavestateBenchmark {
+
+    @Param({"CHIPS:1", "CCLP1:118", "CHIPS-Lynx:1", "CCLP1-Lynx:118"})
+    public String replay;
+
+    private Level level;
+    private byte[] savestate;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        Replay r = new Replay(replay);
+        r.play();
+        level = r.getLevel();
+        savestate = level.save();
+        buffer = ByteBuffer.allocate(level.savestateSize());
+    }
+
+    @Benchmark
+    public byte[] save() {
+        return level.save();
+    }
+
+    @Benchmark
+    public ByteBuffer saveInto() {
+        buffer.clear();
+        level.saveInto(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Level load() {
+        level.load(savestate);
+        return level;
+    }
+
+    @Benchmark
+    public long stateHash() {
+        return level.stateHash();
+    }
+}
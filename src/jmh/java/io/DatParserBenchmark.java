@@ -0,0 +1,53 @@
+package io;
+
+import game.Direction;
+import game.Level;
+import game.Ruleset;
+import game.Step;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a level out of a levelset, which happens every time a level is
+ * loaded or restarted. After the first iteration the level comes from the
+ * parser's cache, so this measures restarting a level.
+ * <p>
+ * Baseline (JDK 17, a single core, before levels were cached):
+ * <pre>
+ *   CCLP1:1            ~170us
+ *   CCLP1:149          ~760us
+ *   CCLP1-Lynx:149     ~580us
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatParserBenchmark {
+
+    @Param({"CCLP1:1", "CCLP1:149", "CCLP1-Lynx:149"})
+    public String level;
+
+    private DatParser parser;
+    private int levelNumber;
+    private Ruleset ruleset;
+
+    @Setup
+    public void setup() throws IOException {
+        int colon = level.indexOf(':');
+        String name = level.substring(0, colon);
+        levelNumber = Integer.parseInt(level.substring(colon + 1));
+        ruleset = name.endsWith("-Lynx") ? Ruleset.LYNX : Ruleset.MS;
+        parser = new DatParser(new File("./testData/sets/" + name + ".DAT"));
+    }
+
+    @Benchmark
+    public Level parseLevel() throws IOException {
+        return parser.parseLevel(levelNumber, 0, Step.EVEN, ruleset, Direction.UP);
+    }
+}
@@ -0,0 +1,48 @@
+package io;
+
+import emulator.Replay;
+import emulator.Solution;
+import game.Level;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a solution out of a TWS file, including finding it in the file and
+ * converting its moves into basic moves. Solutions late in the file have to be
+ * searched for past all the earlier ones.
+ * <p>
+ * Baseline (JDK 17, a single core):
+ * <pre>
+ *   CCLP1:1             ~90us
+ *   CCLP1:149          ~1.7ms
+ *   CCLP1-Lynx:149     ~1.7ms
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TWSReaderBenchmark {
+
+    @Param({"CCLP1:1", "CCLP1:149", "CCLP1-Lynx:149"})
+    public String replay;
+
+    private TWSReader reader;
+    private Level level;
+
+    @Setup
+    public void setup() throws IOException {
+        Replay r = new Replay(replay);
+        reader = new TWSReader(r.tws);
+        level = r.getLevel();
+    }
+
+    @Benchmark
+    public Solution readSolution() throws IOException {
+        return reader.readSolution(level);
+    }
+}
@@ -1,19 +1,362 @@
 package emulator;
 
 import game.Direction;
+import game.Position;
 import game.Ruleset;
 import game.Step;
+import tools.SeedBitmap;
+import tools.SeedSampler;
+import tools.SeedSearchCoordinator;
+import tools.SeedSearchEngine;
+import tools.SeedSearchWorker;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 final class ArgumentParser {
     private final static String helpLong = "--help", helpShort = "-h", helpQuestion = "-?", twsLong = "--testtws",
             levelLong = "--level", levelShort =  "-l", stepLong = "--step", stepShort = "-s", rffLong = "-rff",
-            rffShort = "-f", rngLong = "--rng", rngShort = "-r", rulesLong = "--rules", rulesShort = "-m";
+            rffShort = "-f", rngLong = "--rng", rngShort = "-r", rulesLong = "--rules", rulesShort = "-m",
+            verifyLong = "--verify", threadsLong = "--threads", seedSearchLong = "--seedsearch", fromLong = "--from",
+            toLong = "--to", positionLong = "--position", outLong = "--out", listenLong = "--listen",
+            seedWorkerLong = "--seedworker", robustnessLong = "--robustness", widthLong = "--width",
+            thresholdLong = "--threshold", marginLong = "--margin", samplesLong = "--samples";
+    private static final long SEED_SEARCH_CHECKPOINT_MILLIS = 60_000, SEED_SEARCH_PROGRESS_MILLIS = 10_000,
+            SEED_WORKER_TIMEOUT_MILLIS = 10_000, ROBUSTNESS_PROGRESS_MILLIS = 2_000;
+    private static final double DEFAULT_MARGIN = 0.05;
+
+    /**
+     * @param args The command line arguments.
+     * @return Whether the arguments ask for a headless verification run,
+     * see {@link #verify(String[])}.
+     */
+    static boolean isVerify(String[] args) {
+        return args.length != 0 && args[0].equalsIgnoreCase(verifyLong);
+    }
+
+    /**
+     * Parses the arguments to --verify LEVELSET TWS [LEVELSET TWS ...] [--threads N]
+     * and verifies every levelset given, printing the report to stdout.
+     * @param args The command line arguments, starting with --verify.
+     * @return The exit code: 0 if every level passed, 1 if any failed or
+     * had an error, 3 if none failed but some had no solution in the TWS
+     * file, and 2 if the arguments were wrong or a file couldn't be read.
+     */
+    static int verify(String[] args) {
+        List<File> files = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase(threadsLong)) {
+                try {
+                    threads = Integer.parseInt(args[++i]);
+                }
+                catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("The " + threadsLong + " flag MUST be followed by an integer number");
+                    return 2;
+                }
+            }
+            else files.add(new File(args[i]));
+        }
+        if (files.isEmpty() || files.size() % 2 != 0 || threads < 1) {
+            System.err.println("usage: SuperCC.jar --verify LEVELSET TWS [LEVELSET TWS ...] [--threads N]");
+            return 2;
+        }
+        try {
+            List<LevelsetVerifier> verifiers = new ArrayList<>();
+            for (int i = 0; i < files.size(); i += 2)
+                verifiers.add(new LevelsetVerifier(files.get(i), files.get(i + 1)));
+            long start = System.nanoTime();
+            List<LevelsetVerifier.Result> results = LevelsetVerifier.verify(verifiers, threads);
+            LevelsetVerifier.report(results, System.nanoTime() - start, System.out);
+            return LevelsetVerifier.exitCode(results);
+        }
+        catch (Exception e) {
+            System.err.println("[SuperCC Error] " + e);
+            return 2;
+        }
+    }
+
+    /**
+     * @param args The command line arguments.
+     * @return Whether the arguments ask for a headless seed search, see
+     * {@link #seedSearch(String[])}.
+     */
+    static boolean isSeedSearch(String[] args) {
+        return args.length != 0 && args[0].equalsIgnoreCase(seedSearchLong);
+    }
+
+    /**
+     * Parses the arguments to --seedsearch LEVELSET LEVEL SOLUTION [--from A]
+     * [--to B] [--threads N] [--position X,Y] [--out FILE] [--listen PORT]
+     * and tries the solution with every seed from A to B. The seeds it works
+     * with are written to FILE as a {@link SeedBitmap}, by default the
+     * solution's path with .seeds in place of .json. Progress is saved to
+     * FILE.checkpoint every minute and when stopped with Ctrl+C, and the
+     * search continues from there if run again. With --listen, workers
+     * started with --seedworker can connect on PORT and search part of the
+     * range, and N can be 0 to leave all of it to them.
+     * @param args The command line arguments, starting with --seedsearch.
+     * @return The exit code: 0 if every seed was tried and 2 if the arguments
+     * were wrong or a file couldn't be read or written.
+     */
+    static int seedSearch(String[] args) {
+        String usage = "usage: SuperCC.jar --seedsearch LEVELSET LEVEL SOLUTION [--from A] [--to B] [--threads N] "
+                + "[--position X,Y] [--out FILE] [--listen PORT]";
+        List<String> files = new ArrayList<>();
+        int from = 0;
+        int to = Integer.MAX_VALUE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Position endPosition = null;
+        File out = null;
+        int listen = -1;
+        for (int i = 1; i < args.length; i++) {
+            String flag = args[i].toLowerCase();
+            try {
+                switch (flag) {
+                    case fromLong -> from = Integer.parseInt(args[++i]);
+                    case toLong -> to = Integer.parseInt(args[++i]);
+                    case threadsLong -> threads = Integer.parseInt(args[++i]);
+                    case positionLong -> {
+                        String[] xy = args[++i].replaceAll("\\s+", "").split(",");
+                        endPosition = Position.fromXY(Integer.parseInt(xy[0]), Integer.parseInt(xy[1]));
+                        if (!endPosition.isValid())
+                            throw new NumberFormatException(args[i]);
+                    }
+                    case outLong -> out = new File(args[++i]);
+                    case listenLong -> listen = Integer.parseInt(args[++i]);
+                    default -> files.add(args[i]);
+                }
+            }
+            catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                System.err.println("The " + flag + " flag MUST be followed by "
+                        + (flag.equals(positionLong) ? "a position X,Y" : flag.equals(outLong) ? "a file" : "an integer number"));
+                return 2;
+            }
+        }
+        if (files.size() != 3 || threads < (listen < 0 ? 1 : 0) || from < 0 || to < from) {
+            System.err.println(usage);
+            return 2;
+        }
+        try {
+            File levelset = new File(files.get(0));
+            int levelNumber = Integer.parseInt(files.get(1));
+            File solutionFile = new File(files.get(2));
+            Solution solution = Solution.fromJSON(Files.readAllBytes(solutionFile.toPath()));
+            if (out == null)
+                out = new File(solutionFile.getPath().replaceFirst("(\\.json)?$", ".seeds"));
+            File checkpoint = new File(out.getPath() + ".checkpoint");
+            SuperCC emulator = loadSolutionLevel(levelset, levelNumber, solution);
+
+            SeedSearchEngine engine = new SeedSearchEngine(emulator.getLevel(), solution, endPosition, from, to);
+            long seeds = (long) to - from + 1;
+            if (engine.resume(checkpoint))
+                System.err.printf("# resuming from %s with %d of %d seeds tried%n", checkpoint, engine.getAttempts(), seeds);
+            engine.setCheckpoint(checkpoint, SEED_SEARCH_CHECKPOINT_MILLIS);
+            engine.setProgressListener(e -> System.err.printf("# seeds=%d/%d hits=%d seeds_per_sec=%.0f%n",
+                    e.getAttempts(), seeds, e.getSuccesses(), e.getSeedsPerSecond()), SEED_SEARCH_PROGRESS_MILLIS);
+            SeedSearchCoordinator coordinator = null;
+            if (listen >= 0) {
+                coordinator = new SeedSearchCoordinator(engine, levelset, listen, SEED_WORKER_TIMEOUT_MILLIS);
+                System.err.printf("# listening for workers on port %d%n", coordinator.getPort());
+            }
+            SeedSearchCoordinator workers = coordinator;
+            Thread stopOnExit = new Thread(() -> {
+                engine.stop();
+                if (workers != null)
+                    workers.close();
+                try {
+                    engine.await();
+                    engine.writeCheckpoint(checkpoint);
+                }
+                catch (Exception ignored) { }
+            });
+            Runtime.getRuntime().addShutdownHook(stopOnExit);
+
+            long start = System.nanoTime();
+            if (threads > 0)
+                engine.start(threads);
+            if (coordinator != null) {
+                coordinator.await();
+                coordinator.close();
+            }
+            engine.await();
+            long wallNanos = System.nanoTime() - start;
+            try {
+                Runtime.getRuntime().removeShutdownHook(stopOnExit);
+            }
+            catch (IllegalStateException e) {
+                //interrupted, the JVM is already shutting down and the hook has stopped the search
+            }
+            engine.writeCheckpoint(checkpoint);
+            engine.getHits().write(out);
+            System.out.printf("# level=%d seeds=%d hits=%d example=%d wall_ms=%.0f seeds_per_sec=%.0f bitmap=%s%n",
+                    levelNumber, engine.getAttempts(), engine.getSuccesses(), engine.getHits().nextSeed(from),
+                    wallNanos / 1e6, engine.getSeedsPerSecond(), out);
+            return engine.isFinished() ? 0 : 2;
+        }
+        catch (Exception e) {
+            System.err.println("[SuperCC Error] " + e);
+            return 2;
+        }
+    }
+
+    /**
+     * @return An emulator with the level open, loaded with the step, ruleset
+     * and initial slide of the solution.
+     */
+    private static SuperCC loadSolutionLevel(File levelset, int levelNumber, Solution solution)
+            throws FileNotFoundException {
+        if (!levelset.canRead())
+            throw new FileNotFoundException(levelset.getPath());
+        SuperCC emulator = new SuperCC(false);
+        emulator.openLevelset(levelset);
+        if (levelNumber < 1 || levelNumber >= emulator.lastLevelNumber())
+            throw new IllegalArgumentException("No level " + levelNumber + " in " + levelset.getName());
+        emulator.loadLevel(levelNumber, 0, solution.step, false, solution.ruleset, solution.initialSlide);
+        return emulator;
+    }
+
+    /**
+     * @param args The command line arguments.
+     * @return Whether the arguments ask for a robustness estimate, see
+     * {@link #robustness(String[])}.
+     */
+    static boolean isRobustness(String[] args) {
+        return args.length != 0 && args[0].equalsIgnoreCase(robustnessLong);
+    }
+
+    /**
+     * Parses the arguments to --robustness LEVELSET LEVEL SOLUTION [--width W]
+     * [--threshold P [--margin M]] [--samples S] [--threads N] [--position X,Y]
+     * and estimates the share of seeds the solution works with by trying
+     * random ones, see {@link SeedSampler}. It stops once the 95% interval is
+     * W wide, or once the share is known to be above or below P, or after S
+     * seeds.
+     * @param args The command line arguments, starting with --robustness.
+     * @return The exit code: 0 if the estimate is good enough, 1 if it
+     * stopped after S seeds first and 2 if the arguments were wrong or a file
+     * couldn't be read.
+     */
+    static int robustness(String[] args) {
+        String usage = "usage: SuperCC.jar --robustness LEVELSET LEVEL SOLUTION [--width W] "
+                + "[--threshold P [--margin M]] [--samples S] [--threads N] [--position X,Y]";
+        List<String> files = new ArrayList<>();
+        double width = Double.NaN, threshold = Double.NaN, margin = DEFAULT_MARGIN;
+        long samples = SeedSampler.DEFAULT_MAX_SAMPLES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Position endPosition = null;
+        for (int i = 1; i < args.length; i++) {
+            String flag = args[i].toLowerCase();
+            try {
+                switch (flag) {
+                    case widthLong -> width = Double.parseDouble(args[++i]);
+                    case thresholdLong -> threshold = Double.parseDouble(args[++i]);
+                    case marginLong -> margin = Double.parseDouble(args[++i]);
+                    case samplesLong -> samples = Long.parseLong(args[++i]);
+                    case threadsLong -> threads = Integer.parseInt(args[++i]);
+                    case positionLong -> {
+                        String[] xy = args[++i].replaceAll("\\s+", "").split(",");
+                        endPosition = Position.fromXY(Integer.parseInt(xy[0]), Integer.parseInt(xy[1]));
+                        if (!endPosition.isValid())
+                            throw new NumberFormatException(args[i]);
+                    }
+                    default -> files.add(args[i]);
+                }
+            }
+            catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                System.err.println("The " + flag + " flag MUST be followed by "
+                        + (flag.equals(positionLong) ? "a position X,Y" : "a number"));
+                return 2;
+            }
+        }
+        if (files.size() != 3 || threads < 1 || samples < 1) {
+            System.err.println(usage);
+            return 2;
+        }
+        try {
+            int levelNumber = Integer.parseInt(files.get(1));
+            Solution solution = Solution.fromJSON(Files.readAllBytes(new File(files.get(2)).toPath()));
+            SuperCC emulator = loadSolutionLevel(new File(files.get(0)), levelNumber, solution);
+
+            SeedSampler sampler = new SeedSampler(emulator.getLevel(), solution, endPosition);
+            if (!Double.isNaN(width))
+                sampler.setWidth(width);
+            if (!Double.isNaN(threshold))
+                sampler.setThreshold(threshold, margin);
+            sampler.setMaxSamples(samples);
+            sampler.setProgressListener(s -> System.err.printf("# seeds=%d rate=%.4f interval=[%.4f, %.4f]%n",
+                    s.getSamples(), s.getRate(), s.getLowerBound(), s.getUpperBound()), ROBUSTNESS_PROGRESS_MILLIS);
+            long start = System.nanoTime();
+            sampler.run(threads);
+            long wallNanos = System.nanoTime() - start;
+            System.out.printf("# level=%d seeds=%d hits=%d rate=%.4f interval=[%.4f, %.4f] decision=%s wall_ms=%.0f%n",
+                    levelNumber, sampler.getSamples(), sampler.getSuccesses(), sampler.getRate(),
+                    sampler.getLowerBound(), sampler.getUpperBound(), sampler.getDecision(), wallNanos / 1e6);
+            return sampler.isConclusive() ? 0 : 1;
+        }
+        catch (Exception e) {
+            System.err.println("[SuperCC Error] " + e);
+            return 2;
+        }
+    }
+
+    /**
+     * @param args The command line arguments.
+     * @return Whether the arguments ask for a seed search worker, see
+     * {@link #seedWorker(String[])}.
+     */
+    static boolean isSeedWorker(String[] args) {
+        return args.length != 0 && args[0].equalsIgnoreCase(seedWorkerLong);
+    }
+
+    /**
+     * Parses the arguments to --seedworker HOST:PORT [--threads N], connects
+     * to a seed search started with --listen PORT on HOST and searches the
+     * seeds it is given on N threads until the search is finished.
+     * @param args The command line arguments, starting with --seedworker.
+     * @return The exit code: 0 if the search finished and 2 if the arguments
+     * were wrong or the connection failed.
+     */
+    static int seedWorker(String[] args) {
+        String address = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase(threadsLong)) {
+                try {
+                    threads = Integer.parseInt(args[++i]);
+                }
+                catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("The " + threadsLong + " flag MUST be followed by an integer number");
+                    return 2;
+                }
+            }
+            else address = args[i];
+        }
+        int colon = address == null ? -1 : address.lastIndexOf(':');
+        if (colon < 0 || threads < 1) {
+            System.err.println("usage: SuperCC.jar --seedworker HOST:PORT [--threads N]");
+            return 2;
+        }
+        try {
+            SeedSearchWorker worker = new SeedSearchWorker(address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1)), threads, SEED_WORKER_TIMEOUT_MILLIS);
+            worker.run();
+            System.out.printf("# chunks=%d%n", worker.getChunks());
+            return 0;
+        }
+        catch (Exception e) {
+            System.err.println("[SuperCC Error] " + e);
+            return 2;
+        }
+    }
 
     static void parseArguments(SuperCC emulator, String[] args) throws IllegalArgumentException {
         if (args.length != 0) {
@@ -137,6 +480,12 @@ final class ArgumentParser {
         //exclude CURRENT and the non cardinal directions
         System.out.println(
                 "usage: SuperCC.jar [-h] [LEVELSET [-lr N] [-s STEP] [-f DIR] [-m RULE] [TWS [--testtws]]]\n"+
+                        "       SuperCC.jar --verify LEVELSET TWS [LEVELSET TWS ...] [--threads N]\n"+
+                        "       SuperCC.jar --seedsearch LEVELSET LEVEL SOLUTION [--from A] [--to B] [--threads N]\n"+
+                        "                   [--position X,Y] [--out FILE] [--listen PORT]\n"+
+                        "       SuperCC.jar --seedworker HOST:PORT [--threads N]\n"+
+                        "       SuperCC.jar --robustness LEVELSET LEVEL SOLUTION [--width W] [--threshold P [--margin M]]\n"+
+                        "                   [--samples S] [--threads N] [--position X,Y]\n"+
                         "-h        Display this help and exit.\n"+
                         "-l        Load level number N.\n" +
                         "-r        Load level with starting RNG seed N.\n" +
@@ -145,7 +494,26 @@ final class ArgumentParser {
                         "-m        Load level with a ruleset of RULE.\n" +
                         "LEVELSET  Open the levelset given by this path.\n" +
                         "TWS       Set the TWS file to the one given by this path.\n" +
-                        "--testtws Perform a unit test on the given TWS file with the given levelset.\n\n" +
+                        "--testtws Perform a unit test on the given TWS file with the given levelset.\n" +
+                        "--verify  Replay every solution without opening a window, N levels at a time\n" +
+                        "          (default: one per processor). Prints a tab separated report and exits\n" +
+                        "          with 1 if any level failed, or 3 if the TWS file has no solution for\n" +
+                        "          some of them.\n" +
+                        "--seedsearch\n" +
+                        "          Try a JSON solution with every seed from A to B (default: all of them)\n" +
+                        "          without opening a window, until it finishes the level or ends on X,Y.\n" +
+                        "          The seeds it works with are written to FILE (default: SOLUTION with\n" +
+                        "          .seeds in place of .json) and progress to FILE.checkpoint, which a\n" +
+                        "          later search continues from. With --listen, workers can connect on\n" +
+                        "          PORT and take part, and N can be 0.\n" +
+                        "--seedworker\n" +
+                        "          Connect to a seed search listening on HOST:PORT and search the seeds\n" +
+                        "          it hands out on N threads until it finishes.\n" +
+                        "--robustness\n" +
+                        "          Estimate the share of seeds a JSON solution works with by trying random\n" +
+                        "          ones, until the 95% interval is W wide (default: 0.05), or the share is\n" +
+                        "          known to be above or below P give or take M (default: 0.05), or S seeds\n" +
+                        "          have been tried.\n\n" +
 
                         "STEP must be one of: " + Arrays.toString(Step.values()) + ".\n" +
                         "DIR must be one of:  " + Arrays.toString(Direction.CARDINALS) + ".\n" +
@@ -0,0 +1,214 @@
+package emulator;
+
+import game.Direction;
+import game.Level;
+import game.Ruleset;
+import game.Step;
+import game.Tile;
+import io.TWSReader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays every solution in a TWS file against its levelset without a GUI.
+ * Levels are replayed in parallel, each thread of the pool keeping its own
+ * emulator for every levelset it has worked on, all of them sharing one
+ * reader for the TWS file.
+ */
+public class LevelsetVerifier {
+
+    public enum Status {
+        PASS,
+        FAIL,       // the solution didn't finish the level
+        ERROR,      // loading the level, reading the solution or replaying it threw an exception
+        MISSING     // the TWS file has no solution for the level
+    }
+
+    public static class Result {
+        public final File levelset;
+        public final int levelNumber;
+        public final String title;
+        public final Status status;
+        public final int ticks;
+        public final long nanos;
+        public final String message; // why the level had an error, empty otherwise
+
+        Result(File levelset, int levelNumber, String title, Status status, int ticks, long nanos) {
+            this(levelset, levelNumber, title, status, ticks, nanos, "");
+        }
+
+        Result(File levelset, int levelNumber, String title, Status status, int ticks, long nanos, String message) {
+            this.levelset = levelset;
+            this.levelNumber = levelNumber;
+            this.title = title;
+            this.status = status;
+            this.ticks = ticks;
+            this.nanos = nanos;
+            this.message = message;
+        }
+
+        public boolean failed() {
+            return status == Status.FAIL || status == Status.ERROR;
+        }
+    }
+
+    private final File levelset;
+    private final TWSReader reader;
+    private final int levels;
+    private final ThreadLocal<SuperCC> emulators = ThreadLocal.withInitial(this::newEmulator);
+
+    /**
+     * @param levelset The levelset to open.
+     * @param tws The TWS file holding the solutions.
+     * @throws IOException if either file can't be read.
+     */
+    public LevelsetVerifier(File levelset, File tws) throws IOException {
+        if (!levelset.canRead())
+            throw new FileNotFoundException(levelset.getPath());
+        this.levelset = levelset;
+        reader = new TWSReader(tws); //shared by every thread
+        levels = emulators.get().lastLevelNumber() - 1;
+    }
+
+    private SuperCC newEmulator() {
+        SuperCC emulator = new SuperCC(false);
+        emulator.openLevelset(levelset);
+        emulator.twsReader = reader;
+        return emulator;
+    }
+
+    /**
+     * Submits a task for every level to a pool.
+     * @param pool The pool to run the levels on.
+     * @return The results, in level order.
+     */
+    public List<Future<Result>> submit(ExecutorService pool) {
+        List<Future<Result>> results = new ArrayList<>(levels);
+        for (int i = 1; i <= levels; i++) {
+            int levelNumber = i;
+            results.add(pool.submit(() -> verifyLevel(levelNumber)));
+        }
+        return results;
+    }
+
+    private Result verifyLevel(int levelNumber) {
+        SuperCC emulator = emulators.get();
+        long start = System.nanoTime();
+        Level level = null;
+        String title = "";
+        Status status;
+        String message = "";
+        try {
+            level = load(emulator, levelNumber, 0, Step.EVEN, Ruleset.CURRENT, Direction.UP);
+            title = level.getTitle();
+            if (!emulator.twsReader.hasSolution(level))
+                return new Result(levelset, levelNumber, title, Status.MISSING, 0, System.nanoTime() - start);
+            Solution s = emulator.twsReader.readSolution(level);
+            level = load(emulator, levelNumber, s.rngSeed, s.step, s.ruleset, s.initialSlide);
+            s.loadMoves(emulator, TickFlags.LIGHT, false);
+            level = emulator.getLevel();
+            boolean won = level.getLayerFG().get(level.getChip().getPosition()) == Tile.EXITED_CHIP
+                    || level.isCompleted();
+            status = won ? Status.PASS : Status.FAIL;
+        }
+        catch (Exception e) {
+            status = Status.ERROR;
+            message = e.getMessage() == null ? e.toString() : e.getMessage();
+        }
+        return new Result(levelset, levelNumber, title, status, level == null ? 0 : level.getTickNumber(),
+                System.nanoTime() - start, message);
+    }
+
+    /**
+     * Loads a level into an emulator. SuperCC.loadLevel only shows an error
+     * when the level can't be parsed and keeps whatever level it had before,
+     * which would then be replayed in its place.
+     * @return The new level.
+     * @throws IOException if the level wasn't loaded.
+     */
+    private static Level load(SuperCC emulator, int levelNumber, int rngSeed, Step step, Ruleset rules,
+                              Direction initialSlide) throws IOException {
+        Level before = emulator.getLevel();
+        emulator.loadLevel(levelNumber, rngSeed, step, false, rules, initialSlide);
+        Level level = emulator.getLevel();
+        if (level == null || level == before || level.getLevelNumber() != levelNumber)
+            throw new IOException("Could not load level " + levelNumber);
+        return level;
+    }
+
+    /**
+     * Verifies several levelsets on one pool.
+     * @param verifiers The levelsets to verify.
+     * @param threads The number of threads to use.
+     * @return The results of every level, grouped by levelset in the order given.
+     */
+    public static List<Result> verify(List<LevelsetVerifier> verifiers, int threads)
+            throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (LevelsetVerifier verifier : verifiers)
+                futures.addAll(verifier.submit(pool));
+            List<Result> results = new ArrayList<>(futures.size());
+            for (Future<Result> future : futures)
+                results.add(future.get());
+            return results;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return 0 if every level passed, 1 if any failed or had an error, and
+     * 3 if none failed but the TWS file had no solution for some. A missing
+     * solution is told apart from a failed one because public TWS files
+     * often leave out levels that can't be solved under their ruleset.
+     */
+    public static int exitCode(List<Result> results) {
+        int exitCode = 0;
+        for (Result r : results) {
+            if (r.failed())
+                return 1;
+            if (r.status == Status.MISSING)
+                exitCode = 3;
+        }
+        return exitCode;
+    }
+
+    private static double ticksPerSecond(long ticks, long nanos) {
+        return nanos == 0 ? 0 : ticks * 1e9 / nanos;
+    }
+
+    /**
+     * Prints a tab separated report with a line for every level and a
+     * summary line starting with #.
+     * @param results The results to report.
+     * @param wallNanos The time taken to verify everything.
+     * @param out The stream to print to.
+     */
+    public static void report(List<Result> results, long wallNanos, PrintStream out) {
+        out.println("levelset\tlevel\tstatus\tticks\tms\tticks_per_sec\ttitle\tmessage");
+        long ticks = 0;
+        int[] counts = new int[Status.values().length];
+        for (Result r : results) {
+            out.printf("%s\t%d\t%s\t%d\t%.2f\t%.0f\t%s\t%s%n", r.levelset.getName(), r.levelNumber, r.status, r.ticks,
+                    r.nanos / 1e6, ticksPerSecond(r.ticks, r.nanos), r.title, r.message);
+            ticks += r.ticks;
+            counts[r.status.ordinal()]++;
+        }
+        out.printf("# levels=%d passed=%d failed=%d errors=%d missing=%d ticks=%d wall_ms=%.0f ticks_per_sec=%.0f%n",
+                results.size(), counts[Status.PASS.ordinal()], counts[Status.FAIL.ordinal()],
+                counts[Status.ERROR.ordinal()], counts[Status.MISSING.ordinal()], ticks, wallNanos / 1e6,
+                ticksPerSecond(ticks, wallNanos));
+    }
+}
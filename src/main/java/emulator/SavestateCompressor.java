@@ -1,42 +1,76 @@
 package emulator;
 
+import game.Ruleset;
 import util.ByteList;
 import util.TreeNode;
 
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import static game.Savestate.*;
 
+/**
+ * Compresses savestates in the rewind history on a background thread by
+ * run length encoding their layers, and for Lynx the claimed array. Lynx
+ * savestates are now written packed (see LynxSavestate.saveInto), so only
+ * older Lynx savestates are compressed here.
+ *
+ * Any thread may add nodes. The compressed state is only published into a
+ * node if its data is still the array that was compressed, so the node is
+ * never seen half written and nothing is lost if the data was replaced in
+ * the meantime. Adding never blocks: once MAX_QUEUED nodes are waiting, new
+ * nodes are left uncompressed.
+ */
 public class SavestateCompressor implements Runnable{
 
-    private static final int LAYER_BG_LOCATION = 3,
-            LAYER_FG_LOCATION = LAYER_BG_LOCATION + 32 * 32,
-            LAYER_FG_END = LAYER_FG_LOCATION + 32 * 32;
+    private static final int MS_LAYER_BG_LOCATION = 4,
+            MS_LAYER_FG_END = MS_LAYER_BG_LOCATION + 2 * 32 * 32,
+            LYNX_LAYER_FG_LOCATION = 2,
+            LYNX_LAYER_FG_END = LYNX_LAYER_FG_LOCATION + 32 * 32,
+            LYNX_MONSTER_COUNT_LOCATION = LYNX_LAYER_FG_END + 31,
+            LYNX_MONSTERS_LOCATION = LYNX_MONSTER_COUNT_LOCATION + 2,
+            LAYER_SIZE = 32 * 32;
 
-    private Stack<TreeNode<byte[]>> uncompressedSavestates;
-    private ByteList list;
+    static final int MAX_QUEUED = 1024;
 
+    private final ConcurrentLinkedQueue<TreeNode<byte[]>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ByteList list = new ByteList();
     private final Thread thread;
 
-    void add(TreeNode<byte[]> n){
-        uncompressedSavestates.add(n);
-        synchronized(thread) {
-            thread.notify();
+    /**
+     * Queues a node for compression.
+     * @return false if the queue is full, in which case the node is left alone.
+     */
+    boolean add(TreeNode<byte[]> n){
+        if (queued.incrementAndGet() > MAX_QUEUED) {
+            queued.decrementAndGet();
+            return false;
         }
+        queue.add(n);
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    int queued() {
+        return queued.get();
     }
 
     @Override
     public void run(){
         while (true) {
+            TreeNode<byte[]> n = queue.poll();
+            if (n == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            queued.decrementAndGet();
             try {
-                if (uncompressedSavestates.isEmpty()) {
-                    synchronized (thread) {
-                        thread.wait();
-                    }
-                }
-                else {
-                    compress(uncompressedSavestates.pop());
-                }
+                byte[] uncompressed = n.getData();
+                byte[] compressed = compress(uncompressed, list);
+                if (compressed != uncompressed) n.compareAndSetData(uncompressed, compressed);
             }
             catch (Exception e) {
                 e.printStackTrace();
@@ -44,62 +78,119 @@ public class SavestateCompressor implements Runnable{
         }
     }
 
-    private void rleCompress(byte[] uncompressed, ByteList out, int startIndex, int length){
-        int lastOrdinal = uncompressed[startIndex];
-        int ordinal;
-        int copyCount = -1;
-        for (int i = startIndex; i < startIndex + length; i++) {
-            ordinal = uncompressed[i];
-            if (ordinal == lastOrdinal){
-                if (copyCount == 255){
-                    out.add(RLE_MULTIPLE);
-                    out.add(copyCount);
-                    copyCount = 0;
-                    out.add(ordinal);
-                }
-                else copyCount++;
-            }
-            else {
-                if (copyCount != 0){
-                    out.add(RLE_MULTIPLE);
-                    out.add(copyCount);
-                }
-                out.add(lastOrdinal);
-                copyCount = 0;
-                lastOrdinal = ordinal;
+    private static void rleCompress(byte[] uncompressed, ByteList out, int startIndex, int length){
+        int i = startIndex;
+        int end = startIndex + length;
+        while (i < end) {
+            byte ordinal = uncompressed[i];
+            int run = 1;
+            while (i + run < end && run < 256 && uncompressed[i + run] == ordinal) run++;
+            if (run > 1) {
+                out.add(RLE_MULTIPLE);
+                out.add(run - 1);
             }
+            out.add(ordinal);
+            i += run;
         }
-        if (copyCount != 0){
-            out.add(RLE_MULTIPLE);
-            out.add(copyCount);
-        }
-        out.add(lastOrdinal);
         out.add(RLE_END);
     }
 
-    private void compress(TreeNode<byte[]> n){
+    /**
+     * @return The index just after the RLE_END of the layer starting at startIndex.
+     */
+    private static int rleDecompress(byte[] compressed, int startIndex, byte[] out, int outIndex){
+        int i = startIndex;
+        byte b;
+        while ((b = compressed[i++]) != RLE_END){
+            if (b == RLE_MULTIPLE){
+                int run = (compressed[i++] & 0xFF) + 1;
+                Arrays.fill(out, outIndex, outIndex + run, compressed[i++]);
+                outIndex += run;
+            }
+            else out[outIndex++] = b;
+        }
+        return i;
+    }
+
+    private static int lynxClaimsLocation(byte[] uncompressed) {
+        int monsters = ((uncompressed[LYNX_MONSTER_COUNT_LOCATION] & 0xFF) << 8)
+                | (uncompressed[LYNX_MONSTER_COUNT_LOCATION + 1] & 0xFF);
+        return LYNX_MONSTERS_LOCATION + monsters * 4;
+    }
+
+    /**
+     * Compresses a savestate. For MS both layers are compressed, for Lynx
+     * the layer and the claimed array are.
+     * @return The compressed savestate, or the savestate itself if it
+     * can't be compressed.
+     */
+    static byte[] compress(byte[] uncompressed, ByteList list){
+        if (uncompressed[0] != UNCOMPRESSED_V2) return uncompressed;
         list.clear();
-        byte[] uncompressedState = n.getData();
-        rleCompress(uncompressedState, list, LAYER_BG_LOCATION, 32*32);
-        rleCompress(uncompressedState, list, LAYER_FG_LOCATION, 32*32);
-        byte[] out = new byte[uncompressedState.length - 2 * 32 * 32 + list.size()];
-        out[0] = COMPRESSED_V2;
-        out[1] = uncompressedState[1];
-        out[2] = uncompressedState[2];
-        list.copy(out, 3);
-        System.arraycopy(uncompressedState, LAYER_FG_END, out, 3+list.size(), uncompressedState.length - 2 * 32 * 32 - 3);
-        n.setData(out);
+        list.add(COMPRESSED_V2);
+        list.add(uncompressed[1]);
+        if (uncompressed[1] == Ruleset.MS.ordinal()) {
+            list.add(uncompressed[2]);
+            list.add(uncompressed[3]);
+            rleCompress(uncompressed, list, MS_LAYER_BG_LOCATION, LAYER_SIZE);
+            rleCompress(uncompressed, list, MS_LAYER_BG_LOCATION + LAYER_SIZE, LAYER_SIZE);
+            for (int i = MS_LAYER_FG_END; i < uncompressed.length; i++) list.add(uncompressed[i]);
+        }
+        else if (uncompressed[1] == Ruleset.LYNX.ordinal()) {
+            int claims = lynxClaimsLocation(uncompressed);
+            rleCompress(uncompressed, list, LYNX_LAYER_FG_LOCATION, LAYER_SIZE);
+            for (int i = LYNX_LAYER_FG_END; i < claims; i++) list.add(uncompressed[i]);
+            rleCompress(uncompressed, list, claims, LAYER_SIZE);
+            for (int i = claims + LAYER_SIZE; i < uncompressed.length; i++) list.add(uncompressed[i]);
+        }
+        else return uncompressed;
+        return list.toArray();
     }
 
-    void initialise() {
-        uncompressedSavestates = new Stack<>();
-        list = new ByteList();
+    /**
+     * Reverses compress.
+     * @return The uncompressed savestate, or the savestate itself if it
+     * isn't compressed.
+     */
+    static byte[] decompress(byte[] compressed){
+        if (compressed[0] != COMPRESSED_V2) return compressed;
+        if (compressed[1] == Ruleset.MS.ordinal()) {
+            byte[] layers = new byte[2 * LAYER_SIZE];
+            int i = rleDecompress(compressed, MS_LAYER_BG_LOCATION, layers, 0);
+            i = rleDecompress(compressed, i, layers, LAYER_SIZE);
+            byte[] out = new byte[MS_LAYER_FG_END + compressed.length - i];
+            out[0] = UNCOMPRESSED_V2;
+            out[1] = compressed[1];
+            out[2] = compressed[2];
+            out[3] = compressed[3];
+            System.arraycopy(layers, 0, out, MS_LAYER_BG_LOCATION, layers.length);
+            System.arraycopy(compressed, i, out, MS_LAYER_FG_END, compressed.length - i);
+            return out;
+        }
+        else if (compressed[1] == Ruleset.LYNX.ordinal()) {
+            byte[] layer = new byte[LAYER_SIZE];
+            int i = rleDecompress(compressed, LYNX_LAYER_FG_LOCATION, layer, 0);
+            int middle = LYNX_MONSTERS_LOCATION - LYNX_LAYER_FG_END;
+            int monsters = ((compressed[i + middle - 2] & 0xFF) << 8) | (compressed[i + middle - 1] & 0xFF);
+            middle += monsters * 4;
+            byte[] claims = new byte[LAYER_SIZE];
+            int j = rleDecompress(compressed, i + middle, claims, 0);
+            byte[] out = new byte[LYNX_LAYER_FG_END + middle + LAYER_SIZE + compressed.length - j];
+            out[0] = UNCOMPRESSED_V2;
+            out[1] = compressed[1];
+            System.arraycopy(layer, 0, out, LYNX_LAYER_FG_LOCATION, LAYER_SIZE);
+            System.arraycopy(compressed, i, out, LYNX_LAYER_FG_END, middle);
+            System.arraycopy(claims, 0, out, LYNX_LAYER_FG_END + middle, LAYER_SIZE);
+            System.arraycopy(compressed, j, out, LYNX_LAYER_FG_END + middle + LAYER_SIZE, compressed.length - j);
+            return out;
+        }
+        return compressed;
     }
 
     SavestateCompressor(){
-        initialise();
-        thread = new Thread(this);
+        thread = new Thread(this, "Savestate compressor");
         thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setDaemon(true);
         thread.start();
     }
 
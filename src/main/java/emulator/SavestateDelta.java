@@ -0,0 +1,121 @@
+package emulator;
+
+import util.ByteList;
+
+import java.util.Arrays;
+
+/**
+ * Savestates in the rewind history are mostly identical to their parent, so
+ * all but the keyframes are stored as the XOR of the state with its parent's,
+ * with runs of zeroes removed.
+ *
+ * A delta is laid out as the DELTA marker, the parent and child lengths, then
+ * a sequence of (zero run length, literal length, literal bytes...) records.
+ * Lengths are stored as varints. As XOR is its own inverse the same delta
+ * gets from the parent to the child and from the child back to the parent.
+ */
+class SavestateDelta {
+
+    /** Never a valid savestate version byte, so deltas can't be mistaken for savestates. */
+    static final byte DELTA = -1;
+
+    // Zero runs shorter than this are cheaper to store inline in a literal
+    private static final int MIN_ZERO_RUN = 3;
+
+    static boolean isDelta(byte[] data) {
+        return data[0] == DELTA;
+    }
+
+    static byte[] encode(byte[] parent, byte[] child, ByteList out) {
+        out.clear();
+        out.add(DELTA);
+        writeVarint(out, parent.length);
+        writeVarint(out, child.length);
+        int length = Math.max(parent.length, child.length);
+        int i = 0;
+        while (i < length) {
+            int zeroStart = i;
+            while (i < length && xor(parent, child, i) == 0) i++;
+            if (i == length) break;
+            int literalStart = i;
+            int zeroes = 0;
+            while (i < length && zeroes < MIN_ZERO_RUN) {
+                if (xor(parent, child, i) == 0) zeroes++;
+                else zeroes = 0;
+                i++;
+            }
+            i -= zeroes;
+            writeVarint(out, literalStart - zeroStart);
+            writeVarint(out, i - literalStart);
+            for (int j = literalStart; j < i; j++) out.add(xor(parent, child, j));
+        }
+        return out.toArray();
+    }
+
+    /**
+     * Applies a delta to the state on one side of it.
+     * @param base the parent state, or the child state if toParent is set.
+     * @param delta a delta produced by encode.
+     * @param toParent whether base is the child state.
+     * @return a new array holding the state on the other side of the delta.
+     */
+    static byte[] apply(byte[] base, byte[] delta, boolean toParent) {
+        int[] pos = {1};
+        int parentLength = readVarint(delta, pos);
+        int childLength = readVarint(delta, pos);
+        byte[] out = Arrays.copyOf(base, toParent ? parentLength : childLength);
+        xor(out, delta, pos);
+        return out;
+    }
+
+    /**
+     * Applies a delta to the parent state, modifying it in place where the
+     * length of the state doesn't change.
+     * @return the child state, which is the parent array if its length was unchanged.
+     */
+    static byte[] applyInPlace(byte[] parent, byte[] delta) {
+        int[] pos = {1};
+        readVarint(delta, pos);
+        int childLength = readVarint(delta, pos);
+        if (parent.length != childLength) parent = Arrays.copyOf(parent, childLength);
+        xor(parent, delta, pos);
+        return parent;
+    }
+
+    private static void xor(byte[] state, byte[] delta, int[] pos) {
+        int i = 0;
+        while (pos[0] < delta.length) {
+            i += readVarint(delta, pos);
+            int literals = readVarint(delta, pos);
+            for (int end = i + literals; i < end; i++) {
+                byte b = delta[pos[0]++];
+                if (i < state.length) state[i] ^= b;
+            }
+        }
+    }
+
+    private static byte xor(byte[] a, byte[] b, int i) {
+        return (byte) ((i < a.length ? a[i] : 0) ^ (i < b.length ? b[i] : 0));
+    }
+
+    private static void writeVarint(ByteList out, int n) {
+        while ((n & ~0x7F) != 0) {
+            out.add((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        out.add(n);
+    }
+
+    private static int readVarint(byte[] in, int[] pos) {
+        int n = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in[pos[0]++];
+            n |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return n;
+    }
+
+}
@@ -5,6 +5,8 @@ import game.Position;
 import game.Savestate;
 import graphics.Gui;
 import graphics.SmallGamePanel;
+import io.SuccPaths;
+import util.ByteList;
 import util.CharList;
 import util.TreeNode;
 
@@ -15,6 +17,7 @@ import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.IntStream;
 
 public class SavestateManager implements Serializable {
@@ -25,11 +28,22 @@ public class SavestateManager implements Serializable {
     private CharList moves;
     private CharList[] macros = new CharList[10];
     private transient SuperCC emulator;
-    private transient List<TreeNode<byte[]>> playbackNodes = new ArrayList<>();
+    private transient List<TreeNode<byte[]>> playbackNodes = new ArrayList<>();    // the node at index i has depth i + 1
+    private transient List<Position> chipPositions = new ArrayList<>();             // chip's position in the first playbackNodes
     private transient int playbackIndex = 0;
     private transient boolean[] recordingMacros = new boolean[10];
     private transient int[] macroStartIndices = new int[10];
     private transient byte[] levelTitle;
+    private transient ByteList deltaBuffer = new ByteList();
+    private transient TreeNode<byte[]> cachedNode;
+    private transient byte[] cachedState;
+    private transient ArrayDeque<TreeNode<byte[]>> uncompressedKeyframes = new ArrayDeque<>();
+    private transient int replayInterval = 0;
+    private transient Map<TreeNode<byte[]>, byte[]> recentStates = recentStates(0);
+    private transient SuperCC replayEmulator;
+    private transient long preTickHash;
+    private transient TreeNode<byte[]> hashedNode;
+    private transient long hashedNodeHash;
 
     private transient boolean pause = true;
     private static final int STANDARD_WAIT_TIME = 100;              // 100 ms means 10 half-ticks per second.
@@ -49,6 +63,58 @@ public class SavestateManager implements Serializable {
     private static final long serialVersionUID = -3232323211211410511L;
     private static final int VERSION_V0 = 0;
 
+    /**
+     * Every this many ticks the full savestate is stored rather than a delta
+     * against the parent, which bounds the work needed to reconstruct a state.
+     */
+    private static final int KEYFRAME_INTERVAL = 64;
+
+    /**
+     * The newest keyframes are left uncompressed so that rewinding over the
+     * last few hundred ticks doesn't need to decompress anything.
+     */
+    private static final int UNCOMPRESSED_KEYFRAMES = 4;
+
+    /**
+     * Marks a node that only holds the move made to reach it from its parent,
+     * see setHistoryPolicy. Never a valid savestate version byte, and
+     * different from SavestateDelta.DELTA.
+     */
+    private static final byte MOVE = -2;
+    private static final Map<Character, byte[]> MOVE_RECORDS = new ConcurrentHashMap<>(); //shared, as there are few moves
+
+    /**
+     * Chooses how the history is stored. By default every tick is stored as a
+     * delta against its parent. With a replay interval only every
+     * replayInterval-th tick is stored as a full state, and the ticks in
+     * between only store their move and are rebuilt by replaying the moves
+     * from the nearest full state. This takes a few bytes per tick instead of
+     * around a hundred, at the cost of replaying up to replayInterval ticks
+     * when jumping to a state. The most recently rebuilt states are kept so
+     * that scrubbing back and forth doesn't replay the same ticks again.
+     * <p>
+     *     A tick is only stored as a move if the level was in the state of
+     *     its parent just before the tick, so a level changed with cheats
+     *     between ticks still has its change kept in a full state.
+     * </p>
+     * @param replayInterval The number of ticks between full states, or 0
+     *                       to store every tick as a delta.
+     * @param cachedStates The number of rebuilt states to keep.
+     */
+    public synchronized void setHistoryPolicy(int replayInterval, int cachedStates) {
+        this.replayInterval = Math.max(replayInterval, 0);
+        recentStates = recentStates(cachedStates);
+    }
+
+    private static Map<TreeNode<byte[]>, byte[]> recentStates(int capacity) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TreeNode<byte[]>, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
     public void setPlaybackSpeed(int i) {
         playbackWaitTime = waitTimes[i];
     }
@@ -90,6 +156,11 @@ public class SavestateManager implements Serializable {
     @SuppressWarnings("unchecked")
     private void readObject(java.io.ObjectInputStream stream)
         throws IOException, ClassNotFoundException {
+        deltaBuffer = new ByteList();
+        uncompressedKeyframes = new ArrayDeque<>();
+        recentStates = recentStates(0);
+        playbackNodes = new ArrayList<>();
+        chipPositions = new ArrayList<>();
         if (stream.read() == VERSION_V0) {
             savestates = (HashMap<Integer, TreeNode<byte[]>>) stream.readObject();
             savestateMoves = new HashMap<>();
@@ -110,25 +181,97 @@ public class SavestateManager implements Serializable {
         }
     }
 
-    public void addRewindState(Level level, char c){
+    /**
+     * Called before every tick that will be saved, to note the state the
+     * level was in before it.
+     */
+    void beforeTick(Level level){
+        if (replayInterval > 0)
+            preTickHash = level.stateHash();
+    }
+
+    public synchronized void addRewindState(Level level, char c){
         pause = true;
-        while (playbackNodes.get(playbackNodes.size()-1) != currentNode) {
-            playbackNodes.remove(playbackNodes.size()-1);
-            moves.removeLast();
+        truncate(currentNode.depth());
+        if (replayInterval > 0) {
+            if (!keyframeDue(currentNode, replayInterval) && preTickHash == stateHash(currentNode))
+                currentNode = new TreeNode<>(moveRecord(c), currentNode);
+            else {
+                byte[] state = level.save();
+                currentNode = new TreeNode<>(state, currentNode);
+                cache(currentNode, state);
+                addKeyframe(currentNode);
+            }
+            hashedNode = currentNode;
+            hashedNodeHash = level.stateHash();
         }
-        currentNode = new TreeNode<>(level.save(), currentNode);
-//        emulator.savestateCompressor.add(currentNode);
+        else {
+            byte[] state = level.save();
+            byte[] data = state;
+            if (!keyframeDue(currentNode, KEYFRAME_INTERVAL))
+                data = SavestateDelta.encode(stateOf(currentNode), state, deltaBuffer);
+            currentNode = new TreeNode<>(data, currentNode);
+            cache(currentNode, state);
+            if (data == state)
+                addKeyframe(currentNode);
+        }
+        if (chipPositions.size() == playbackNodes.size())
+            chipPositions.add(level.getChip().getPosition());
         playbackNodes.add(currentNode);
         moves.add(c);
         playbackIndex = playbackNodes.size() - 1;
     }
+
+    /**
+     * Cuts off the playback path after its first depth nodes.
+     */
+    private void truncate(int depth) {
+        if (depth < playbackNodes.size())
+            playbackNodes.subList(depth, playbackNodes.size()).clear();
+        if (depth < chipPositions.size())
+            chipPositions.subList(depth, chipPositions.size()).clear();
+        moves.truncate(depth - 1);
+    }
+
+    /**
+     * @return true if the node is part of the playback path, found from its
+     * depth rather than by searching the path.
+     */
+    private boolean onPlaybackPath(TreeNode<byte[]> node) {
+        int index = node.depth() - 1;
+        return index < playbackNodes.size() && playbackNodes.get(index) == node;
+    }
+
+    /**
+     * Makes the playback path end at a node on another branch, keeping the
+     * part of the path that both branches share.
+     */
+    private void switchBranch(TreeNode<byte[]> node) {
+        ArrayDeque<TreeNode<byte[]>> branch = new ArrayDeque<>();
+        TreeNode<byte[]> n = node;
+        while (n != null && !onPlaybackPath(n)) {
+            branch.push(n);
+            n = n.getParent();
+        }
+        int shared = n == null ? 0 : n.depth();
+        playbackNodes.subList(shared, playbackNodes.size()).clear();
+        if (shared < chipPositions.size())
+            chipPositions.subList(shared, chipPositions.size()).clear();
+        playbackNodes.addAll(branch);
+    }
+
+    private TreeNode<byte[]> root() {
+        if (onPlaybackPath(currentNode))
+            return playbackNodes.get(0);
+        TreeNode<byte[]> state = currentNode;
+        while (state.hasParent()) state = state.getParent();
+        return state;
+    }
     
     public void restart() {
         pause = true;
-        while (currentNode.hasParent()) {
-            currentNode = currentNode.getParent();
-            playbackIndex--;
-        }
+        playbackIndex -= currentNode.depth() - 1;
+        currentNode = root();
     }
     
     public void rewind(){
@@ -170,7 +313,7 @@ public class SavestateManager implements Serializable {
         pause = false;
         try {
             while (!pause && playbackIndex + 1 < playbackNodes.size()) {
-                emulator.getLevel().load(currentNode.getData());
+                emulator.getLevel().load(stateOf(currentNode));
                 char c = SuperCC.lowerCase(moves.get(playbackIndex));
                 boolean tickMulti = emulator.tick(c, TickFlags.REPLAY);
                 Thread.sleep(playbackWaitTime);
@@ -267,15 +410,12 @@ public class SavestateManager implements Serializable {
         TreeNode<byte[]> loadedNode = savestates.get(key);
         if (loadedNode == null) return false;
         currentNode = loadedNode;
-        level.load(currentNode.getData());
-        if (!playbackNodes.contains(currentNode)) {
-            playbackNodes = currentNode.getHistory();
-            playbackIndex = playbackNodes.size() - 1;
+        level.load(stateOf(currentNode));
+        if (!onPlaybackPath(currentNode)) {
+            switchBranch(currentNode);
             moves = savestateMoves.get(key).clone();
         }
-        else {
-            playbackIndex = playbackNodes.indexOf(currentNode);
-        }
+        playbackIndex = currentNode.depth() - 1;
         return true;
     }
     
@@ -285,8 +425,8 @@ public class SavestateManager implements Serializable {
 
     public void setPlaybackNodes(TreeNode<byte[]> node) {
         pause = true;
-        this.playbackNodes = new ArrayList<>();
-        this.playbackNodes.addAll(node.getHistory());
+        this.playbackNodes = node.getHistory();
+        chipPositions.clear();
     }
     
     public int getPlaybackIndex() {
@@ -299,13 +439,142 @@ public class SavestateManager implements Serializable {
     }
     
     public byte[] getSavestate(){
-        return currentNode.getData();
+        return stateOf(currentNode);
     }
     
     public byte[] getStartingState() {
-        TreeNode<byte[]> state = currentNode;
-        while (state.hasParent()) state = state.getParent();
-        return state.getData();
+        return stateOf(root());
+    }
+
+    /**
+     * @return The number of bytes used to store the history of the current
+     * state, which is less than the total size of the states it holds as most
+     * of them are stored as deltas or moves.
+     */
+    public long getHistorySize() {
+        long size = 0;
+        for (TreeNode<byte[]> node = currentNode; node != null; node = node.getParent())
+            size += node.getData().length;
+        return size;
+    }
+
+    /**
+     * Returns the full savestate held by a node in the rewind tree. Moving to
+     * the parent or a child of the last state returned only needs one delta
+     * applied, otherwise the state is rebuilt from the nearest keyframe.
+     * The returned array must not be modified.
+     */
+    synchronized byte[] stateOf(TreeNode<byte[]> node) {
+        if (node == cachedNode)
+            return cachedState;
+        byte[] recent = recentStates.get(node);
+        if (recent != null)
+            return cache(node, recent);
+        byte[] data = node.getData();
+        if (isMove(data))
+            return cache(node, replayTo(node));
+        if (!SavestateDelta.isDelta(data))
+            return cache(node, SavestateCompressor.decompress(data));
+        if (cachedNode != null) {
+            if (node.getParent() == cachedNode)
+                return cache(node, SavestateDelta.apply(cachedState, data, false));
+            if (node == cachedNode.getParent() && SavestateDelta.isDelta(cachedNode.getData()))
+                return cache(node, SavestateDelta.apply(cachedState, cachedNode.getData(), true));
+        }
+        ArrayDeque<TreeNode<byte[]>> path = new ArrayDeque<>();
+        TreeNode<byte[]> n = node;
+        while (n != cachedNode && SavestateDelta.isDelta(n.getData())) {
+            path.push(n);
+            n = n.getParent();
+        }
+        byte[] state = n == cachedNode ? cachedState : stateOf(n);
+        while (!path.isEmpty())
+            state = SavestateDelta.apply(state, path.pop().getData(), false);
+        return cache(node, state);
+    }
+
+    /**
+     * Rebuilds the state of a node that only holds a move by replaying the
+     * moves from the nearest ancestor whose state is known.
+     */
+    private byte[] replayTo(TreeNode<byte[]> node) {
+        ArrayDeque<TreeNode<byte[]>> path = new ArrayDeque<>();
+        TreeNode<byte[]> n = node;
+        while (n != cachedNode && isMove(n.getData()) && !recentStates.containsKey(n)) {
+            path.push(n);
+            n = n.getParent();
+        }
+        byte[] state = stateOf(n);
+        SuperCC replay = replayEmulator();
+        Level level = replay.getLevel();
+        level.load(state);
+        while (!path.isEmpty()) {
+            TreeNode<byte[]> next = path.pop();
+            replay.tick(SuperCC.lowerCase(moveOf(next.getData())), TickFlags.LIGHT);
+            state = level.save();
+            recentStates.put(next, state);
+        }
+        return state;
+    }
+
+    /**
+     * @return The hash of the state of a node, which is known without
+     * loading the state for the node added last.
+     */
+    private long stateHash(TreeNode<byte[]> node) {
+        if (node != hashedNode) {
+            Level level = replayEmulator().getLevel();
+            level.load(stateOf(node));
+            hashedNode = node;
+            hashedNodeHash = level.stateHash();
+        }
+        return hashedNodeHash;
+    }
+
+    /**
+     * @return An emulator playing a copy of the level, used to replay moves
+     * and load states without touching the level being played.
+     */
+    private SuperCC replayEmulator() {
+        if (replayEmulator == null) {
+            replayEmulator = new SuperCC(false);
+            replayEmulator.setLevel(emulator.getLevel().fork());
+        }
+        return replayEmulator;
+    }
+
+    private static byte[] moveRecord(char c) {
+        return MOVE_RECORDS.computeIfAbsent(c, m -> new byte[] {MOVE, (byte) (m >>> 8), (byte) (char) m});
+    }
+
+    private static boolean isMove(byte[] data) {
+        return data[0] == MOVE;
+    }
+
+    private static char moveOf(byte[] data) {
+        return (char) ((data[1] & 0xFF) << 8 | data[2] & 0xFF);
+    }
+
+    private byte[] cache(TreeNode<byte[]> node, byte[] state) {
+        cachedNode = node;
+        cachedState = state;
+        return state;
+    }
+
+    private void addKeyframe(TreeNode<byte[]> node) {
+        uncompressedKeyframes.add(node);
+        if (uncompressedKeyframes.size() > UNCOMPRESSED_KEYFRAMES) {
+            TreeNode<byte[]> oldest = uncompressedKeyframes.poll();
+            if (emulator.savestateCompressor != null)
+                emulator.savestateCompressor.add(oldest);
+        }
+    }
+
+    private static boolean keyframeDue(TreeNode<byte[]> parent, int interval) {
+        int deltas = 0;
+        for (TreeNode<byte[]> n = parent; SavestateDelta.isDelta(n.getData()) || isMove(n.getData()); n = n.getParent())
+            deltas++;
+        return deltas + 1 >= interval;
     }
     
     public CharList getMoveList(){
@@ -333,29 +602,61 @@ public class SavestateManager implements Serializable {
     
     SavestateManager(SuperCC emulator, Level level) throws UnsupportedEncodingException {
         this.emulator = emulator;
+        SuccPaths paths = emulator.getPaths();
+        if (paths != null)
+            setHistoryPolicy(paths.getReplayInterval(), paths.getCachedStates());
         levelTitle = level.getTitle().getBytes("Windows-1252");
-//        emulator.savestateCompressor.initialise();
         currentNode = new TreeNode<>(level.save(), null);
         playbackNodes.add(currentNode);
+        chipPositions.add(level.getChip().getPosition());
+        addKeyframe(currentNode);
         moves = new CharList();
         for (int i = 0; i < macros.length; i++)
             macros[i] = new CharList();
     }
     
-    public LinkedList<Position> getChipHistory(){
-        LinkedList<Position> chipHistory = new LinkedList<>();
-        for (TreeNode<byte[]> node : currentNode.getHistory()) chipHistory.add(Savestate.getChip(node.getData()).getPosition());
-        return chipHistory;
+    /**
+     * @return Chip's position in every state from the start of the level to
+     * the current state. The positions along the playback path are kept, so
+     * only states not seen since the last branch switch are decoded.
+     */
+    public List<Position> getChipHistory(){
+        if (!onPlaybackPath(currentNode))
+            return chipPositions(currentNode.getHistory(), 0, new ArrayList<>());
+        int depth = currentNode.depth();
+        if (chipPositions.size() < depth)
+            chipPositions(playbackNodes.subList(0, depth), chipPositions.size(), chipPositions);
+        return new ArrayList<>(chipPositions.subList(0, depth));
+    }
+
+    /**
+     * Adds chip's position in every node of a path, starting at an index.
+     */
+    private List<Position> chipPositions(List<TreeNode<byte[]>> path, int from, List<Position> positions) {
+        byte[] state = null;
+        for (int i = from; i < path.size(); i++) {
+            TreeNode<byte[]> node = path.get(i);
+            byte[] data = node.getData();
+            if (isMove(data) || (state == null && SavestateDelta.isDelta(data))) state = stateOf(node).clone();
+            else if (SavestateDelta.isDelta(data)) state = SavestateDelta.applyInPlace(state, data);
+            else {
+                state = SavestateCompressor.decompress(data);
+                if (state == data) state = data.clone();
+            }
+            positions.add(Savestate.getChip(state).getPosition());
+        }
+        return positions;
     }
 
     public void setEmulator(SuperCC emulator) throws UnsupportedEncodingException {
         pause = true;
         this.emulator = emulator;
+        replayEmulator = null;
+        hashedNode = null;
+        SuccPaths paths = emulator.getPaths();
+        if (paths != null)
+            setHistoryPolicy(paths.getReplayInterval(), paths.getCachedStates());
         levelTitle = emulator.getLevel().getTitle().getBytes("Windows-1252");
         emulator.repaint(true);
-//        emulator.savestateCompressor.initialise();
-        /* Yes having this here does make the method do more than its name implies, however seeing as the only reason
-        emulator is used is in order to have access to the compressor, and whenever emulator is changed it means that
-        a new savestate manager was created/read from a file, meaning that the compressor should be reset as well */
     }
 }
@@ -7,6 +7,7 @@ import org.json.simple.parser.ParseException;
 import util.CharList;
 
 import java.io.CharArrayWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
@@ -60,6 +61,23 @@ public class Solution{
         }
     }
     
+    /**
+     * Reads a solution file, which is in UTF-8 unless its encoding says
+     * otherwise, in which case it is ISO-8859-1.
+     */
+    public static Solution fromJSON(byte[] bytes){
+        String s = new String(bytes, StandardCharsets.UTF_8);
+        try {
+            JSONObject json = (JSONObject) new JSONParser().parse(s);
+            if ("UTF-8".equals(json.get(ENCODE)))
+                return fromJSON(s);
+        }
+        catch (ParseException e){
+            throw new IllegalArgumentException("Invalid solution file:\n" + s);
+        }
+        return fromJSON(new String(bytes, StandardCharsets.ISO_8859_1));
+    }
+    
     public void load(SuperCC emulator){
         load(emulator, TickFlags.PRELOADING);
     }
@@ -73,50 +91,85 @@ public class Solution{
         }
 
         emulator.loadLevel(emulator.getLevel().getLevelNumber(), rngSeed, step, false, ruleset, initialSlide);
-        tickBasicMoves(emulator, tickFlags);
+        tickBasicMoves(emulator, tickFlags, 0, false);
         if(emulator.hasGui) {
             emulator.getMainWindow().repaint(true);
         }
     }
     
     public void loadMoves(SuperCC emulator, TickFlags tickFlags, boolean repaint){
-        tickBasicMoves(emulator, tickFlags);
+        tickBasicMoves(emulator, tickFlags, 0, false);
         if (repaint) emulator.getMainWindow().repaint(true);
     }
 
-    private void tickBasicMoves(SuperCC emulator, TickFlags tickFlags) {
+    /**
+     * Ticks the moves from a move index onwards, to continue from a state
+     * found with loadMovesUntilRng.
+     * @param fromMove The index in basicMoves of the first move to make.
+     */
+    public void loadMoves(SuperCC emulator, TickFlags tickFlags, int fromMove){
+        tickBasicMoves(emulator, tickFlags, fromMove, false);
+    }
+
+    /**
+     * Ticks the moves until the first tick that advances the RNG, and leaves
+     * the level in the state it was in just before that tick. Up to there the
+     * game plays the same with every seed.
+     * @return The index in basicMoves of the move made on that tick, or
+     * basicMoves.length if the RNG is never advanced.
+     */
+    public int loadMovesUntilRng(SuperCC emulator, TickFlags tickFlags){
+        return tickBasicMoves(emulator, tickFlags, 0, true);
+    }
+
+    private int tickBasicMoves(SuperCC emulator, TickFlags tickFlags, int fromMove, boolean untilRng) {
         Level level = emulator.getLevel();
-//        try{
-            for (int move = 0; move < basicMoves.length; move++){
-                char c = basicMoves[move];
-                if (c == CHIP_RELATIVE_CLICK){
-                    int x = basicMoves[++move] - 9;
-                    int y = basicMoves[++move] - 9;
-                    if (x == 0 && y == 0){                      // idk about this but it fixes thief street
-                        c = WAIT;
-                    }
-                    else {
-                        Position chipPosition = level.getChip().getPosition();
-                        Position clickPosition = chipPosition.add(x, y);
-                        level.setClick(clickPosition.getIndex());
-                        c = clickPosition.clickChar(chipPosition);
-                    }
-                }
-                boolean tickedMulti = emulator.tick(c, tickFlags);
-                if (tickedMulti)
-                    move += level.ticksPerMove() - 1;
+        int move = fromMove;
+        while (move < basicMoves.length) {
+            byte[] before = untilRng ? level.save() : null;
+            long advances = level.getRNG().getAdvances();
+            int next = tickMove(emulator, tickFlags, move);
+            if (untilRng && level.getRNG().getAdvances() != advances) {
+                level.load(before);
+                return move;
+            }
+            move = next;
+        }
+        return basicMoves.length;
+    }
 
-                if (level.getChip().isDead()) {
-                    break;
-                }
+    /**
+     * Makes a single move, for stepping through the solution a tick at a
+     * time. A move that takes more than one tick is made whole if tickFlags
+     * allows it.
+     * @param move The index in basicMoves of the move to make.
+     * @return The index of the next move, or basicMoves.length if there are
+     * none left or Chip is dead.
+     */
+    public int tickMove(SuperCC emulator, TickFlags tickFlags, int move){
+        Level level = emulator.getLevel();
+        char c = basicMoves[move];
+        if (c == CHIP_RELATIVE_CLICK){
+            int x = basicMoves[++move] - 9;
+            int y = basicMoves[++move] - 9;
+            if (x == 0 && y == 0){                      // idk about this but it fixes thief street
+                c = WAIT;
+            }
+            else {
+                Position chipPosition = level.getChip().getPosition();
+                Position clickPosition = chipPosition.add(x, y);
+                level.setClick(clickPosition.getIndex());
+                c = clickPosition.clickChar(chipPosition);
             }
-//        }
-//        catch (Exception e){
-//            e.printStackTrace();
-//            emulator.throwError("Something went wrong:\n" + e);
-//        }
+        }
+        boolean tickedMulti = emulator.tick(c, tickFlags);
+        if (tickedMulti)
+            move += level.ticksPerMove() - 1;
+        if (level.getChip().isDead())
+            return basicMoves.length;
+        return move + 1;
     }
-    
+
     private static char[] succToBasicMoves(char[] succMoves, Ruleset ruleset){
         CharArrayWriter writer = new CharArrayWriter();
         for (char c : succMoves){
@@ -30,7 +30,7 @@ public class SuperCC {
     public static final byte CHIP_RELATIVE_CLICK = 1;
 
     private SavestateManager savestates;
-//    SavestateCompressor savestateCompressor = new SavestateCompressor();
+    SavestateCompressor savestateCompressor; //only used with a gui, where sessions can run for hours
     private Level level;
     private Gui window;
     private DatParser dat;
@@ -39,6 +39,7 @@ public class SuperCC {
     private SuccPaths paths;
     private EmulatorKeyListener controls;
     public boolean hasGui = true;
+    public boolean checkStateHash = false; //debugging, see checkStateHash()
 
     public void setControls(EmulatorKeyListener l) {
         controls = l;
@@ -61,6 +62,10 @@ public class SuperCC {
         return getJSONPath().replace(".json", ".ser");
     }
 
+    public String getSeedSearchPath() {
+        return getJSONPath().replace(".json", ".seedsearch");
+    }
+
     public String getLevelsetPath() {
         return dat.getLevelsetPath();
     }
@@ -145,6 +150,7 @@ public class SuperCC {
                 ex.printStackTrace();
             }
         }
+        savestateCompressor = new SavestateCompressor();
         window = new Gui(this);
     }
 
@@ -189,6 +195,22 @@ public class SuperCC {
         }
     }
 
+    /**
+     * Plays a level that has already been created, such as a fork of another
+     * emulator's level, instead of parsing one from the levelset.
+     * @param level The level to play. The rewind history starts from its current state.
+     */
+    public synchronized void setLevel(Level level){
+        try{
+            savestates = new SavestateManager(this, level);
+            this.level = level;
+        }
+        catch (Exception e){
+            e.printStackTrace();
+            throwError("Could not load level: "+e.getMessage());
+        }
+    }
+
     public synchronized void loadLevel(int levelNumber){
         loadLevel(levelNumber, 0, Step.EVEN, true, Ruleset.CURRENT, Direction.UP);
     }
@@ -197,6 +219,7 @@ public class SuperCC {
         if (level == null)
             return false;
         if (directions[0].isDiagonal() && !level.supportsDiagonal()) {
+            directions = directions.clone(); //the array passed in may be shared
             directions[0] = directions[0].decompose()[0]; //take vertical
             for (char c1 : DIRECTIONS.keySet()) { //switch the char part to vertical
                 if (directions[0] == DIRECTIONS.get(c1)) {
@@ -205,16 +228,20 @@ public class SuperCC {
                 }
             }
         }
+        if (flags.save)
+            savestates.beforeTick(level);
         int levelFlags = level.tick(c, directions);
         boolean tickMulti = (levelFlags & Level.MASK_TICK_MULTI) != 0;
         if (flags.multiTick && tickMulti) {
             for (int i=0; i < level.ticksPerMove() - 1; i++) {
                 c = capital(c);
-                level.tick(c, new Direction[] {Direction.NONE});
+                level.tick(c, Direction.NONE.singleton());
             }
         }
         if ((levelFlags & Level.MASK_DISCARD_INPUT) != 0)
             c = WAIT;
+        if (checkStateHash)
+            checkStateHash();
         if (flags.save) {
             savestates.addRewindState(level, c);
         }
@@ -223,6 +250,19 @@ public class SuperCC {
         return tickMulti;
     }
     
+    /**
+     * Checks the level's incrementally updated state hash against the hash
+     * of a copy loaded from its savestate, which has to be calculated from
+     * scratch. This is slow, and is only done when checkStateHash is set.
+     * @throws IllegalStateException if the hashes differ.
+     */
+    private void checkStateHash() {
+        Level copy = level.fork();
+        copy.load(level.save());
+        if (copy.stateHash() != level.stateHash())
+            throw new IllegalStateException("State hash is out of date at tick " + level.getTickNumber());
+    }
+
     public boolean tick(char c, TickFlags flags){
         if (level == null) return false;
         Direction[] directions;
@@ -236,7 +276,7 @@ public class SuperCC {
         else{
             for (char charMovementKey : CHAR_MOVEMENT_KEYS) {
                 if (charMovementKey == c) {
-                    directions = new Direction[] {DIRECTIONS.get(c)};
+                    directions = DIRECTIONS.get(c).singleton();
                     return tick(c, directions, flags);
                 }
             }
@@ -318,6 +358,8 @@ public class SuperCC {
             System.out.println((size / (double) 1000)+" kb");
             System.out.println("\nAverage state size:");
             System.out.println((size / numMoves / 1000)+" kb");
+            System.out.println("\nStored history size:");
+            System.out.println((savestates.getHistorySize() / (double) 1000)+" kb");
         }
         catch (IOException e){
             System.out.println("Benchmark of level "+level+"failed");
@@ -395,6 +437,14 @@ public class SuperCC {
     }
 
     public static void main(String[] args){
+        if (ArgumentParser.isVerify(args))
+            System.exit(ArgumentParser.verify(args));
+        if (ArgumentParser.isSeedSearch(args))
+            System.exit(ArgumentParser.seedSearch(args));
+        if (ArgumentParser.isSeedWorker(args))
+            System.exit(ArgumentParser.seedWorker(args));
+        if (ArgumentParser.isRobustness(args))
+            System.exit(ArgumentParser.robustness(args));
         SwingUtilities.invokeLater(() -> initialise(args));
     }
 
@@ -6,6 +6,8 @@ import java.util.function.Consumer;
 public class ByteLayer implements Layer {
     
     private final byte[] layer;
+    private long hash;
+    private boolean hashValid; //only kept up to date once something has asked for it
     
     public Tile get(int i){
         return Tile.fromOrdinal(layer[i]);
@@ -17,12 +19,45 @@ public class ByteLayer implements Layer {
     }
     
     public void set(int i, Tile t){
-        layer[i] = (byte) t.ordinal();
+        setByte(i, (byte) t.ordinal());
     }
     
     public void set(Position p, Tile t){
         set(p.getIndex(), t);
     }
+
+    public byte getByte(int i){
+        return layer[i];
+    }
+
+    public byte getByte(Position p){
+        if (!p.isValid()) return (byte) Tile.WALL.ordinal();
+        return layer[p.getIndex()];
+    }
+
+    public void setByte(int i, byte b){
+        if (hashValid)
+            hash ^= tileKey(i, layer[i]) ^ tileKey(i, b);
+        layer[i] = b;
+    }
+
+    private static long tileKey(int i, byte b){
+        return Savestate.mixHash(0, i << 8 | b & 0xFF);
+    }
+
+    public long hash(){
+        if (!hashValid) {
+            long h = 0;
+            for (int i = 0; i < layer.length; i++) h ^= tileKey(i, layer[i]);
+            hash = h;
+            hashValid = true;
+        }
+        return hash;
+    }
+
+    public void invalidateHash(){
+        hashValid = false;
+    }
     
     public byte[] getBytes() {
         return layer;
@@ -38,6 +73,7 @@ public class ByteLayer implements Layer {
     
     public void load(byte[] b) {
         System.arraycopy(b, 0, layer, 0, layer.length);
+        hashValid = false;
     }
     
     public ByteLayer(byte[] layer){
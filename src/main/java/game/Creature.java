@@ -12,6 +12,9 @@ public abstract class Creature {
     protected boolean sliding, teleportFlag;
     protected Direction nextMoveDirectionCheat = null;
 
+    // Index in the monster list, maintained by CreatureList for its position index
+    int listIndex = -1;
+
     public Direction getDirection() {
         return direction;
     }
@@ -69,11 +72,24 @@ public abstract class Creature {
     public abstract boolean getForcedMove(Tile tile);
 
     public void setCreatureType(CreatureID creatureType) {
+        CreatureID oldType = this.creatureType;
         this.creatureType = creatureType;
+        changed(position, oldType);
     }
 
     public void kill() {
-        creatureType = CreatureID.DEAD;
+        setCreatureType(CreatureID.DEAD);
+    }
+
+    /**
+     * Must be called whenever the position or type of a creature changes, so
+     * that the monster list's position index stays up to date.
+     * @param oldPosition The position before the change.
+     * @param oldType The creature type before the change.
+     */
+    protected void changed(Position oldPosition, CreatureID oldType) {
+        if (listIndex >= 0 && level != null)
+            level.getMonsterList().update(this, oldPosition, oldType);
     }
 
     public boolean isDead() {
@@ -85,7 +101,9 @@ public abstract class Creature {
     }
 
     public void setPosition(Position position) {
+        Position oldPosition = this.position;
         this.position = position;
+        changed(oldPosition, creatureType);
     }
 
     /** Turns the creature to face a specified direction.
@@ -1,6 +1,7 @@
 package game;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Spliterator;
@@ -18,11 +19,149 @@ public abstract class CreatureList implements Iterable<Creature> {
     protected boolean teethStep;
     protected Creature chipToCr; //not used for MS but eh
 
+    /*
+     * Position index over the list, so that finding the creatures on a tile
+     * doesn't need a scan of the whole list. Only positions on the map are
+     * indexed, anything else falls back to a scan. Creatures report changes
+     * to their position and type through update().
+     */
+    private final int[] slots = new int[1024];          // 1 + list index of the first live creature other than chip
+    private final short[] live = new short[1024];       // live creatures other than chip
+    private final short[] dead = new short[1024];       // dead creatures, including animations
+
     public CreatureList(Creature[] monsters) {
-        list = monsters;
+        list = new Creature[0];
+        setList(monsters);
+    }
+
+    private static boolean isIndexed(CreatureID type) {
+        return type != CreatureID.DEAD && !type.isChip() && type != CreatureID.CHIP_SWIMMING;
+    }
+
+    private void index(int i, Position position, CreatureID type) {
+        if (!position.isValid())
+            return;
+        int p = position.index;
+        if (type == CreatureID.DEAD)
+            dead[p]++;
+        else if (isIndexed(type)) {
+            live[p]++;
+            if (slots[p] == 0 || i < slots[p] - 1)
+                slots[p] = i + 1;
+        }
+    }
+
+    private void unindex(int i, Position position, CreatureID type) {
+        if (!position.isValid())
+            return;
+        int p = position.index;
+        if (type == CreatureID.DEAD)
+            dead[p]--;
+        else if (isIndexed(type)) {
+            live[p]--;
+            if (slots[p] == i + 1) {
+                slots[p] = 0;
+                if (live[p] != 0) { //another creature shares the tile, find the first of them
+                    for (int j = i + 1; j < list.length; j++) {
+                        Creature c = list[j];
+                        if (c.position.equals(position) && isIndexed(c.creatureType)) {
+                            slots[p] = j + 1;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the position index after a creature's position or type has
+     * changed. Does nothing if the creature is not in the list.
+     * @param creature The creature that changed.
+     * @param oldPosition Its position before the change.
+     * @param oldType Its type before the change.
+     */
+    void update(Creature creature, Position oldPosition, CreatureID oldType) {
+        int i = creature.listIndex;
+        if (i >= list.length || list[i] != creature)
+            return;
+        unindex(i, oldPosition, oldType);
+        index(i, creature.position, creature.creatureType);
+    }
+
+    /**
+     * Replaces the list, rebuilding the position index.
+     * @param creatures The new list.
+     */
+    protected void setList(Creature[] creatures) {
+        for (Creature c : list)
+            c.listIndex = -1;
+        Arrays.fill(slots, 0);
+        Arrays.fill(live, (short) 0);
+        Arrays.fill(dead, (short) 0);
+        list = creatures;
+        for (int i = 0; i < list.length; i++) {
+            Creature c = list[i];
+            c.listIndex = i;
+            index(i, c.position, c.creatureType);
+        }
+    }
+
+    /**
+     * Replaces a single creature in the list.
+     * @param i The index to replace.
+     * @param creature The new creature.
+     */
+    protected void setCreature(int i, Creature creature) {
+        Creature old = list[i];
+        unindex(i, old.position, old.creatureType);
+        old.listIndex = -1;
+        list[i] = creature;
+        creature.listIndex = i;
+        index(i, creature.position, creature.creatureType);
+    }
+
+    /**
+     * @param position A position.
+     * @return Whether any creature in the list, alive or dead, is at the position.
+     */
+    protected boolean occupied(Position position) {
+        if (!position.isValid()) {
+            for (Creature c : list) {
+                if (c.getPosition().equals(position))
+                    return true;
+            }
+            return false;
+        }
+        return live[position.index] != 0 || dead[position.index] != 0
+                || (chipInList() && level.getChip().getPosition().equals(position));
+    }
+
+    /**
+     * @param position A position.
+     * @return Whether there could be dead creatures at the position. If this
+     * is false there definitely aren't any.
+     */
+    protected boolean mayHaveDead(Position position) {
+        return !position.isValid() || dead[position.index] != 0;
+    }
+
+    private boolean chipInList() {
+        Creature chip = level.getChip();
+        int i = chip.listIndex;
+        return i >= 0 && i < list.length && list[i] == chip;
     }
 
     public Creature creatureAt(Position position, boolean includeChip){
+        if (position.isValid()) {
+            int slot = slots[position.index];
+            if (includeChip && chipInList()) {
+                Creature chip = level.getChip();
+                if (!chip.isDead() && chip.getPosition().equals(position) && (slot == 0 || chip.listIndex < slot - 1))
+                    return chip;
+            }
+            return slot == 0 ? null : list[slot - 1];
+        }
         for (Creature c : list) {
             if (((c.getCreatureType() == CreatureID.CHIP || c == level.getChip()) && !includeChip)
                     || c.getCreatureType() == CreatureID.DEAD) {
@@ -71,7 +210,7 @@ public abstract class CreatureList implements Iterable<Creature> {
     }
 
     public void setCreatures(Creature[] creatures) {
-        list = creatures;
+        setList(creatures);
         for (Creature c : list)
             c.setLevel(level);
     }
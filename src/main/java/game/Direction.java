@@ -20,9 +20,15 @@ public enum Direction {
     public static final Direction[] CARDINALS = new Direction[] {UP, LEFT, DOWN, RIGHT};
     private static final Direction[] MOVEMENTS = new Direction[] {UP, LEFT, DOWN, RIGHT, UP_LEFT, DOWN_LEFT,
             DOWN_RIGHT, UP_RIGHT};
+    private static final Direction[] allDirections = values();
+    private static final Direction[][] singletons = new Direction[allDirections.length][];
+    static {
+        for (Direction d : allDirections)
+            singletons[d.ordinal()] = new Direction[] {d};
+    }
 
     public static Direction fromOrdinal(int ordinal){
-        return values()[ordinal];
+        return allDirections[ordinal];
     }
     
     private final int bits;
@@ -37,6 +43,16 @@ public enum Direction {
         return fromOrdinal((ordinal() + turn.ordinal()) & 0b11);
     }
 
+    /**
+     * Returns a shared single element array containing this direction, for
+     * use as a direction priority without allocating. The returned array
+     * must not be modified.
+     * @return An array containing only this direction.
+     */
+    public Direction[] singleton() {
+        return singletons[ordinal()];
+    }
+
     public Direction[] turn(Direction[] turns) {
         Direction[] dirs = new Direction[turns.length];
         for (int i = 0; i < turns.length; i++){
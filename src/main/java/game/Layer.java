@@ -13,6 +13,17 @@ package game;
  * ByteLayer: 20.73663555ms
  * TileLayer: 26.42774384ms
  *
+ * Remeasured on a newer machine, before and after the MS and Lynx movement
+ * code was moved to getByte and the Tile property table:
+ *
+ * Time taken to run pain, without writing savestates:
+ * ByteLayer (Tile predicates): 4.93ms
+ * ByteLayer (raw bytes): 4.52ms
+ *
+ * Time taken to run pain, with writing savestates:
+ * ByteLayer (Tile predicates): 9.1ms
+ * ByteLayer (raw bytes): 9.06ms
+ *
  */
 
 public interface Layer extends Iterable<Tile> {
@@ -24,8 +35,45 @@ public interface Layer extends Iterable<Tile> {
     public void set(int i, Tile t);
     
     public void set(Position p, Tile t);
+
+    /**
+     * Returns the raw tile byte at an index, for checking with
+     * {@link Tile#is(byte, int)} without going through the Tile enum.
+     * @param i The index of the tile (must be a valid index between 0 and 1023).
+     * @return The ordinal of the tile at that index.
+     */
+    public byte getByte(int i);
+
+    /**
+     * Returns the raw tile byte at a position. Invalid positions are read as walls.
+     * @param p The position of the tile.
+     * @return The ordinal of the tile at that position.
+     */
+    public byte getByte(Position p);
+
+    public void setByte(int i, byte b);
     
+    /**
+     * Returns the array backing the layer. Anything that writes to it
+     * directly must call {@link #invalidateHash()} afterwards.
+     * @return The ordinals of every tile in the layer.
+     */
     public byte[] getBytes();
+
+    /**
+     * A Zobrist hash of the layer: the XOR of a key for every tile and its
+     * index. It is kept up to date by set() and setByte(), and recalculated
+     * if it has been invalidated.
+     * @return The hash of the layer.
+     */
+    public long hash();
+
+    /**
+     * Marks the hash as out of date after the layer's bytes were written
+     * directly. Until the next call to hash(), setting tiles doesn't have
+     * to update it.
+     */
+    public void invalidateHash();
     
     public Tile[] getTiles();
     
@@ -201,4 +201,28 @@ public interface Level extends Savestate {
     void turnTanks();
 
     Creature newCreature(Direction dir, CreatureID creatureType, Position position);
+
+    /**
+     * Copies the level without going through a savestate.
+     * <p>
+     *     Data that never changes during play (the title, connections,
+     *     toggle doors, teleports and button maps) is shared with the fork,
+     *     everything that can change is copied. The fork and this level can
+     *     then be ticked on separate threads without interfering with each
+     *     other.
+     * </p>
+     * @return An independent copy of the level in its current state.
+     */
+    Level fork();
+
+    /**
+     * Copies a level that hasn't been played yet, starting the copy with a
+     * different seed, step and initial slide direction, as if it had been
+     * loaded with them.
+     * @param rngSeed The starting rng seed.
+     * @param step The starting step.
+     * @param initialSlide The initial random force floor direction, only used by Lynx.
+     * @return An independent copy of the level.
+     */
+    Level fork(int rngSeed, Step step, Direction initialSlide);
 }
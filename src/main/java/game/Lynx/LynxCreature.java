@@ -77,19 +77,19 @@ public class LynxCreature extends Creature {
             Position from = position;
             Position to = position.move(direction);
 
-            Tile tileFrom = level.getLayerFG().get(from);
+            byte tileFrom = level.getLayerFG().getByte(from);
             if (creatureType == CreatureID.CHIP) {
                 if (level.getBoots()[3] == 0) {
-                    if (tileFrom.isFF() && tDirection == NONE)
+                    if (Tile.is(tileFrom, IS_FF) && tDirection == NONE)
                         overrideToken = true;
-                    else if (!tileFrom.isIce() || level.getBoots()[2] != 0)
+                    else if (!Tile.is(tileFrom, IS_ICE) || level.getBoots()[2] != 0)
                         overrideToken = false;
                 }
             }
 
             boolean isChip = creatureType == CreatureID.CHIP;
             if (!canMakeMove(direction, to, !isChip, isChip, isChip, releasing)) {
-                if (level.getLayerFG().get(from).isIce() && (!isChip || level.getBoots()[2] == 0)) {
+                if (Tile.is(level.getLayerFG().getByte(from), IS_ICE) && (!isChip || level.getBoots()[2] == 0)) {
                     direction = direction.turn(TURN_AROUND);
                     this.direction = getSlideDirection(direction, level.getLayerFG().get(from), null, false);
                 }
@@ -111,7 +111,7 @@ public class LynxCreature extends Creature {
                 return false;
             }
 
-            position = to;
+            setPosition(to);
             if (creatureType != CreatureID.CHIP)
                 level.getMonsterList().adjustClaim(to, true);
 
@@ -130,10 +130,10 @@ public class LynxCreature extends Creature {
 
         if (creatureType != DEAD) { //analog to TW's continue movement
             int speed = creatureType == BLOB ? 1 : 2;
-            Tile tile = level.getLayerFG().get(position);
-            if (tile.isIce() && (creatureType != CreatureID.CHIP || level.getBoots()[2] == 0))
+            byte tile = level.getLayerFG().getByte(position);
+            if (Tile.is(tile, IS_ICE) && (creatureType != CreatureID.CHIP || level.getBoots()[2] == 0))
                 speed *= 2;
-            else if (tile.isFF() && (creatureType != CreatureID.CHIP || level.getBoots()[3] == 0))
+            else if (Tile.is(tile, IS_FF) && (creatureType != CreatureID.CHIP || level.getBoots()[3] == 0))
                 speed *= 2;
             timeTraveled -= speed;
         }
@@ -375,7 +375,7 @@ public class LynxCreature extends Creature {
         if (creatureType != DEAD) {
             if (creatureType != CreatureID.CHIP)
                 level.getMonsterList().adjustClaim(position, false);
-            creatureType = DEAD;
+            setCreatureType(DEAD);
             animationTimer = ((level.getTickNumber() + level.getStep().ordinal()) & 1) == 0 ? 12 : 11; //basically copied out of TW's source
             timeTraveled = 0;
             switch (level.getLayerFG().get(position)) { //direction is used for determining which graphic to draw
@@ -580,6 +580,17 @@ public class LynxCreature extends Creature {
     }
 
     public LynxCreature(int bitMonster) {
+        setBits(bitMonster);
+    }
+
+    /**
+     * Resets this creature to the state held in its packed form (see
+     * {@link #bits()}), as though it had been constructed from it.
+     */
+    void setBits(int bitMonster) {
+        tDirection = NONE;
+        fDirection = NONE;
+        nextMoveDirectionCheat = null;
         teleportFlag = ((bitMonster >>> 28) & 0b1) == 1;
         overrideToken = ((bitMonster >>> 27) & 0b1) == 1;
         sliding = ((bitMonster >>> 26) & 0b1) == 1;
@@ -593,6 +604,6 @@ public class LynxCreature extends Creature {
         }
         if (creatureType == TANK_STATIONARY)
             creatureType = TANK_MOVING;
-        position = new Position(bitMonster & 0b00_0000_1111111111);
+        position = Position.fromIndex(bitMonster & 0b00_0000_1111111111);
     }
 }
\ No newline at end of file
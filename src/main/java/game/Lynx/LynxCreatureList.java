@@ -3,16 +3,56 @@ package game.Lynx;
 import game.*;
 import game.button.BrownButton;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static game.CreatureID.*;
 
 public class LynxCreatureList extends CreatureList {
     private boolean[] creatureLayer;
     private int phase;
 
+    // Zobrist hash of the claimed array, see claimHash()
+    private long claimHash;
+    private boolean claimHashValid;
+
+    // Creatures recycled between savestate loads, see loadBits()
+    private LynxCreature[] pool = new LynxCreature[0];
+    private Creature[] loadedList = new Creature[0];
+
+    /**
+     * Replaces the monster list and claimed array with those read from a
+     * savestate. Like MSCreatureList.loadBits the creature objects are
+     * recycled from previous loads, so references to monsters taken before
+     * a load must not be kept past it.
+     * @param buffer The buffer positioned at the first monster.
+     * @param length The number of monsters to read.
+     */
+    void loadBits(ByteBuffer buffer, int length) {
+        if (pool.length < length) {
+            int oldLength = pool.length;
+            pool = Arrays.copyOf(pool, Math.max(length, oldLength * 2));
+            for (int i = oldLength; i < pool.length; i++)
+                pool[i] = new LynxCreature(0);
+        }
+        if (loadedList.length != length)
+            loadedList = new Creature[length];
+        for (int i = 0; i < length; i++) {
+            LynxCreature monster = pool[i];
+            monster.setBits(buffer.getInt());
+            monster.setLevel(level);
+            loadedList[i] = monster;
+        }
+        setList(loadedList);
+        if (creatureLayer == null)
+            creatureLayer = new boolean[1024];
+    }
+
     @Override
     public void setCreatures(Creature[] creatures) {
-        list = creatures;
+        setList(creatures);
         creatureLayer = new boolean[1024];
+        claimHashValid = false;
 
         for (Creature c : creatures) {
             if (c.getCreatureType() == CHIP)
@@ -45,7 +85,7 @@ public class LynxCreatureList extends CreatureList {
             newList[i + list.length] = newClones.get(i);
         }
 
-        list = newList;
+        setList(newList);
         newClones.clear();
     }
 
@@ -158,9 +198,36 @@ public class LynxCreatureList extends CreatureList {
     public void adjustClaim(Position position, boolean claim) {
         if (!position.isValid())
             return;
+        if (claimHashValid && creatureLayer[position.index] != claim)
+            claimHash ^= Savestate.mixHash(0, position.index);
         creatureLayer[position.index] = claim;
     }
 
+    /**
+     * A hash of the claimed array, kept up to date by adjustClaim() once it
+     * has been calculated.
+     * @return The XOR of a key for every claimed position.
+     */
+    long claimHash() {
+        if (!claimHashValid) {
+            long hash = 0;
+            for (int i = 0; i < creatureLayer.length; i++) {
+                if (creatureLayer[i]) hash ^= Savestate.mixHash(0, i);
+            }
+            claimHash = hash;
+            claimHashValid = true;
+        }
+        return claimHash;
+    }
+
+    /**
+     * Marks the claim hash as out of date after the claimed array was
+     * written directly.
+     */
+    void invalidateClaimHash() {
+        claimHashValid = false;
+    }
+
     @Override
     public boolean[] getClaimedArray() {
         return creatureLayer;
@@ -169,11 +236,12 @@ public class LynxCreatureList extends CreatureList {
     @Override
     public void setClaimedArray(boolean[] claimedArray) {
         this.creatureLayer = claimedArray;
+        claimHashValid = false;
     }
 
     @Override
     public Creature animationAt(Position position) {
-        if (!position.isValid())
+        if (!position.isValid() || !mayHaveDead(position))
             return null;
         for (Creature creature : list)
             if (creature.getPosition().equals(position) && creature.getCreatureType() == DEAD && creature.getAnimationTimer() != 0)
@@ -196,7 +264,7 @@ public class LynxCreatureList extends CreatureList {
             Creature c = list[i];
             if (c.isDead() && c.getAnimationTimer() == 0) {
                 clone = creature.clone();
-                list[i] = clone;
+                setCreature(i, clone);
                 break;
             }
         }
@@ -352,7 +352,7 @@ public class LynxLevel extends LynxSavestate implements Level {
 
         monsterList.initialise();
         monsterList.tick(); //select monster moves
-        Tile chipTileOld = layerFG.get(chip.getPosition());
+        byte chipTileOld = layerFG.getByte(chip.getPosition());
         int discard = 0;
         if (chip.getTimeTraveled() == 0) {
             if (selectChipMove(directions[0]))
@@ -363,15 +363,15 @@ public class LynxLevel extends LynxSavestate implements Level {
         Direction chipTDir = chip.getTDirection();
         monsterList.tick(); //move monsters
         boolean result = moveChip();
-        Tile chipTileNew = layerFG.get(chip.getPosition());
+        byte chipTileNew = layerFG.getByte(chip.getPosition());
         monsterList.tick(); //teleport monsters
         monsterList.finalise();
 
         if (turnTanks) {
             for (Creature m : monsterList) {
-                Tile floor = layerFG.get(m.getPosition());
+                byte floor = layerFG.getByte(m.getPosition());
                 if (m.getCreatureType() == CreatureID.TANK_MOVING && m.getTimeTraveled() == 0
-                        && floor != Tile.CLONE_MACHINE && !floor.isIce())
+                        && floor != (byte) Tile.CLONE_MACHINE.ordinal() && !Tile.is(floor, Tile.IS_ICE))
                     m.turn(TURN_AROUND);
             }
         }
@@ -385,13 +385,14 @@ public class LynxLevel extends LynxSavestate implements Level {
             setLevelWon(true);
             return discard;
         }
-        boolean sliding = chipTileOld.isSliding() || chipTileNew.isSliding()
-                || chipTileOld == Tile.TRAP || chipTileNew == Tile.TRAP;
-        boolean ff = (chipTileNew.isFF() || chipTileOld.isFF()) && boots[3] == 0;
-        boolean ice = (chipTileNew.isIce() || chipTileOld.isIce()) && boots[2] == 0;
+        byte trap = (byte) Tile.TRAP.ordinal();
+        boolean sliding = Tile.is(chipTileOld, Tile.IS_SLIDING) || Tile.is(chipTileNew, Tile.IS_SLIDING)
+                || chipTileOld == trap || chipTileNew == trap;
+        boolean ff = (Tile.is(chipTileNew, Tile.IS_FF) || Tile.is(chipTileOld, Tile.IS_FF)) && boots[3] == 0;
+        boolean ice = (Tile.is(chipTileNew, Tile.IS_ICE) || Tile.is(chipTileOld, Tile.IS_ICE)) && boots[2] == 0;
 
         if (result && !chip.isSliding() && !(sliding && (ff || ice)
-                || chipTileOld == Tile.TRAP || chipTileNew == Tile.TRAP))
+                || chipTileOld == trap || chipTileNew == trap))
             return MASK_TICK_MULTI | discard;
         else
             return discard;
@@ -523,4 +524,46 @@ public class LynxLevel extends LynxSavestate implements Level {
             }
         }
     }
+
+    private LynxLevel(LynxLevel other, int rngSeed, Step step, Direction INITIAL_SLIDE){
+        super(other);
+
+        this.levelNumber = other.levelNumber;
+        this.startTime = other.startTime;
+        this.title = other.title;
+        this.password = other.password;
+        this.hint = other.hint;
+        this.author = other.author;
+        this.toggleDoors = other.toggleDoors;
+        this.teleports = other.teleports;
+        this.greenButtons = other.greenButtons;     // Cheats replace the button maps rather than changing them
+        this.redButtons = other.redButtons;
+        this.brownButtons = other.brownButtons;
+        this.blueButtons = other.blueButtons;
+        this.trapButtons = other.trapButtons;
+        this.rngSeed = rngSeed;
+        this.step = step;
+        this.levelWon = other.levelWon;
+        this.turnTanks = other.turnTanks;
+        this.cheats = new Cheats(this);
+        this.LEVELSET_LENGTH = other.LEVELSET_LENGTH;
+        this.INITIAL_SLIDE = INITIAL_SLIDE;
+
+        for (Creature c : monsterList)
+            c.setLevel(this);
+        this.monsterList.setLevel(this);
+    }
+
+    @Override
+    public LynxLevel fork(){
+        return new LynxLevel(this, rngSeed, step, INITIAL_SLIDE);
+    }
+
+    @Override
+    public LynxLevel fork(int rngSeed, Step step, Direction initialSlide){
+        LynxLevel level = new LynxLevel(this, rngSeed, step, initialSlide);
+        level.rng = new RNG(rngSeed, 0, 0);
+        level.rffDirection = initialSlide.turn(TURN_LEFT);
+        return level;
+    }
 }
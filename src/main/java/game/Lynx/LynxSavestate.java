@@ -2,10 +2,11 @@ package game.Lynx;
 
 import game.*;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 public class LynxSavestate implements Savestate {
 
-    private static final byte UNCOMPRESSED_V2 = 6;
-    private static final byte UNCOMPRESSED_V1 = 4;
     public Layer layerFG;
     public Creature chip;
     public int tickNumber;
@@ -18,65 +19,152 @@ public class LynxSavestate implements Savestate {
 
     protected boolean lastMoveForced;
 
+    // Scratch space for copying the claimed array in bulk
+    private final byte[] claims = new byte[1024];
+
+    // The layer rarely changes in Lynx as creatures aren't drawn on it, so
+    // the last layer encoded or decoded is kept along with its encoding
+    private final byte[] compressedLayer = new byte[MAX_COMPRESSED_LAYER];
+    private final byte[] compressedFrom = new byte[1024];
+    private int compressedLayerLength;
+
+    private int compressLayer() {
+        byte[] layer = layerFG.getBytes();
+        if (compressedLayerLength == 0 || !Arrays.equals(layer, compressedFrom)) {
+            compressedLayerLength = Savestate.compressLayer(layer, compressedLayer);
+            System.arraycopy(layer, 0, compressedFrom, 0, layer.length);
+        }
+        return compressedLayerLength;
+    }
+
+    private void readCompressedLayer(ByteBuffer buffer) {
+        byte[] layer = layerFG.getBytes();
+        int length = compressedLayerLength;
+        if (length != 0 && buffer.hasArray() && buffer.remaining() >= length) {
+            int start = buffer.arrayOffset() + buffer.position();
+            if (Arrays.equals(buffer.array(), start, start + length, compressedLayer, 0, length)) {
+                System.arraycopy(compressedFrom, 0, layer, 0, layer.length);
+                buffer.position(buffer.position() + length);
+                return;
+            }
+        }
+        int start = buffer.position();
+        Savestate.readLayer(buffer, PACKED_V3, layer);
+        compressedLayerLength = buffer.position() - start;
+        buffer.get(start, compressedLayer, 0, compressedLayerLength);
+        System.arraycopy(layer, 0, compressedFrom, 0, layer.length);
+    }
+
     @Override
-    public byte[] save() {
-        int length =
+    public int savestateSize() {
+        return
                 1 +                             // version
                 1 +                             // ruleset
-                1024 +                          // layerFG
                 4 +                             // tick number
                 2 +                             // chips left
                 4 * 2 +                         // keys
                 4 * 1 +                         // boots
                 3 * 4 +                         // rng
                 1 +                             // RFF
+                1024 / 8 +                      // claimed array
+                1 +                             // lastMoveForced
                 2 +                             // monsterlist size
                 monsterList.size() * 4 +        // monsterlist
-                1024 +                          // claimed array
-                1;                              // lastMoveForced
-
-        SavestateWriter writer = new SavestateWriter(length);
-        writer.write(UNCOMPRESSED_V2); //Every time this is updated also update compress() in SavestateManager.java
-        writer.write(Ruleset.LYNX.ordinal());
-        writer.write(layerFG.getBytes());
-        writer.writeInt(tickNumber);
-        writer.writeShort(chipsLeft);
-        writer.writeShorts(keys);
-        writer.write(boots);
-        writer.writeInt(rng.getCurrentValue());
-        writer.writeInt(rng.getPRNG1());
-        writer.writeInt(rng.getPRNG2());
-        writer.write(rffDirection.ordinal());
-        writer.writeShort(monsterList.size());
-        writer.writeIntMonsterArray(monsterList.getCreatures());
-        writer.writeBools(monsterList.getClaimedArray());
-        writer.writeBool(lastMoveForced);
-
-        return writer.toByteArray();
+                compressLayer();                // layerFG
     }
 
+    /**
+     * Write a savestate. The claimed array is packed into a bitset and the
+     * layer is run length encoded. Everything up to the monster list is a
+     * fixed size and the layer goes last, so that a change to the length of
+     * either moves as little as possible in the rewind history's deltas.
+     * @param buffer the buffer to write to
+     */
     @Override
-    public void load(byte[] savestate) {
-        SavestateReader reader = new SavestateReader(savestate);
-        int version = reader.read();
-        if (version == UNCOMPRESSED_V2 || version == COMPRESSED_V2) {
-            if (reader.read() != Ruleset.LYNX.ordinal())
-                throw new UnsupportedOperationException("Can only load lynx savestates!");
-            layerFG.load(reader.readLayer(version));
-            tickNumber = reader.readInt();
-            chipsLeft = (short) reader.readShort();
-            keys = reader.readShorts(4);
-            boots = reader.readBytes(4);
-            rng.setCurrentValue(reader.readInt());
-            rng.setPRNG1(reader.readInt());
-            rng.setPRNG2(reader.readInt());
-            rffDirection = Direction.fromOrdinal(reader.read());
-            monsterList.setCreatures(reader.readLynxMonsterArray(reader.readShort()));
-            monsterList.setClaimedArray(reader.readBools(1024));
-            lastMoveForced = reader.readBool();
-
-            chip = monsterList.get(0);
+    public void saveInto(ByteBuffer buffer) {
+        buffer.put(PACKED_V3); //Every time this is updated also update Savestate.getChip
+        buffer.put((byte) Ruleset.LYNX.ordinal());
+        buffer.putInt(tickNumber);
+        buffer.putShort((short) chipsLeft);
+        for (short key : keys) buffer.putShort(key);
+        buffer.put(boots);
+        buffer.putInt(rng.getCurrentValue());
+        buffer.putInt(rng.getPRNG1());
+        buffer.putInt(rng.getPRNG2());
+        buffer.put((byte) rffDirection.ordinal());
+        boolean[] claimed = monsterList.getClaimedArray();
+        for (int i = 0; i < claimed.length / 8; i++) {
+            int b = 0;
+            for (int j = 0; j < 8; j++) {
+                if (claimed[i * 8 + j]) b |= 1 << j;
+            }
+            claims[i] = (byte) b;
         }
+        buffer.put(claims, 0, claimed.length / 8);
+        buffer.put((byte) (lastMoveForced ? 1 : 0));
+        Creature[] monsters = monsterList.getCreatures();
+        buffer.putShort((short) monsters.length);
+        for (Creature monster : monsters) buffer.putInt(monster.bits());
+        buffer.put(compressedLayer, 0, compressLayer());
+    }
+
+    @Override
+    public void loadFrom(ByteBuffer buffer) {
+        int version = buffer.get();
+        if (version != PACKED_V3 && version != UNCOMPRESSED_V2 && version != COMPRESSED_V2)
+            return;
+        if (buffer.get() != Ruleset.LYNX.ordinal())
+            throw new UnsupportedOperationException("Can only load lynx savestates!");
+        if (version != PACKED_V3)
+            Savestate.readLayer(buffer, version, layerFG.getBytes());
+        tickNumber = buffer.getInt();
+        chipsLeft = buffer.getShort();
+        for (int i = 0; i < keys.length; i++) keys[i] = buffer.getShort();
+        buffer.get(boots);
+        rng.setCurrentValue(buffer.getInt());
+        rng.setPRNG1(buffer.getInt());
+        rng.setPRNG2(buffer.getInt());
+        rffDirection = Direction.fromOrdinal(buffer.get());
+        boolean[] claimed = monsterList.getClaimedArray();
+        if (version == PACKED_V3) {
+            buffer.get(claims, 0, claimed.length / 8);
+            for (int i = 0; i < claimed.length / 8; i++) {
+                int b = claims[i];
+                for (int j = 0; j < 8; j++) claimed[i * 8 + j] = (b & (1 << j)) != 0;
+            }
+            lastMoveForced = buffer.get() == 1;
+            ((LynxCreatureList) monsterList).loadBits(buffer, buffer.getShort() & 0xFFFF);
+            readCompressedLayer(buffer);
+        }
+        else { //older savestates, kept so that saved rewind histories still load
+            ((LynxCreatureList) monsterList).loadBits(buffer, buffer.getShort() & 0xFFFF);
+            claimed = monsterList.getClaimedArray();
+            Savestate.readLayer(buffer, version, claims);
+            for (int i = 0; i < claimed.length; i++) claimed[i] = claims[i] == 1;
+            lastMoveForced = buffer.get() == 1;
+        }
+        layerFG.invalidateHash();
+        ((LynxCreatureList) monsterList).invalidateClaimHash();
+
+        chip = monsterList.get(0);
+    }
+
+    @Override
+    public long stateHash() {
+        long hash = Savestate.mixHash(Ruleset.LYNX.ordinal(), layerFG.hash());
+        hash = Savestate.mixHash(hash, tickNumber);
+        hash = Savestate.mixHash(hash, (short) chipsLeft);
+        for (short key : keys) hash = Savestate.mixHash(hash, key);
+        for (byte boot : boots) hash = Savestate.mixHash(hash, boot);
+        hash = Savestate.mixHash(hash, rng.getCurrentValue());
+        hash = Savestate.mixHash(hash, rng.getPRNG1());
+        hash = Savestate.mixHash(hash, rng.getPRNG2());
+        hash = Savestate.mixHash(hash, rffDirection.ordinal());
+        hash = Savestate.mixHash(hash, ((LynxCreatureList) monsterList).claimHash());
+        hash = Savestate.mixHash(hash, lastMoveForced ? 1 : 0);
+        hash = Savestate.mixHash(hash, monsterList.size());
+        for (int i = 0; i < monsterList.size(); i++) hash = Savestate.mixHash(hash, monsterList.get(i).bits());
+        return hash;
     }
 
     protected LynxSavestate(Layer layerFG, CreatureList monsterList, Creature chip,
@@ -90,4 +178,29 @@ public class LynxSavestate implements Savestate {
         this.boots = boots;
         this.rng = rng;
     }
+
+    /**
+     * Copies every part of a savestate that can change during play. Creatures
+     * are copied through their packed form, as they are when saving.
+     * @param other the savestate to copy.
+     */
+    protected LynxSavestate(LynxSavestate other){
+        layerFG = new ByteLayer(other.layerFG.getBytes().clone());
+        tickNumber = other.tickNumber;
+        chipsLeft = other.chipsLeft;
+        keys = other.keys.clone();
+        boots = other.boots.clone();
+        rng = new RNG(other.rng.getCurrentValue(), other.rng.getPRNG1(), other.rng.getPRNG2());
+        rffDirection = other.rffDirection;
+        lastMoveForced = other.lastMoveForced;
+
+        Creature[] otherMonsters = other.monsterList.getCreatures();
+        Creature[] monsters = new Creature[otherMonsters.length];
+        for (int i = 0; i < monsters.length; i++)
+            monsters[i] = new LynxCreature(otherMonsters[i].bits());
+        monsterList = new LynxCreatureList(monsters);
+        boolean[] claimed = other.monsterList.getClaimedArray();
+        System.arraycopy(claimed, 0, monsterList.getClaimedArray(), 0, claimed.length);
+        chip = monsters[other.monsterList.getIndexOfCreature(other.chip)];
+    }
 }
@@ -3,7 +3,6 @@ package game.MS;
 import game.*;
 import game.button.*;
 
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 
@@ -21,36 +20,76 @@ import static game.Tile.*;
  */
 public class MSCreature extends Creature {
 
+    // Direction priorities for each creature type, indexed by the direction the creature is facing
+    private static final Direction[][]
+            SLIDE_PRIORITIES = turnTable(TURN_FORWARD, TURN_AROUND),
+            BUG_PRIORITIES = turnTable(TURN_LEFT, TURN_FORWARD, TURN_RIGHT, TURN_AROUND),
+            FIREBALL_PRIORITIES = turnTable(TURN_FORWARD, TURN_RIGHT, TURN_LEFT, TURN_AROUND),
+            PINK_BALL_PRIORITIES = turnTable(TURN_FORWARD, TURN_AROUND),
+            GLIDER_PRIORITIES = turnTable(TURN_FORWARD, TURN_LEFT, TURN_RIGHT, TURN_AROUND),
+            PARAMECIUM_PRIORITIES = turnTable(TURN_RIGHT, TURN_FORWARD, TURN_LEFT, TURN_AROUND);
+    private static final Direction[] NO_DIRECTIONS = new Direction[] {};
+
+    private static Direction[][] turnTable(Direction... turns) {
+        Direction[] directions = Direction.values();
+        Direction[][] table = new Direction[directions.length][];
+        for (Direction d : directions)
+            table[d.ordinal()] = d.turn(turns);
+        return table;
+    }
+
     // Direction-related methods
+
+    /**
+     * The array returned is either shared between creatures or a scratch
+     * buffer belonging to the level, so it must not be modified and is only
+     * valid until the next call.
+     */
     @Override
     public Direction[] getDirectionPriority(Creature chip, RNG rng){
         if (nextMoveDirectionCheat != null) {
-            Direction[] directions = new Direction[] {nextMoveDirectionCheat};
+            Direction[] directions = nextMoveDirectionCheat.singleton();
             nextMoveDirectionCheat = null;
             if (creatureType == WALKER || creatureType == BLOB)
                 rng.random4();
             return directions;
         }
         if (isSliding())
-            return direction.turn(new Direction[] {TURN_FORWARD, TURN_AROUND});
+            return SLIDE_PRIORITIES[direction.ordinal()];
+        MSLevel msLevel = (MSLevel) level;
         switch (creatureType){
-            case BUG: return direction.turn(new Direction[] {TURN_LEFT, TURN_FORWARD, TURN_RIGHT, TURN_AROUND});
-            case FIREBALL: return direction.turn(new Direction[] {TURN_FORWARD, TURN_RIGHT, TURN_LEFT, TURN_AROUND});
-            case PINK_BALL: return direction.turn(new Direction[] {TURN_FORWARD, TURN_AROUND});
-            case TANK_STATIONARY: return new Direction[] {};
-            case GLIDER: return direction.turn(new Direction[] {TURN_FORWARD, TURN_LEFT, TURN_RIGHT, TURN_AROUND});
+            case BUG: return BUG_PRIORITIES[direction.ordinal()];
+            case FIREBALL: return FIREBALL_PRIORITIES[direction.ordinal()];
+            case PINK_BALL: return PINK_BALL_PRIORITIES[direction.ordinal()];
+            case TANK_STATIONARY: return NO_DIRECTIONS;
+            case GLIDER: return GLIDER_PRIORITIES[direction.ordinal()];
             case TEETH: return position.seek(chip.getPosition());
             case WALKER:
-                Direction[] directions = new Direction[] {TURN_LEFT, TURN_AROUND, TURN_RIGHT};
-                rng.randomPermutation3(directions);
-                return direction.turn(new Direction[] {TURN_FORWARD, directions[0], directions[1], directions[2]});
+                Direction[] turns = msLevel.walkerTurns;
+                turns[0] = TURN_LEFT;
+                turns[1] = TURN_AROUND;
+                turns[2] = TURN_RIGHT;
+                rng.randomPermutation3(turns);
+                Direction[] directions = msLevel.walkerDirections;
+                directions[0] = direction;
+                directions[1] = direction.turn(turns[0]);
+                directions[2] = direction.turn(turns[1]);
+                directions[3] = direction.turn(turns[2]);
+                return directions;
             case BLOB:
-                directions = new Direction[] {TURN_FORWARD, TURN_LEFT, TURN_AROUND, TURN_RIGHT};
-                rng.randomPermutation4(directions);
-                return direction.turn(directions);
-            case PARAMECIUM: return direction.turn(new Direction[] {TURN_RIGHT, TURN_FORWARD, TURN_LEFT, TURN_AROUND});
-            case TANK_MOVING: return new Direction[] {getDirection()};
-            default: return new Direction[] {};
+                turns = msLevel.blobTurns;
+                turns[0] = TURN_FORWARD;
+                turns[1] = TURN_LEFT;
+                turns[2] = TURN_AROUND;
+                turns[3] = TURN_RIGHT;
+                rng.randomPermutation4(turns);
+                directions = msLevel.blobDirections;
+                for (int i = 0; i < 4; i++)
+                    directions[i] = direction.turn(turns[i]);
+                return directions;
+            case PARAMECIUM: return PARAMECIUM_PRIORITIES[direction.ordinal()];
+            case TANK_MOVING: return direction.singleton();
+            default: return NO_DIRECTIONS;
         }
     }
     public Direction[] seek(Position position){
@@ -105,19 +144,19 @@ public class MSCreature extends Creature {
 
     Direction[] getSlideDirectionPriority(Tile tile, RNG rng, boolean changeOnRFF){
         if (nextMoveDirectionCheat != null) {
-            Direction[] directions = new Direction[] {nextMoveDirectionCheat};
+            Direction[] directions = nextMoveDirectionCheat.singleton();
             nextMoveDirectionCheat = null;
             return directions;
         }
         if (tile.isIce() || (creatureType.isChip() && tile == TELEPORT)){
-            Direction[] directions = direction.turn(new Direction[] {TURN_FORWARD, TURN_AROUND});
-            directions[0] = getSlideDirection(directions[0], tile, rng, true);
-            directions[1] = getSlideDirection(directions[1], tile, rng, true);
+            Direction[] directions = ((MSLevel) level).slideDirections;
+            directions[0] = getSlideDirection(direction, tile, rng, true);
+            directions[1] = getSlideDirection(direction.turn(TURN_AROUND), tile, rng, true);
             return directions;
         }
-        else if (tile == TELEPORT) return new Direction[] {direction};
-        else if (tile == FF_RANDOM && !changeOnRFF) return new Direction[] {direction};
-        else return new Direction[] {getSlideDirection(getDirection(), tile, rng, true)};
+        else if (tile == TELEPORT) return direction.singleton();
+        else if (tile == FF_RANDOM && !changeOnRFF) return direction.singleton();
+        else return getSlideDirection(getDirection(), tile, rng, true).singleton();
     }
 
     // Sliding-related functions
@@ -137,13 +176,14 @@ public class MSCreature extends Creature {
             return;
         }
         MSLevel msLevel = (MSLevel) level;
+        boolean onTrap = msLevel.getLayerBG().getByte(position) == (byte) TRAP.ordinal();
         if (wasSliding && !isSliding){
             if (!isDead() && creatureType.isChip())
                 setCreatureType(CHIP);
-            else if (!creatureType.isBlock() || msLevel.getLayerBG().get(position) != TRAP)
+            else if (!creatureType.isBlock() || !onTrap)
                 msLevel.slipList.remove(this);
             // Handles block colliding on trap
-            else if (creatureType.isBlock() && msLevel.getLayerBG().get(position) == TRAP) {
+            else if (creatureType.isBlock() && onTrap) {
                 msLevel.slipList.remove(this);
                 if (canLeave(direction, position))
                     msLevel.slipList.add(this);
@@ -163,14 +203,14 @@ public class MSCreature extends Creature {
                 }
             }
         }
-        if (creatureType.isBlock() && isSliding && msLevel.getLayerBG().get(position) == TRAP
+        if (creatureType.isBlock() && isSliding && onTrap
             && (!canLeave(direction, position)) && !entered){
             msLevel.slipList.remove(this);
             msLevel.slipList.add(this);
             this.sliding = true;
             return;
         }
-        if (creatureType.isBlock() && wasSliding && msLevel.getLayerBG().get(position) == TRAP && canLeave(direction, position))
+        if (creatureType.isBlock() && wasSliding && onTrap && canLeave(direction, position))
             this.sliding = true; //This prevents errors about adding a block to the sliplist twice
         else this.sliding = isSliding;
     }
@@ -200,12 +240,15 @@ public class MSCreature extends Creature {
         return 0; //See javadocs for this in Creature
     }
 
-    private void teleport(Direction direction, Position position, List<Button> pressedButtons) {
+    // Where the last teleport entered by tryEnter() sent this creature, see tryMove()
+    private Position teleportDestination;
+
+    private Position teleport(Direction direction, Position position, List<Button> pressedButtons) {
         Position chipPosition = level.getChip().getPosition();
         if (creatureType.isChip()) level.popTile(chipPosition);
         int teleportIndex;
         for (teleportIndex = 0; true; teleportIndex++){
-            if (teleportIndex >= level.getTeleports().length) return;
+            if (teleportIndex >= level.getTeleports().length) return position;
             if (level.getTeleports()[teleportIndex].equals(position)){
                 break;
             }
@@ -215,7 +258,7 @@ public class MSCreature extends Creature {
         do{
             i--;
             if (i < 0) i += l;
-            position.setIndex(level.getTeleports()[i].getIndex());
+            position = level.getTeleports()[i];
             if (level.getLayerFG().get(position) != TELEPORT) {
                 if (!creatureType.isChip()) { //Allows monsters  to still partial post off themselves
                     continue;
@@ -274,6 +317,7 @@ public class MSCreature extends Creature {
             }
         }
         while (i != teleportIndex);
+        return position;
     }
 
     //the booleans go unused so they are given junk names
@@ -440,8 +484,8 @@ public class MSCreature extends Creature {
                         return false; //Normally you would check if Chip could enter the resulting tile but seeing as its always a clone machine on the bottom it'll always be false, therefore i always have this return false
                     }
                     if (block.tryMove(direction, false, pressedButtons)){
-                        for (BrownButton b : msLevel.getBrownButtons().values()) { //Ok so since blocks don't follow normal creature rules they don't get caught in the section of tick() further down that closes traps after creatures leave, so I had to manually do it here
-                            if (b.getTargetPosition().equals(newPosition) && msLevel.getLayerFG().get(b.getButtonPosition()) == BUTTON_BROWN) {
+                        for (BrownButton b : msLevel.firstBrownButtonsTo(newPosition)) { //Ok so since blocks don't follow normal creature rules they don't get caught in the section of tick() further down that closes traps after creatures leave, so I had to manually do it here
+                            if (msLevel.getLayerFG().get(b.getButtonPosition()) == BUTTON_BROWN) {
                                 b.release(msLevel);
                             }
                         }
@@ -570,7 +614,7 @@ public class MSCreature extends Creature {
                 return true;
             case TELEPORT:
                 sliding = true;
-                teleport(direction, newPosition, pressedButtons);
+                teleportDestination = teleport(direction, newPosition, pressedButtons);
                 return true;
             case BOMB:
                 if (!creatureType.isChip()) {
@@ -579,13 +623,10 @@ public class MSCreature extends Creature {
                 kill();
                 return true;
             case TRAP:
-                List<BrownButton> buttons = level.getTrapButtons().getList(newPosition);
-                if (buttons != null) {
-                    for (BrownButton button : buttons) {
-                        if (msLevel.getLayerFG().get(button.getButtonPosition()) != BUTTON_BROWN) {
-                            msLevel.traps.set(msLevel.trapIndexMap.get(button.getTargetPosition()), true);
-                            break;
-                        }
+                for (BrownButton button : msLevel.trapButtonsAt(newPosition)) {
+                    if (msLevel.getLayerFG().get(button.getButtonPosition()) != BUTTON_BROWN) {
+                        msLevel.traps.set(msLevel.trapIndex(button.getTargetPosition()), true);
+                        break;
                     }
                 }
                 return true;
@@ -639,8 +680,8 @@ public class MSCreature extends Creature {
                         return false; //Normally you would check if Chip could enter the resulting tile but seeing as its always a clone machine on the bottom it'll always be false, therefore i always have this return false
                     }
                     if (block.tryMove(direction, false, pressedButtons)){
-                        for (BrownButton b3 : msLevel.getBrownButtons().values()) { //Ok so since blocks don't follow normal creature rules they don't get caught in the section of tick() further down that closes traps after creatures leave, so I had to manually do it here
-                            if (b3.getTargetPosition().equals(newPosition) && msLevel.getLayerFG().get(b3.getButtonPosition()) == BUTTON_BROWN) {
+                        for (BrownButton b3 : msLevel.firstBrownButtonsTo(newPosition)) { //Ok so since blocks don't follow normal creature rules they don't get caught in the section of tick() further down that closes traps after creatures leave, so I had to manually do it here
+                            if (msLevel.getLayerFG().get(b3.getButtonPosition()) == BUTTON_BROWN) {
                                 b3.release(msLevel);
                             }
                         }
@@ -734,7 +775,7 @@ public class MSCreature extends Creature {
         boolean wasSliding = sliding;
         Position newPosition = position.move(direction);
         if (!newPosition.isValid())
-            newPosition = new Position(-1);
+            newPosition = Position.fromIndex(-1);
 
         Tile newTileFG = level.getLayerFG().get(newPosition);
         Tile newTileBG = level.getLayerBG().get(newPosition);
@@ -743,8 +784,8 @@ public class MSCreature extends Creature {
         boolean isMonster = creatureType.isMonster();
         boolean pickupCheck = false;
         boolean blockMachineCheck = true;
-        if (level.getLayerBG().get(newPosition) == CLONE_MACHINE && (level.getLayerFG().get(newPosition) == Tile.BLOCK || level.getLayerFG().get(newPosition) == Tile.ICE_BLOCK)) blockMachineCheck = true;
-        else if (level.getLayerBG().get(newPosition) == CLONE_MACHINE && !isBlock) blockMachineCheck = false;
+        if (newTileBG == CLONE_MACHINE && newTileFG.isBlock()) blockMachineCheck = true;
+        else if (newTileBG == CLONE_MACHINE && !isBlock) blockMachineCheck = false;
 
         if ((creatureType.isMonster()) && newTileFG.isChip()) newTileFG = newTileBG;
         if (newTileFG.isPickup()) {
@@ -762,10 +803,15 @@ public class MSCreature extends Creature {
 
             if (newTileBG == CLONE_MACHINE && (!isChip || newTileFG.isCreature())) newTileFG = newTileBG;
 
+            teleportDestination = null;
             if (tryEnter(direction, newPosition, newTileFG, pressedButtons)) {
+                if (teleportDestination != null) {
+                    newPosition = teleportDestination;
+                    teleportDestination = null;
+                }
                 if (newTileFG != TELEPORT) level.popTile(position);
                 else if (!isChip) level.popTile(position); //You probably noticed that this works for every creature other than Chip, we handle this very specific case (Chip and teleport) over in the teleport method so we cancel it out here, and yes it does in fact cause some issues if we don't, possibly even crashes if you revert both this and the teleport method handle
-                position = newPosition;
+                setPosition(newPosition);
 
                 //!!DIRTY HACK SECTION BEGINS!!//
                 if (isChip && newTileBG == EXIT && level.getLayerFG().get(newPosition) == FLOOR && level.getChip().getPosition() == newPosition) {
@@ -803,18 +849,22 @@ public class MSCreature extends Creature {
 
     boolean tick(Direction[] directions, boolean slidingMove){
         MSLevel msLevel = (MSLevel) level;
-        MSCreature oldCreature = clone();
+        Position oldPosition = position;
+        Direction oldDirection = direction;
+        boolean oldSliding = sliding;
         if (!creatureType.isChip() && !isSliding()) level.getMonsterList().direction = direction;
+        List<Button> pressedButtons = msLevel.borrowButtonList();
         for (Direction newDirection : directions){
 
-            LinkedList<Button> pressedButtons = new LinkedList<>();
+            pressedButtons.clear();
 
             if (tryMove(newDirection, slidingMove, pressedButtons)){
                 for(int i = pressedButtons.size() - 1; i >= 0; i--) {
                     pressedButtons.get(i).press(msLevel);
                 }
-                if (msLevel.getLayerFG().get(oldCreature.position) == BUTTON_BROWN){
-                    BrownButton b = ((BrownButton) msLevel.getButton(oldCreature.position, BrownButton.class));
+                msLevel.returnButtonList(pressedButtons);
+                if (msLevel.getLayerFG().get(oldPosition) == BUTTON_BROWN){
+                    BrownButton b = ((BrownButton) msLevel.getButton(oldPosition, BrownButton.class));
                     if (b != null && msLevel.getLayerBG().get(b.getTargetPosition()) != TRAP && !b.getTargetPosition().equals(position)) {
                         b.release(msLevel);
                     }
@@ -822,9 +872,9 @@ public class MSCreature extends Creature {
                         b.release(msLevel);
                     }
                 }
-                if (msLevel.getLayerFG().get(oldCreature.position) == TRAP || msLevel.getLayerBG().get(oldCreature.position) == TRAP){
-                    for (BrownButton b : msLevel.getBrownButtons().values()) {
-                        if (b.getTargetPosition().equals(oldCreature.position) && msLevel.getLayerFG().get(b.getButtonPosition()) == BUTTON_BROWN) {
+                if (msLevel.getLayerFG().get(oldPosition) == TRAP || msLevel.getLayerBG().get(oldPosition) == TRAP){
+                    for (BrownButton b : msLevel.firstBrownButtonsTo(oldPosition)) {
+                        if (msLevel.getLayerFG().get(b.getButtonPosition()) == BUTTON_BROWN) {
                             b.release(msLevel);
                         }
                     }
@@ -838,16 +888,17 @@ public class MSCreature extends Creature {
             if (!creatureType.isChip() && !isSliding()) level.getMonsterList().direction = newDirection;
 
         }
-        setSliding(this.sliding, oldCreature.sliding);
+        msLevel.returnButtonList(pressedButtons);
+        setSliding(this.sliding, oldSliding);
         if (creatureType.isTank() && !isSliding()) setCreatureType(TANK_STATIONARY);
-        if (!creatureType.isChip() &&!(creatureType.isBlock() && msLevel.getLayerBG().get(position) == FF_RANDOM)) setDirection(oldCreature.direction);
+        if (!creatureType.isChip() &&!(creatureType.isBlock() && msLevel.getLayerBG().get(position) == FF_RANDOM)) setDirection(oldDirection);
         else msLevel.getLayerFG().set(position, toTile());
         return false;
     }
 
     @Override
     public boolean tick(boolean releasing) { //Ideally shouldn't be used for MS, the method this calls should be used instead
-        return tick(new Direction[]{direction}, sliding);
+        return tick(direction.singleton(), sliding);
     }
     
     public MSCreature(Direction direction, CreatureID creatureType, Position position){
@@ -872,11 +923,24 @@ public class MSCreature extends Creature {
         if (creatureType == TANK_STATIONARY) creatureType = TANK_MOVING;
     }
     public MSCreature(int bitMonster){
+        setBits(bitMonster);
+    }
+
+    /**
+     * Overwrites this creature with one decoded from the encoding described
+     * at the top of this class. This lets savestate loading reuse creature
+     * objects instead of allocating new ones.
+     * @param bitMonster The encoded creature.
+     */
+    void setBits(int bitMonster){
         direction = Direction.fromOrdinal((bitMonster >>> 14) & 0b11);
         creatureType = CreatureID.fromOrdinal((bitMonster >>> 10) & 0b1111);
-        if (creatureType == CHIP_SLIDING)
-            sliding = true;
-        position = new Position(bitMonster & 0b00_0000_1111111111);
+        sliding = creatureType == CHIP_SLIDING;
+        position = Position.fromIndex(bitMonster & 0b00_0000_1111111111);
+        tDirection = NONE;
+        fDirection = NONE;
+        teleportFlag = false;
+        nextMoveDirectionCheat = null;
     }
 
     @Override
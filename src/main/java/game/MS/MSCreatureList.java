@@ -2,15 +2,59 @@ package game.MS;
 
 import game.*;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static game.CreatureID.*;
 import static game.Tile.*;
 
 public class MSCreatureList extends game.CreatureList {
     private int numDeadMonsters;
 
+    // Creatures recycled between savestate loads, see loadBits()
+    private MSCreature[] pool = new MSCreature[0];
+    private Creature[] loadedList = new Creature[0];
+
+    // Positions of the creatures in newClones, which aren't in the list's position index until finalise()
+    private final boolean[] newCloneAt = new boolean[1024];
+
+    /**
+     * Replaces the monster list with monsters read from a savestate in their
+     * packed form (see {@link MSCreature#bits()}).
+     * <p>
+     *     The creature objects (and the list array if the size is unchanged)
+     *     are recycled from previous loads rather than allocated, so
+     *     references to monsters taken before a load must not be kept past it.
+     * </p>
+     * @param buffer The buffer positioned at the first monster.
+     * @param length The number of monsters to read.
+     */
+    void loadBits(ByteBuffer buffer, int length) {
+        pool = growPool(pool, length);
+        if (loadedList.length != length)
+            loadedList = new Creature[length];
+        for (int i = 0; i < length; i++) {
+            MSCreature monster = pool[i];
+            monster.setBits(buffer.getShort() & 0xFFFF);
+            monster.setLevel(level);
+            loadedList[i] = monster;
+        }
+        setList(loadedList);
+    }
+
+    static MSCreature[] growPool(MSCreature[] pool, int length) {
+        if (pool.length >= length)
+            return pool;
+        int oldLength = pool.length;
+        pool = Arrays.copyOf(pool, Math.max(length, oldLength * 2));
+        for (int i = oldLength; i < pool.length; i++)
+            pool[i] = new MSCreature(0);
+        return pool;
+    }
+
     @Override
     public void initialise() {
-        newClones.clear();
+        clearNewClones();
         numDeadMonsters = 0;
         chipToCr = null;
         teethStep = (level.getStep().isEven()) != (level.getTickNumber() % 4 == 2);
@@ -20,9 +64,9 @@ public class MSCreatureList extends game.CreatureList {
     public void tick(){
 
         direction = null;
-        for(Creature m : list){
+        for (int i = 0; i < list.length; i++){
 
-            MSCreature monster = (MSCreature) m;
+            MSCreature monster = (MSCreature) list[i];
 
             if (monster.getCreatureType().isBlock()){
                 numDeadMonsters++;
@@ -35,28 +79,28 @@ public class MSCreatureList extends game.CreatureList {
             if (!monster.isSliding()){
                 if (monster.getNextMoveDirectionCheat() != null) direction = monster.getNextMoveDirectionCheat();
                 else if (!monster.getCreatureType().isAffectedByCB()) direction = monster.getDirection();
-                Tile bgTile = level.getLayerBG().get(monster.getPosition());
-                if (bgTile == CLONE_MACHINE) tickClonedMonster(monster);
-                else if (bgTile == TRAP) tickTrappedMonster(monster);
+                byte bgTile = level.getLayerBG().getByte(monster.getPosition());
+                if (bgTile == (byte) CLONE_MACHINE.ordinal()) tickClonedMonster(monster);
+                else if (bgTile == (byte) TRAP.ordinal()) tickTrappedMonster(monster);
                 else tickFreeMonster(monster);
             }
         }
     }
 
     private void tickClonedMonster(MSCreature monster){
-        Position clonerPosition = monster.getPosition().clone();
+        Position clonerPosition = monster.getPosition();
         Tile tile = monster.toTile();
         if (monster.getCreatureType().isBlock()) tile = Tile.fromOrdinal(BLOCK_UP.ordinal() + monster.getDirection().ordinal());
         if (!monster.getCreatureType().isAffectedByCB() && monster.getCreatureType() != CreatureID.ICE_BLOCK) direction = monster.getDirection();
         if (direction == null) return;
         if (monster.getCreatureType() == BLOB){
-            Position p = monster.getPosition().clone();
+            Position p = monster.getPosition();
             Direction[] directions = monster.getDirectionPriority(level.getChip(), level.getRNG());
             monster.tick(directions, false);
             if (!monster.getPosition().equals(p)) level.insertTile(clonerPosition, tile);
         }
         else if (monster.canEnter(direction, level.getLayerFG().get(monster.getPosition().move(direction)))){
-            if (monster.tick(new Direction[] {direction}, false)) level.insertTile(clonerPosition, tile);
+            if (monster.tick(direction.singleton(), false)) level.insertTile(clonerPosition, tile);
 
             if (monster.getCreatureType() == CreatureID.BLOCK && level.getLayerBG().get(clonerPosition) != CLONE_MACHINE) {
                 level.popTile(clonerPosition);
@@ -72,7 +116,7 @@ public class MSCreatureList extends game.CreatureList {
             Direction[] directions = monster.getDirectionPriority(level.getChip(), level.getRNG());
             monster.tick(directions, false);
         }
-        else monster.tick(new Direction[] {direction}, false);
+        else monster.tick(direction.singleton(), false);
     }
 
     private void tickFreeMonster(MSCreature monster){
@@ -89,25 +133,44 @@ public class MSCreatureList extends game.CreatureList {
         numDeadMonsters++;
     }
 
-    @Override
-    public void addClone(Position position){
+    private void addNewClone(Creature clone) {
+        newClones.add(clone);
+        if (clone.getPosition().isValid())
+            newCloneAt[clone.getPosition().index] = true;
+    }
 
-        for (Creature c: list){
-            if (c.getPosition().equals(position)) return;
-        }
+    private boolean newCloneAt(Position position) {
+        if (position.isValid())
+            return newCloneAt[position.index];
         for (Creature c: newClones){
-            if (c.getPosition().equals(position)) return;
+            if (c.getPosition().equals(position)) return true;
+        }
+        return false;
+    }
+
+    private void clearNewClones() {
+        for (int i = 0; i < newClones.size(); i++) {
+            Position position = newClones.get(i).getPosition();
+            if (position.isValid())
+                newCloneAt[position.index] = false;
         }
+        newClones.clear();
+    }
+
+    @Override
+    public void addClone(Position position){
+
+        if (occupied(position) || newCloneAt(position)) return;
 
         MSCreature clone;
 
         //Data resetting
         if (position.y == 32) {
-            Position row0Position = new Position(position.x, 0);
+            Position row0Position = Position.fromXY(position.x, 0);
             if (level.getLayerBG().get(row0Position).isCreature()) {
-                clone = new MSCreature(new Position(position.x, 32), level.getLayerBG().get(row0Position));
+                clone = new MSCreature(Position.fromXY(position.x, 32), level.getLayerBG().get(row0Position));
                 clone.setLevel(level);
-                Tile newTile = level.getLayerFG().get(new Position(position.x, 31));
+                Tile newTile = level.getLayerFG().get(Position.fromXY(position.x, 31));
                 if (clone.getDirection() == Direction.UP && clone.canEnter(clone.getDirection(), newTile)) {
                     ((MSLevel) level).resetData(row0Position.x);
                 }
@@ -135,7 +198,7 @@ public class MSCreatureList extends game.CreatureList {
 
             if (clone.canEnter(direction, newTile) || newTile == clone.toTile()) {
                 if (clone.getCreatureType().isBlock()) tickClonedMonster(clone);
-                else newClones.add(clone);
+                else addNewClone(clone);
 
                 if (clone.getCreatureType() == CreatureID.ICE_BLOCK) level.getLayerFG().set(position, Tile.ICE_BLOCK);
         }
@@ -152,7 +215,7 @@ public class MSCreatureList extends game.CreatureList {
 
     @Override
     public void addCreature(Creature creature) {
-        newClones.add(creature);
+        addNewClone(creature);
     }
 
     @Override
@@ -175,8 +238,8 @@ public class MSCreatureList extends game.CreatureList {
             newMonsterList[index++] = clone;
         }
 
-        list = newMonsterList;
-        newClones.clear();
+        setList(newMonsterList);
+        clearNewClones();
         numDeadMonsters = 0;
 
     }
@@ -20,10 +20,9 @@ public class MSLevel extends MSSavestate implements Level {
 
     private static final int HALF_WAIT = 0, KEY = 1, CLICK_EARLY = 2, CLICK_LATE = 3;
 
-    public final int INITIAL_MONSTER_LIST_SIZE = monsterList.size();
-    public final Position INITIAL_MONSTER_POSITION =
-            (monsterList.size() == 0) ? null : monsterList.get(0).getPosition(); //this is needed or else half the levels aren't playable due to a crash from having an empty monster list
-    public final int INITIAL_CHIPS_AMOUNT = chipsLeft;
+    public final int INITIAL_MONSTER_LIST_SIZE;
+    public final Position INITIAL_MONSTER_POSITION;
+    public final int INITIAL_CHIPS_AMOUNT;
     private final int LEVELSET_LENGTH;
     private final Ruleset RULESET = Ruleset.MS;
 
@@ -42,6 +41,21 @@ public class MSLevel extends MSSavestate implements Level {
     private final Cheats cheats;
 
     protected Map<Position, Integer> trapIndexMap;
+
+    // Tables indexed by tile built from the button maps, so that ticking doesn't hash positions.
+    // The maps are still used for positions off the map and by the GUI.
+    private static final BrownButton[] NO_BROWN_BUTTONS = new BrownButton[0];
+    private Button[] greenButtonAt, redButtonAt, brownButtonAt, blueButtonAt;
+    private BrownButton[] allBrownButtons; //flattened for iterating every tick
+    private BrownButton[][] trapButtonsAt;              // every button connected to the trap on a tile
+    private BrownButton[][] firstBrownButtonsTo;        // the first button on each brown button tile, by its trap
+    private int[] trapIndexAt;                          // index in traps of the trap on a tile, -1 if there isn't one
+
+    // Scratch buffers reused every tick so that ticking does not allocate
+    final Direction[] walkerTurns = new Direction[3], walkerDirections = new Direction[4],
+            blobTurns = new Direction[4], blobDirections = new Direction[4], slideDirections = new Direction[2];
+    private final ArrayDeque<List<Button>> buttonListPool = new ArrayDeque<>();
+    private final BitSet pressedBrownButtons = new BitSet(1024);
     
     @Override
     public int getLevelNumber() {
@@ -98,10 +112,12 @@ public class MSLevel extends MSSavestate implements Level {
     @Override
     public void setGreenButtons(MultiHashMap<Position, GreenButton> greenButtons) {
         this.greenButtons = greenButtons;
+        this.greenButtonAt = buttonTable(greenButtons);
     }
     @Override
     public void setBlueButtons(MultiHashMap<Position, BlueButton> blueButtons) {
         this.blueButtons = blueButtons;
+        this.blueButtonAt = buttonTable(blueButtons);
     }
     @Override
     public int getRngSeed(){
@@ -277,9 +293,9 @@ public class MSLevel extends MSSavestate implements Level {
     }
     @Override
     public void setTrap(Position trapPos, boolean open) {
-        BrownButton button = trapButtons.get(trapPos);
-        if (button != null)
-            traps.set(trapIndexMap.get(trapPos), open);
+        int i = trapIndex(trapPos);
+        if (i != -1)
+            traps.set(i, open);
     }
     @Override
     public int getLevelsetLength() {
@@ -348,30 +364,114 @@ public class MSLevel extends MSSavestate implements Level {
     @Override
     public Button getButton(Position position, Class<? extends Button> buttonType) {
         if (buttonType.equals(GreenButton.class))
-            return greenButtons.get(position);
+            return buttonAt(greenButtonAt, greenButtons, position);
         else if (buttonType.equals(RedButton.class))
-            return redButtons.get(position);
+            return buttonAt(redButtonAt, redButtons, position);
         else if (buttonType.equals(BrownButton.class))
-            return brownButtons.get(position);
+            return buttonAt(brownButtonAt, brownButtons, position);
         else if (buttonType.equals(BlueButton.class))
-            return blueButtons.get(position);
+            return buttonAt(blueButtonAt, blueButtons, position);
         else throw new RuntimeException("Invalid class");
     }
 
     @Override
     public Button getButton(Position position) {
-        for (Map<Position, ? extends Button> buttons : List.of(greenButtons, redButtons, brownButtons, blueButtons)) {
-            if (buttons.get(position) != null)
-                return buttons.get(position);
-        }
-        return null;
+        Button button = buttonAt(greenButtonAt, greenButtons, position);
+        if (button == null)
+            button = buttonAt(redButtonAt, redButtons, position);
+        if (button == null)
+            button = buttonAt(brownButtonAt, brownButtons, position);
+        if (button == null)
+            button = buttonAt(blueButtonAt, blueButtons, position);
+        return button;
     }
     @Override
     public boolean isTrapOpen(Position position) {
-        BrownButton button = trapButtons.get(position);
-        if (button != null)
-            return traps.get(trapIndexMap.get(position));
-        return false;
+        int i = trapIndex(position);
+        return i != -1 && traps.get(i);
+    }
+
+    private static Button buttonAt(Button[] table, MultiHashMap<Position, ? extends Button> buttons, Position position) {
+        if (position.isValid())
+            return table[position.index];
+        return buttons.get(position);
+    }
+
+    private static Button[] buttonTable(MultiHashMap<Position, ? extends Button> buttons) {
+        Button[] table = new Button[1024];
+        for (Position position : buttons.keySet()) {
+            if (position.isValid())
+                table[position.index] = buttons.get(position);
+        }
+        return table;
+    }
+
+    /**
+     * @param trapPos The position of a trap.
+     * @return The index of the trap in traps, or -1 if no button is
+     * connected to the position.
+     */
+    int trapIndex(Position trapPos) {
+        if (trapPos.isValid())
+            return trapIndexAt[trapPos.index];
+        Integer i = trapIndexMap.get(trapPos);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * @param trapPos The position of a trap.
+     * @return Every brown button connected to the trap, in the same order as
+     * {@link #getTrapButtons()}.
+     */
+    BrownButton[] trapButtonsAt(Position trapPos) {
+        if (trapPos.isValid())
+            return trapButtonsAt[trapPos.index];
+        List<BrownButton> buttons = trapButtons.getList(trapPos);
+        return buttons == null ? NO_BROWN_BUTTONS : buttons.toArray(NO_BROWN_BUTTONS);
+    }
+
+    /**
+     * @param trapPos The position of a trap.
+     * @return The first brown button of every button tile (as returned by
+     * {@link #getButton(Position, Class)}) that is connected to the trap.
+     */
+    BrownButton[] firstBrownButtonsTo(Position trapPos) {
+        if (trapPos.isValid())
+            return firstBrownButtonsTo[trapPos.index];
+        List<BrownButton> buttons = new ArrayList<>();
+        for (List<BrownButton> buttonList : brownButtons.rawValues()) {
+            if (buttonList.get(0).getTargetPosition().equals(trapPos))
+                buttons.add(buttonList.get(0));
+        }
+        return buttons.toArray(NO_BROWN_BUTTONS);
+    }
+
+    private void buildTrapTables() {
+        trapIndexAt = new int[1024];
+        Arrays.fill(trapIndexAt, -1);
+        for (Map.Entry<Position, Integer> trap : trapIndexMap.entrySet()) {
+            if (trap.getKey().isValid())
+                trapIndexAt[trap.getKey().index] = trap.getValue();
+        }
+
+        trapButtonsAt = new BrownButton[1024][];
+        Arrays.fill(trapButtonsAt, NO_BROWN_BUTTONS);
+        for (Position trapPos : trapButtons.keySet()) {
+            if (trapPos.isValid())
+                trapButtonsAt[trapPos.index] = trapButtons.getList(trapPos).toArray(NO_BROWN_BUTTONS);
+        }
+
+        firstBrownButtonsTo = new BrownButton[1024][];
+        Arrays.fill(firstBrownButtonsTo, NO_BROWN_BUTTONS);
+        for (List<BrownButton> buttonList : brownButtons.rawValues()) {
+            BrownButton b = buttonList.get(0);
+            Position trapPos = b.getTargetPosition();
+            if (trapPos.isValid()) {
+                BrownButton[] buttons = Arrays.copyOf(firstBrownButtonsTo[trapPos.index], firstBrownButtonsTo[trapPos.index].length + 1);
+                buttons[buttons.length - 1] = b;
+                firstBrownButtonsTo[trapPos.index] = buttons;
+            }
+        }
     }
     
     private int moveType(char c, boolean halfMove, boolean chipSliding){
@@ -393,47 +493,63 @@ public class MSLevel extends MSSavestate implements Level {
     private void moveChipSliding(){
         Direction direction = chip.getDirection();
         Tile bgTile = layerBG.get(chip.getPosition());
-        if (bgTile.isFF()) chip.tick(new Direction[] {direction}, true);
+        if (bgTile.isFF()) chip.tick(direction.singleton(), true);
         else chip.tick(chip.getSlideDirectionPriority(bgTile, rng, true), true);
     }
 
     //returns true if both directions were attempted and failed
     private boolean moveChip(Direction[] directions){
-        Position oldPosition = chip.getPosition().clone();
+        Position oldPosition = chip.getPosition();
         int attemptedDirs = 0;
         for (Direction direction : directions) {
             if (chip.isSliding()) {
-                if (!layerBG.get(chip.getPosition()).isFF())
+                if (!Tile.is(layerBG.getByte(chip.getPosition()), Tile.IS_FF))
                     continue;
                 if (direction == chip.getDirection())
                     continue;
             }
             attemptedDirs++;
-            chip.tick(new Direction[] {direction}, false);
+            chip.tick(direction.singleton(), false);
             if (!chip.getPosition().equals(oldPosition))
                 return false;
         }
         return attemptedDirs == directions.length;
     }
 
+    /**
+     * Borrows a list to collect pressed buttons in. Lists are pooled as
+     * creature movement can recurse through buttons (e.g. clone machines).
+     * @return An empty list, which should be returned with
+     * {@link #returnButtonList(List)} once it is no longer used.
+     */
+    List<Button> borrowButtonList() {
+        List<Button> list = buttonListPool.poll();
+        return list != null ? list : new ArrayList<>();
+    }
+
+    void returnButtonList(List<Button> list) {
+        list.clear();
+        buttonListPool.push(list);
+    }
+
     private void finaliseTraps(){
-        HashSet<Position> pressedButtons = new HashSet<>();
-        for (List<BrownButton> buttons : brownButtons.rawValues()) {
-            for (BrownButton b : buttons) {
-                if (layerFG.get(b.getButtonPosition()) != BUTTON_BROWN && !pressedButtons.contains(b.getButtonPosition())) {
-                    traps.set(trapIndexMap.get(b.getTargetPosition()), true);
-                    pressedButtons.add(b.getButtonPosition());
-                }
-                else if (layerFG.get(b.getTargetPosition()) == TRAP) {
-                    traps.set(trapIndexMap.get(b.getTargetPosition()), false);
-                }
+        BitSet pressedButtons = pressedBrownButtons;
+        pressedButtons.clear();
+        for (BrownButton b : allBrownButtons) {
+            Position buttonPos = b.getButtonPosition();
+            if (layerFG.get(buttonPos) != BUTTON_BROWN && !pressedButtons.get(buttonPos.index)) {
+                traps.set(trapIndex(b.getTargetPosition()), true);
+                pressedButtons.set(buttonPos.index);
+            }
+            else if (layerFG.get(b.getTargetPosition()) == TRAP) {
+                traps.set(trapIndex(b.getTargetPosition()), false);
             }
         }
     }
 
     private void initialiseSlidingMonsters(){
-        for (Creature m : monsterList) m.setSliding(false);
-        for (Creature m : slipList) m.setSliding(true);
+        for (int i = 0; i < monsterList.size(); i++) monsterList.get(i).setSliding(false);
+        for (int i = 0; i < slipList.size(); i++) slipList.get(i).setSliding(true);
     }
     
     private boolean endTick() {
@@ -512,7 +628,7 @@ public class MSLevel extends MSSavestate implements Level {
         if (endTick()) return 0;
         if (moveType == CLICK_EARLY && voluntaryMoveAllowed) { //todo: it seems like it should be impossible to do a key move onto an FF and then TSG right after
 //            System.out.println("tsg");
-            Direction sought = chip.seek(new Position(mouseGoal))[0];
+            Direction sought = chip.seek(Position.fromIndex(mouseGoal))[0];
             /* CCLP4:34, the TWS Sharpeye provided has a discrepancy between TW and SuCC, the first click has an offset
             from Chip of (-2, 1), in TW this is below the gravel, in SuCC its below and one to the right, much like how
             TW-TSG can't load a lot of normal mouse solutions, we can't load a lot of TSG solutions */
@@ -536,7 +652,7 @@ public class MSLevel extends MSSavestate implements Level {
         }
         else if (moveType == CLICK_LATE && !chip.isSliding() && voluntaryMoveAllowed) {
 //            System.out.println("normal");
-            failedDirections = moveChip(chip.seek(new Position(mouseGoal)));
+            failedDirections = moveChip(chip.seek(Position.fromIndex(mouseGoal)));
             idleMoves = 0;
 //            voluntaryMoveAllowed = false; //this causes the TSG unit test instances to desync, something is wrong here
             if (failedDirections)
@@ -558,7 +674,7 @@ public class MSLevel extends MSSavestate implements Level {
     }
 
     void resetData(int xPosition) {
-        Position position = new Position(xPosition, 0);
+        Position position = Position.fromXY(xPosition, 0);
         byte lowByte, highByte;
         boolean lowOrder = xPosition % 2 == 0;
         int shiftBy = xPosition % 2 == 0 ? 0 : 8;
@@ -590,11 +706,11 @@ public class MSLevel extends MSSavestate implements Level {
             }
             case 8, 9 -> {
                 layerBG.set(position, Tile.fromOrdinal((byte) (chip.getPosition().x >>> shiftBy)));
-                chip.setPosition(new Position(0, chip.getPosition().y));
+                chip.setPosition(Position.fromXY(0, chip.getPosition().y));
             }
             case 10, 11 -> {
                 layerBG.set(position, Tile.fromOrdinal((byte) (chip.getPosition().y >>> shiftBy)));
-                chip.setPosition(new Position(chip.getPosition().x, 0));
+                chip.setPosition(Position.fromXY(chip.getPosition().x, 0));
             }
             case 12, 13 -> {
                 int sliding = chip.isSliding() ? 1 : 0;
@@ -677,6 +793,10 @@ public class MSLevel extends MSSavestate implements Level {
         super(layerBG, layerFG, monsterList, slipList, chip,
                 chips, new short[4], new byte[4], rng, NO_CLICK, traps);
 
+        this.INITIAL_MONSTER_LIST_SIZE = monsterList.size();
+        this.INITIAL_MONSTER_POSITION =
+                (monsterList.size() == 0) ? null : monsterList.get(0).getPosition(); //this is needed or else half the levels aren't playable due to a crash from having an empty monster list
+        this.INITIAL_CHIPS_AMOUNT = chips;
         this.levelNumber = levelNumber;
         this.startTime = time;
         this.title = title;
@@ -688,7 +808,12 @@ public class MSLevel extends MSSavestate implements Level {
         this.greenButtons = greenButtons;
         this.redButtons = redButtons;
         this.brownButtons = brownButtons;
+        this.allBrownButtons = brownButtons.allValues().toArray(NO_BROWN_BUTTONS);
         this.blueButtons = blueButtons;
+        this.greenButtonAt = buttonTable(greenButtons);
+        this.redButtonAt = buttonTable(redButtons);
+        this.brownButtonAt = buttonTable(brownButtons);
+        this.blueButtonAt = buttonTable(blueButtons);
         this.rngSeed = rngSeed;
         this.step = step;
         this.cheats = new Cheats(this);
@@ -702,6 +827,8 @@ public class MSLevel extends MSSavestate implements Level {
         this.monsterList.setLevel(this);
 
         trapButtons = new MultiHashMap<>(brownButtons.size());
+        trapIndexMap = new HashMap<>();
+        buildTrapTables(); //no traps yet, so the presses below don't open anything
         for (List<BrownButton> buttons : getBrownButtons().rawValues()) {  //On level start every single trap is actually open in MSCC, this implements that so creatures and blocks starting on traps can exit them at any point in the level
             for (BrownButton b : buttons) {
                 if (getLayerFG().get(b.getTargetPosition()).isChip() || getLayerFG().get(b.getTargetPosition()) == BLOCK || getLayerFG().get(b.getTargetPosition()) == ICE_BLOCK) {
@@ -718,5 +845,62 @@ public class MSLevel extends MSSavestate implements Level {
             trapIndexMap.put(iterator.next(), i);
             i++;
         }
+        buildTrapTables();
+    }
+
+    private MSLevel(MSLevel other, int rngSeed, Step step){
+        super(other);
+
+        this.INITIAL_MONSTER_LIST_SIZE = other.INITIAL_MONSTER_LIST_SIZE;
+        this.INITIAL_MONSTER_POSITION = other.INITIAL_MONSTER_POSITION;
+        this.INITIAL_CHIPS_AMOUNT = other.INITIAL_CHIPS_AMOUNT;
+        this.levelNumber = other.levelNumber;
+        this.startTime = other.startTime;
+        this.title = other.title;
+        this.password = other.password;
+        this.hint = other.hint;
+        this.author = other.author;
+        this.toggleDoors = other.toggleDoors;
+        this.teleports = other.teleports;
+        this.greenButtons = other.greenButtons;     // Cheats replace the button maps rather than changing them
+        this.redButtons = other.redButtons;
+        this.brownButtons = other.brownButtons;
+        this.allBrownButtons = other.allBrownButtons;
+        this.trapButtons = other.trapButtons;
+        this.blueButtons = other.blueButtons;
+        this.trapIndexMap = other.trapIndexMap;
+        this.greenButtonAt = other.greenButtonAt;   // Only ever replaced along with their maps
+        this.redButtonAt = other.redButtonAt;
+        this.brownButtonAt = other.brownButtonAt;
+        this.blueButtonAt = other.blueButtonAt;
+        this.trapButtonsAt = other.trapButtonsAt;
+        this.firstBrownButtonsTo = other.firstBrownButtonsTo;
+        this.trapIndexAt = other.trapIndexAt;
+        this.rngSeed = rngSeed;
+        this.step = step;
+        this.levelWon = other.levelWon;
+        this.cheats = new Cheats(this);
+        this.LEVELSET_LENGTH = other.LEVELSET_LENGTH;
+
+        for (Creature c : monsterList)
+            c.setLevel(this);
+        chip.setLevel(this);
+        for (Creature c : slipList)
+            c.setLevel(this);
+
+        this.slipList.setLevel(this);
+        this.monsterList.setLevel(this);
+    }
+
+    @Override
+    public MSLevel fork(){
+        return new MSLevel(this, rngSeed, step);
+    }
+
+    @Override
+    public MSLevel fork(int rngSeed, Step step, Direction initialSlide){
+        MSLevel level = new MSLevel(this, rngSeed, step);
+        level.rng = new RNG(rngSeed, 0, 0);
+        return level;
     }
 }
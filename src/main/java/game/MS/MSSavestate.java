@@ -2,7 +2,7 @@ package game.MS;
 
 import game.*;
 
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 
 public class MSSavestate implements Savestate {
@@ -23,14 +23,9 @@ public class MSSavestate implements Savestate {
     protected short idleMoves;
     protected boolean voluntaryMoveAllowed;
 
-    /**
-     * Write an uncompressed savestate
-     * @return a savestate
-     */
-    @Override public byte[] save(){
-        byte[] traps = this.traps.toByteArray();
-        
-        int length =
+    @Override
+    public int savestateSize(){
+        return
             1 +                             // version
             1 +                             // ruleset
             2 +                             // chip
@@ -43,72 +38,113 @@ public class MSSavestate implements Savestate {
             4 +                             // rng
             2 +                             // mouse click
             2 +                             // traps length
-            traps.length +                  // traps
+            trapBytes() +                   // traps
             2 +                             // monsterlist size
             monsterList.size() * 2 +        // monsterlist
             2 +                             // sliplist size
             slipList.size() * 2 +           // sliplist
             2 +                             // idle moves
             1;                              // previous move type
-        
-        SavestateWriter writer = new SavestateWriter(length);
-        writer.write(UNCOMPRESSED_V2); //Every time this is updated also update compress() in SavestateManager.java
-        writer.write(Ruleset.MS.ordinal());
-        writer.writeShort((short) chip.bits());
-        writer.write(layerBG.getBytes());
-        writer.write(layerFG.getBytes());
-        writer.writeInt(tickNumber);
-        writer.writeShort(chipsLeft);
-        writer.writeShorts(keys);
-        writer.write(boots);
-        writer.writeInt(rng.getCurrentValue());
-        writer.writeShort(mouseGoal);
-        writer.writeShort(traps.length);
-        writer.write(traps);
-        writer.writeShort(monsterList.size());
-        writer.writeShortMonsterArray(monsterList.getCreatures());
-        writer.writeShort(slipList.size());
-        writer.writeShortMonsterList(slipList);
-        writer.writeShort(idleMoves);
-        writer.writeBool(voluntaryMoveAllowed);
+    }
+
+    // The traps are stored in the same format as BitSet.toByteArray()
+    private int trapBytes(){
+        return (traps.length() + 7) / 8;
+    }
 
-        return writer.toByteArray();
+    /**
+     * Write an uncompressed savestate
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveInto(ByteBuffer buffer){
+        buffer.put(UNCOMPRESSED_V2); //Every time this is updated also update SavestateCompressor
+        buffer.put((byte) Ruleset.MS.ordinal());
+        buffer.putShort((short) chip.bits());
+        buffer.put(layerBG.getBytes());
+        buffer.put(layerFG.getBytes());
+        buffer.putInt(tickNumber);
+        buffer.putShort((short) chipsLeft);
+        for (short key : keys) buffer.putShort(key);
+        buffer.put(boots);
+        buffer.putInt(rng.getCurrentValue());
+        buffer.putShort((short) mouseGoal);
+        int trapBytes = trapBytes();
+        buffer.putShort((short) trapBytes);
+        for (int i = 0; i < trapBytes; i++) {
+            int b = 0;
+            for (int j = 0; j < 8; j++) {
+                if (traps.get(i * 8 + j)) b |= 1 << j;
+            }
+            buffer.put((byte) b);
+        }
+        Creature[] monsters = monsterList.getCreatures();
+        buffer.putShort((short) monsters.length);
+        for (Creature monster : monsters) buffer.putShort((short) monster.bits());
+        buffer.putShort((short) slipList.size());
+        for (int i = 0; i < slipList.size(); i++) buffer.putShort((short) slipList.get(i).bits());
+        buffer.putShort(idleMoves);
+        buffer.put((byte) (voluntaryMoveAllowed ? 1 : 0));
     }
     
     /**
      * load a savestate
-     * @param savestate the savestate to load
+     * @param buffer the buffer holding the savestate to load
      */
     @Override
-    public void load(byte[] savestate){
-        SavestateReader reader = new SavestateReader(savestate);
-        int version = reader.read();
+    public void loadFrom(ByteBuffer buffer){
+        int version = buffer.get();
         if (version == UNCOMPRESSED_V2 || version == COMPRESSED_V2) {
-            if (reader.read() != Ruleset.MS.ordinal())
+            if (buffer.get() != Ruleset.MS.ordinal())
                 throw new UnsupportedOperationException("Can only load MS savestates!");
-            chip = new MSCreature(reader.readShort());
+            chip.setBits(buffer.getShort() & 0xFFFF);
             chip.setLevel((Level) this);
-            layerBG.load(reader.readLayer(version));
-            layerFG.load(reader.readLayer(version));
-            tickNumber = reader.readInt();
-            chipsLeft = (short) reader.readShort();
-            keys = reader.readShorts(4);
-            boots = reader.readBytes(4);
-            rng.setCurrentValue(reader.readInt());
-            mouseGoal = reader.readShort();
-            traps = BitSet.valueOf(reader.readBytes(reader.readShort()));
-            monsterList.setCreatures(reader.readMSMonsterArray(reader.readShort()));
-            slipList.setSliplist(reader.readMSMonsterArray(reader.readShort()));
-            idleMoves = (short) reader.readShort();
-            voluntaryMoveAllowed = reader.readBool();
-        }
-        try {
-            reader.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+            Savestate.readLayer(buffer, version, layerBG.getBytes());
+            Savestate.readLayer(buffer, version, layerFG.getBytes());
+            layerBG.invalidateHash();
+            layerFG.invalidateHash();
+            tickNumber = buffer.getInt();
+            chipsLeft = buffer.getShort();
+            for (int i = 0; i < keys.length; i++) keys[i] = buffer.getShort();
+            buffer.get(boots);
+            rng.setCurrentValue(buffer.getInt());
+            mouseGoal = buffer.getShort() & 0xFFFF;
+            traps.clear();
+            int trapBytes = buffer.getShort() & 0xFFFF;
+            for (int i = 0; i < trapBytes; i++) {
+                int b = buffer.get();
+                for (int j = 0; j < 8; j++) {
+                    if ((b & (1 << j)) != 0) traps.set(i * 8 + j);
+                }
+            }
+            ((MSCreatureList) monsterList).loadBits(buffer, buffer.getShort() & 0xFFFF);
+            slipList.loadBits(buffer, buffer.getShort() & 0xFFFF);
+            idleMoves = buffer.getShort();
+            voluntaryMoveAllowed = buffer.get() == 1;
         }
     }
     
+    @Override
+    public long stateHash(){
+        long hash = Savestate.mixHash(Ruleset.MS.ordinal(), chip.bits() & 0xFFFF);
+        hash = Savestate.mixHash(hash, layerBG.hash());
+        hash = Savestate.mixHash(hash, layerFG.hash());
+        hash = Savestate.mixHash(hash, tickNumber);
+        hash = Savestate.mixHash(hash, (short) chipsLeft);
+        for (short key : keys) hash = Savestate.mixHash(hash, key);
+        for (byte boot : boots) hash = Savestate.mixHash(hash, boot);
+        hash = Savestate.mixHash(hash, rng.getCurrentValue());
+        hash = Savestate.mixHash(hash, mouseGoal & 0xFFFF);
+        for (int i = traps.nextSetBit(0); i >= 0; i = traps.nextSetBit(i + 1)) hash = Savestate.mixHash(hash, i);
+        hash = Savestate.mixHash(hash, -1); //end of the traps
+        hash = Savestate.mixHash(hash, monsterList.size());
+        for (int i = 0; i < monsterList.size(); i++) hash = Savestate.mixHash(hash, monsterList.get(i).bits() & 0xFFFF);
+        hash = Savestate.mixHash(hash, slipList.size());
+        for (int i = 0; i < slipList.size(); i++) hash = Savestate.mixHash(hash, slipList.get(i).bits() & 0xFFFF);
+        hash = Savestate.mixHash(hash, idleMoves);
+        return Savestate.mixHash(hash, voluntaryMoveAllowed ? 1 : 0);
+    }
+    
     protected MSSavestate(Layer layerBG, Layer layerFG, CreatureList monsterList, SlipList slipList, MSCreature chip,
                           int chipsLeft, short[] keys, byte[] boots, RNG rng, int mouseGoal, BitSet traps){
         this.layerBG = layerBG;
@@ -124,4 +160,36 @@ public class MSSavestate implements Savestate {
         this.mouseGoal = mouseGoal;
         this.traps = traps;
     }
+
+    /**
+     * Copies every part of a savestate that can change during play. Creatures
+     * are copied through their packed form, as they are when saving.
+     * @param other the savestate to copy.
+     */
+    protected MSSavestate(MSSavestate other){
+        layerBG = new ByteLayer(other.layerBG.getBytes().clone());
+        layerFG = new ByteLayer(other.layerFG.getBytes().clone());
+        chip = new MSCreature(other.chip.bits());
+        tickNumber = other.tickNumber;
+        chipsLeft = other.chipsLeft;
+        keys = other.keys.clone();
+        boots = other.boots.clone();
+        rng = new RNG(other.rng.getCurrentValue(), other.rng.getPRNG1(), other.rng.getPRNG2());
+        mouseGoal = other.mouseGoal;
+        traps = (BitSet) other.traps.clone();
+        idleMoves = other.idleMoves;
+        voluntaryMoveAllowed = other.voluntaryMoveAllowed;
+
+        Creature[] otherMonsters = other.monsterList.getCreatures();
+        MSCreature[] monsters = new MSCreature[otherMonsters.length];
+        for (int i = 0; i < monsters.length; i++)
+            monsters[i] = new MSCreature(otherMonsters[i].bits());
+        monsterList = new MSCreatureList(monsters, layerFG, layerBG);
+
+        slipList = new SlipList();
+        for (Creature slider : other.slipList) {
+            int index = other.monsterList.getIndexOfCreature(slider);     // Sliding monsters are the same objects as in the monster list
+            slipList.add(index == -1 ? new MSCreature(slider.bits()) : monsters[index]);
+        }
+    }
 }
\ No newline at end of file
@@ -3,11 +3,15 @@ package game.MS;
 import game.Creature;
 import game.Level;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 public class SlipList extends ArrayList<Creature> { //This should only ever be used for MS
     protected Level level;
 
+    // Sliders recycled between savestate loads, see loadBits()
+    private MSCreature[] pool = new MSCreature[0];
+
     public void tick(){
         // Iterating like this causes slide delay.
         for (int i = size(); i > 0; i--){
@@ -36,6 +40,27 @@ public class SlipList extends ArrayList<Creature> { //This should only ever be u
             c.setLevel(level);
     }
 
+    /**
+     * Replaces the sliplist with creatures read from a savestate in their
+     * packed form (see {@link MSCreature#bits()}). The monster list must
+     * already have been loaded, as sliding monsters are taken from it. Blocks
+     * are decoded into creature objects recycled from previous loads.
+     * @param buffer The buffer positioned at the first slider.
+     * @param length The number of sliders to read.
+     */
+    void loadBits(ByteBuffer buffer, int length){
+        clear();
+        pool = MSCreatureList.growPool(pool, length);
+        for (int i = 0; i < length; i++){
+            MSCreature slider = pool[i];
+            slider.setBits(buffer.getShort() & 0xFFFF);
+            Creature c = level.getMonsterList().creatureAt(slider.getPosition(), false);
+            if (c == null) c = slider;
+            c.setLevel(level);
+            add(c);
+        }
+    }
+
     @Override
     public String toString(){
         StringBuilder sb = new StringBuilder();
@@ -5,6 +5,18 @@ import emulator.SuperCC;
 import static game.Direction.*;
 import static java.lang.Math.abs;
 
+/**
+ * An immutable position on (or just off) the 32x32 map.
+ * <p>
+ *     Positions are interned: every cell of the map, along with the ring of
+ *     off-map cells around it (x or y of -1 or 32, which MSCC can reach through
+ *     clone machine and teleport edge cases), has a single canonical instance
+ *     obtained through {@link #fromIndex(int)}, {@link #fromXY(int, int)} and
+ *     {@link #move(Direction)}. Positions further off the map than that are
+ *     allocated as needed, so {@link #equals(Object)} should still be used
+ *     rather than reference comparison.
+ * </p>
+ */
 public class Position {
     
     private static final int
@@ -15,9 +27,69 @@ public class Position {
     
     public static final byte UNCLICKABLE = 127;
 
-    public int index;
-    public int x;
-    public int y;
+    // Indexed by [vertical][horizontal][horizontal first], see seek()
+    private static final Direction[][][][] SEEK_PRIORITIES = new Direction[3][3][2][];
+    static {
+        Direction[] verticals = new Direction[] {UP, NONE, DOWN};
+        Direction[] horizontals = new Direction[] {LEFT, NONE, RIGHT};
+        for (int v = 0; v < 3; v++) {
+            for (int h = 0; h < 3; h++) {
+                SEEK_PRIORITIES[v][h][0] = new Direction[] {verticals[v], horizontals[h]};
+                SEEK_PRIORITIES[v][h][1] = new Direction[] {horizontals[h], verticals[v]};
+            }
+        }
+    }
+
+    // The map plus a ring of off-map cells, indexed by (y + 1) * TABLE_WIDTH + x + 1
+    private static final int TABLE_MIN = -1, TABLE_MAX = 32, TABLE_WIDTH = TABLE_MAX - TABLE_MIN + 1;
+    private static final Position[] TABLE = new Position[TABLE_WIDTH * TABLE_WIDTH];
+    static {
+        for (int y = TABLE_MIN; y <= TABLE_MAX; y++) {
+            for (int x = TABLE_MIN; x <= TABLE_MAX; x++)
+                TABLE[tableIndex(x, y)] = new Position(x, y, y * 32 + x); //the same index move() produces
+        }
+    }
+    private static final Position NEGATIVE_INDEX = new Position(-1);
+
+    public final int index;
+    public final int x;
+    public final int y;
+
+    private static int tableIndex(int x, int y) {
+        return (y - TABLE_MIN) * TABLE_WIDTH + x - TABLE_MIN;
+    }
+
+    private static boolean inTable(int x, int y) {
+        return x >= TABLE_MIN && x <= TABLE_MAX && y >= TABLE_MIN && y <= TABLE_MAX;
+    }
+
+    /**
+     * Returns the position with the given index, where the x coordinate is
+     * the lowest 5 bits of the index and y the rest. Indices 0 to 1055 (the
+     * map and row 32 below it) and -1 are interned.
+     * @param index The index of the position.
+     * @return The position with that index.
+     */
+    public static Position fromIndex(int index) {
+        if (index >= 0 && index < 33 * 32)
+            return TABLE[tableIndex(index & 0b11111, index >>> 5)];
+        if (index == -1)
+            return NEGATIVE_INDEX;
+        return new Position(index);
+    }
+
+    /**
+     * Returns the position with the given coordinates. All positions with an
+     * x between 0 and 31 and a y between -1 and 32 are interned.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The position at those coordinates.
+     */
+    public static Position fromXY(int x, int y) {
+        if (x >= 0 && x < 32 && y >= TABLE_MIN && y <= TABLE_MAX)
+            return TABLE[tableIndex(x, y)];
+        return new Position(x, y); //the index of these doesn't match the one move() would give
+    }
     
     public boolean isValid() {
         return x >= 0 && x < 32 && y >= 0 && y < 32;
@@ -33,42 +105,26 @@ public class Position {
         return index;
     }
 
-    @Deprecated
-    public void setIndex(int index){
-        this.index = index;
-        x = index & 0b11111;
-        y = index >>> 5;
-    }
-    
-    private void moveUp(){
-        y--;
-        index += MOVE_UP;
-    }
-    private void moveLeft(){
-        x--;
-        index += MOVE_LEFT;
-    }
-    private void moveDown(){
-        y++;
-        index += MOVE_DOWN;
-    }
-    private void moveRight(){
-        x++;
-        index += MOVE_RIGHT;
+    private Position neighbour(int dx, int dy, int move) {
+        int x = this.x + dx;
+        int y = this.y + dy;
+        if (inTable(x, y) && index == this.y * 32 + this.x)
+            return TABLE[tableIndex(x, y)];
+        return new Position(x, y, index + move);
     }
+
     public Position move(Direction direction){
-        Position p = clone();
-        switch (direction) {
-            case UP -> p.moveUp();
-            case LEFT -> p.moveLeft();
-            case DOWN -> p.moveDown();
-            case RIGHT -> p.moveRight();
-        }
-        return p;
+        return switch (direction) {
+            case UP -> neighbour(0, -1, MOVE_UP);
+            case LEFT -> neighbour(-1, 0, MOVE_LEFT);
+            case DOWN -> neighbour(0, 1, MOVE_DOWN);
+            case RIGHT -> neighbour(1, 0, MOVE_RIGHT);
+            default -> this;
+        };
     }
     
     public Position add(int x, int y){
-        return new Position(this.x + x, this.y + y);
+        return fromXY(this.x + x, this.y + y);
     }
     
     public static Position screenPosition(Position chipPosition){
@@ -84,12 +140,12 @@ public class Position {
         else if (chipY >= 27) screenY = 23;
         else screenY = chipY - 4;
         
-        return new Position(screenX, screenY);
+        return fromXY(screenX, screenY);
     }
     
     public static Position clickPosition(Position screenPosition, char clickChar){
         int n = -(clickChar - SuperCC.MAX_CLICK_LOWERCASE);
-        return new Position(screenPosition.getX() + n % 9, screenPosition.getY() + n / 9);
+        return fromXY(screenPosition.getX() + n % 9, screenPosition.getY() + n / 9);
     }
     
     public char clickChar(Position chipPosition){
@@ -101,36 +157,37 @@ public class Position {
         return UNCLICKABLE;
     }
     
+    /**
+     * Returns the directions to take to move towards a position, the longer
+     * axis first. The returned array is shared and must not be modified.
+     * @param seekedPosition The position to move towards.
+     * @return An array containing a vertical and a horizontal direction.
+     */
     public Direction[] seek(Position seekedPosition){
         int verticalDifference = y - seekedPosition.y;
         int horizontalDifference = x - seekedPosition.x;
 
-        Direction verticalDirection = NONE;
-        if (verticalDifference > 0) verticalDirection = UP;
-        else if (verticalDifference < 0) verticalDirection = DOWN;
-    
-        Direction horizontalDirection = NONE;
-        if (horizontalDifference > 0) horizontalDirection = LEFT;
-        else if (horizontalDifference < 0) horizontalDirection = RIGHT;
-        
+        int vertical = 1 - Integer.signum(verticalDifference);      // UP, NONE, DOWN
+        int horizontal = 1 - Integer.signum(horizontalDifference);  // LEFT, NONE, RIGHT
+
         if (abs(verticalDifference) >= abs(horizontalDifference))
-            return new Direction[] {verticalDirection, horizontalDirection};
-        else return new Direction[] {horizontalDirection, verticalDirection};
+            return SEEK_PRIORITIES[vertical][horizontal][0];
+        else return SEEK_PRIORITIES[vertical][horizontal][1];
     }
     
-    public Position(int x, int y){
+    private Position(int x, int y){
         this.x = x;
         this.y = y;
         index = (y << 5) | x;
     }
     
-    public Position(int index){
+    private Position(int index){
         this.index = index;
         x = index & 0b11111;
         y = index >>> 5;
     }
     
-    public Position(int x, int y, int index) {
+    private Position(int x, int y, int index) {
         this.x = x;
         this.y = y;
         this.index = index;
@@ -141,11 +198,6 @@ public class Position {
         return "("+x+", "+y+")";
     }
     
-    @Override
-    public Position clone(){
-        return new Position(index);
-    }
-
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -162,7 +214,7 @@ public class Position {
 
     @Override
     public int hashCode() {
-        //Whilst this is just the index equation it is possible for index to be set manually so its just run again here
+        //Off-map positions from move() can have an index that doesn't match their coordinates so it's recalculated here
         return (y << 5) | x;
     }
     
@@ -4,9 +4,169 @@ public class RNG{
     
     public static final int LAST_SEED = 0x7FFFFFFF;
 
+    private static final int MULTIPLIER = 1103515245, INCREMENT = 12345;
+    private static final long PERIOD = 1L << 31;
+
+    /**
+     * The ways the game uses the RNG. Each advances it once, and the
+     * outcome of each can be worked out from the value it leaves the RNG
+     * with using {@link #outcome(Call, int)}.
+     */
+    public enum Call {
+        RANDOM4(4),
+        PERMUTATION3(6),
+        PERMUTATION4(24);
+
+        /**
+         * The number of different outcomes, see {@link #outcomeIndex(Call, int)}.
+         */
+        public final int outcomes;
+
+        Call(int outcomes) {
+            this.outcomes = outcomes;
+        }
+    }
+
+    /**
+     * Told about every time the RNG is advanced, see {@link #setTracer(Tracer)}.
+     */
+    public interface Tracer {
+        /**
+         * @param call The way the RNG was used.
+         * @param value The value the RNG was advanced to.
+         */
+        void advanced(Call call, int value);
+    }
+
     private int currentValue, prngValue1, prngValue2;
-    private int nextValue(){
-        return currentValue = (currentValue * 1103515245 + 12345) & 0x7FFFFFFF;
+    private long advances;
+    private Tracer tracer;
+    private int nextValue(Call call){
+        advances++;
+        currentValue = next(currentValue);
+        if (tracer != null)
+            tracer.advanced(call, currentValue);
+        return currentValue;
+    }
+
+    /**
+     * @param value An RNG value.
+     * @return The value the RNG is advanced to from it.
+     */
+    public static int next(int value) {
+        return (value * MULTIPLIER + INCREMENT) & 0x7FFFFFFF;
+    }
+
+    /**
+     * Works out the value the RNG has after being advanced a number of times,
+     * in O(log n) time rather than advancing it n times.
+     * @param value An RNG value.
+     * @param n The number of times to advance it. This may be negative, to
+     *          find the value the RNG had n advances earlier.
+     * @return The value after n advances.
+     */
+    public static int skip(int value, long n) {
+        n = Math.floorMod(n, PERIOD);            // the RNG repeats every 2^31 values
+        int multiplier = 1, increment = 0;       // x -> x * multiplier + increment for the steps so far
+        int stepMultiplier = MULTIPLIER, stepIncrement = INCREMENT;
+        while (n != 0) {
+            if ((n & 1) != 0) {
+                multiplier *= stepMultiplier;
+                increment = increment * stepMultiplier + stepIncrement;
+            }
+            stepIncrement *= stepMultiplier + 1;
+            stepMultiplier *= stepMultiplier;
+            n >>>= 1;
+        }
+        return (value * multiplier + increment) & 0x7FFFFFFF;
+    }
+
+    /**
+     * Works out what the game sees from the RNG for each of a sequence of
+     * uses, starting from a seed, without running a level.
+     * @param seed The RNG value before the first use.
+     * @param calls The uses in order.
+     * @return The outcome of each use, see {@link #outcome(Call, int)}.
+     */
+    public static int[] outcomes(int seed, Call... calls) {
+        int[] outcomes = new int[calls.length];
+        int value = seed & 0x7FFFFFFF;
+        for (int i = 0; i < calls.length; i++) {
+            value = next(value);
+            outcomes[i] = outcome(calls[i], value);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Numbers the outcomes of each use of the RNG, so that two values give
+     * the same index exactly when the game sees the same thing from them.
+     * @param call A way of using the RNG.
+     * @param value The value that use advanced the RNG to.
+     * @return An index from 0 to call.outcomes - 1.
+     */
+    public static int outcomeIndex(Call call, int value) {
+        return switch (call) {
+            case RANDOM4 -> random4(value);
+            case PERMUTATION3 -> (value >>> 30) * 3
+                    + (int) ((3.0 * (value & 0x3FFFFFFF)) / (double) 0x40000000);
+            case PERMUTATION4 -> ((value >>> 30) * 3
+                    + (int) ((3.0 * (value & 0x0FFFFFFF)) / (double) 0x10000000)) * 4
+                    + ((value >>> 28) & 3);
+        };
+    }
+
+    /**
+     * @param call A way of using the RNG.
+     * @param value The value that use advanced the RNG to.
+     * @return For random4, the number chosen. For the permutations, the
+     * original index of the element that ends up at each position, two bits
+     * each starting with position 0 in the lowest bits.
+     */
+    public static int outcome(Call call, int value) {
+        return switch (call) {
+            case RANDOM4 -> random4(value);
+            case PERMUTATION3, PERMUTATION4 -> {
+                Integer[] a = call == Call.PERMUTATION3 ? new Integer[] {0, 1, 2} : new Integer[] {0, 1, 2, 3};
+                if (call == Call.PERMUTATION3)
+                    permute3(value, a);
+                else
+                    permute4(value, a);
+                int packed = 0;
+                for (int i = 0; i < a.length; i++)
+                    packed |= a[i] << (2 * i);
+                yield packed;
+            }
+        };
+    }
+
+    /**
+     * Counts every time the RNG has been advanced, including the times its
+     * value was restored afterwards. Setting or loading the value doesn't
+     * count, so while this doesn't change the game hasn't depended on the
+     * seed. This isn't part of the savestate.
+     * @return The number of times the RNG has been advanced.
+     */
+    public long getAdvances() {
+        return advances;
+    }
+    /**
+     * Moves the RNG forwards or backwards without counting as advancing it.
+     * @param n The number of advances to skip, negative to go back.
+     */
+    public void skip(long n) {
+        currentValue = skip(currentValue, n);
+    }
+
+    /**
+     * @param tracer Told about every later advance, or null for none. This
+     *               isn't part of the savestate.
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+    public Tracer getTracer() {
+        return tracer;
     }
     public void setCurrentValue(int value){
         currentValue = value & 0x7FFFFFFF;
@@ -33,7 +193,11 @@ public class RNG{
      * @return An int from 0-3 .
      */
     public int random4(){
-        return nextValue() >>> 29;
+        return random4(nextValue(Call.RANDOM4));
+    }
+
+    private static int random4(int value) {
+        return value >>> 29;
     }
 
     /**
@@ -43,7 +207,10 @@ public class RNG{
      * @param a The array to permute
      */
     public void randomPermutation3(Object[] a){
-        nextValue();
+        permute3(nextValue(Call.PERMUTATION3), a);
+    }
+
+    private static void permute3(int currentValue, Object[] a) {
         Object swap;
         int n;
 
@@ -61,7 +228,10 @@ public class RNG{
      * @param a The array to permute
      */
     public void randomPermutation4(Object[] a){
-        nextValue();
+        permute4(nextValue(Call.PERMUTATION4), a);
+    }
+
+    private static void permute4(int currentValue, Object[] a) {
         Object swap;
         int n;
 
@@ -91,6 +261,8 @@ public class RNG{
 
     public RNG(int startingSeed, int prngValue1, int prngValue2) {
         currentValue = startingSeed;
+        this.prngValue1 = prngValue1;
+        this.prngValue2 = prngValue2;
     }
 
 }
@@ -0,0 +1,112 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Records the tick, use and outcome of every time a level's RNG is advanced,
+ * so that runs with different seeds or moves can be compared without
+ * replaying them.
+ */
+public class RNGTrace implements RNG.Tracer {
+
+    private static final RNG.Call[] CALLS = RNG.Call.values();
+
+    private final Level level;
+    private int[] ticks = new int[64];
+    private byte[] calls = new byte[64];
+    private int[] values = new int[64];
+    private int size;
+
+    /**
+     * Starts recording the RNG of a level. Loading another level replaces the
+     * RNG, so the trace has to be attached again.
+     * @param level The level to record.
+     */
+    public RNGTrace(Level level) {
+        this.level = level;
+        level.getRNG().setTracer(this);
+    }
+
+    /**
+     * Stops recording. Entries already recorded are kept.
+     */
+    public void detach() {
+        if (level.getRNG().getTracer() == this)
+            level.getRNG().setTracer(null);
+    }
+
+    @Override
+    public void advanced(RNG.Call call, int value) {
+        if (size == values.length) {
+            ticks = Arrays.copyOf(ticks, size * 2);
+            calls = Arrays.copyOf(calls, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        ticks[size] = level.getTickNumber();
+        calls[size] = (byte) call.ordinal();
+        values[size] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTick(int i) {
+        return ticks[checkIndex(i)];
+    }
+
+    public RNG.Call getCall(int i) {
+        return CALLS[calls[checkIndex(i)]];
+    }
+
+    /**
+     * @return The value the RNG was advanced to.
+     */
+    public int getValue(int i) {
+        return values[checkIndex(i)];
+    }
+
+    /**
+     * @return What the game saw from the RNG, see {@link RNG#outcome(RNG.Call, int)}.
+     */
+    public int getResult(int i) {
+        return RNG.outcome(getCall(i), getValue(i));
+    }
+
+    /**
+     * @return The uses of the RNG in order, which {@link RNG#outcomes(int, RNG.Call...)}
+     * can play out for any seed.
+     */
+    public RNG.Call[] getCalls() {
+        RNG.Call[] result = new RNG.Call[size];
+        for (int i = 0; i < size; i++)
+            result[i] = CALLS[calls[i]];
+        return result;
+    }
+
+    /**
+     * @param other Another trace.
+     * @return The first entry where the tick, use or result differs between
+     * the traces, the length of the shorter trace if one starts the other,
+     * or -1 if they are the same.
+     */
+    public int firstDifference(RNGTrace other) {
+        int n = Math.min(size, other.size);
+        for (int i = 0; i < n; i++) {
+            if (ticks[i] != other.ticks[i] || calls[i] != other.calls[i] || getResult(i) != other.getResult(i))
+                return i;
+        }
+        return size == other.size ? -1 : n;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size);
+        return i;
+    }
+}
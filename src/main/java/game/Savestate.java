@@ -3,6 +3,9 @@ package game;
 import game.Lynx.LynxCreature;
 import game.MS.MSCreature;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 public interface Savestate {
     int NO_CLICK = 1025;
     int RLE_MULTIPLE = 0x7F;
@@ -11,6 +14,9 @@ public interface Savestate {
     byte UNCOMPRESSED_V1 = 4;
     byte COMPRESSED_V2 = 7;
     byte COMPRESSED_V1 = 5;
+    byte PACKED_V3 = 8; //Lynx only, see LynxSavestate.saveInto
+    int MIN_RLE_RUN = 3; //shorter runs take fewer bytes as literals
+    int MAX_COMPRESSED_LAYER = 1024 + 1;
 
     /**
      * Get chip from a savestate
@@ -21,23 +27,152 @@ public interface Savestate {
         if (savestate[1] == Ruleset.MS.ordinal())
             return new MSCreature(((savestate[2] & 0xFF) << 8) | (savestate[3] & 0xFF));
         else if (savestate[1] == Ruleset.LYNX.ordinal()) { //Yeah yeah hardcoded values into an array, Chip is always present so its safe
-            int x = (savestate[1059] & 0xFF) << 24 | (savestate[1060] & 0xFF) << 16
-                    | (savestate[1061] & 0xFF) << 8 | (savestate[1062] & 0xFF);
+            int i = 1059;
+            if (savestate[0] == PACKED_V3)
+                i = 164;
+            else if (savestate[0] == COMPRESSED_V2) { //skip over the compressed layer
+                i = 2;
+                while (savestate[i] != RLE_END) i += savestate[i] == RLE_MULTIPLE ? 3 : 1;
+                i += 1 + 33;
+            }
+            int x = (savestate[i] & 0xFF) << 24 | (savestate[i+1] & 0xFF) << 16
+                    | (savestate[i+2] & 0xFF) << 8 | (savestate[i+3] & 0xFF);
             return new LynxCreature(x);
         }
 
         return null;
     }
 
+    /**
+     * Reads a layer from a savestate into an array, decompressing it if the
+     * savestate is compressed.
+     * @param buffer The buffer positioned at the start of the layer.
+     * @param version The savestate version.
+     * @param out The array to read into, which must be 1024 long.
+     */
+    static void readLayer(ByteBuffer buffer, int version, byte[] out){
+        if (version != COMPRESSED_V1 && version != COMPRESSED_V2 && version != PACKED_V3) {
+            buffer.get(out);
+            return;
+        }
+        int tileIndex = 0;
+        if (buffer.hasArray()) { //much faster than going through the buffer a byte at a time
+            byte[] in = buffer.array();
+            int i = buffer.arrayOffset() + buffer.position();
+            byte b;
+            while ((b = in[i++]) != RLE_END){
+                if (b == RLE_MULTIPLE){
+                    int rleLength = (in[i++] & 0xFF) + 1;
+                    Arrays.fill(out, tileIndex, tileIndex + rleLength, in[i++]);
+                    tileIndex += rleLength;
+                }
+                else out[tileIndex++] = b;
+            }
+            buffer.position(i - buffer.arrayOffset());
+            return;
+        }
+        byte b;
+        while ((b = buffer.get()) != RLE_END){
+            if (b == RLE_MULTIPLE){
+                int rleLength = (buffer.get() & 0xFF) + 1;
+                byte t = buffer.get();
+                for (int i = 0; i < rleLength; i++){
+                    out[tileIndex++] = t;
+                }
+            }
+            else out[tileIndex++] = b;
+        }
+    }
+
+    /**
+     * Run length encodes a layer, in the format readLayer reads for
+     * compressed savestates.
+     * @param layer A layer's bytes.
+     * @param out The array to write to, which must be at least
+     *            MAX_COMPRESSED_LAYER long.
+     * @return The number of bytes written.
+     */
+    static int compressLayer(byte[] layer, byte[] out){
+        int length = 0;
+        int i = 0;
+        while (i < layer.length){
+            int run = runLength(layer, i);
+            if (run >= MIN_RLE_RUN){
+                out[length++] = RLE_MULTIPLE;
+                out[length++] = (byte) (run - 1);
+                out[length++] = layer[i];
+                i += run;
+            }
+            else out[length++] = layer[i++];
+        }
+        out[length++] = RLE_END;
+        return length;
+    }
+
+    private static int runLength(byte[] layer, int i){
+        byte t = layer[i];
+        int run = 1;
+        while (i + run < layer.length && run < 256 && layer[i + run] == t) run++;
+        return run;
+    }
+
     /**
      * Write an uncompressed savestate
      * @return a savestate
      */
-    byte[] save();
+    default byte[] save() {
+        byte[] savestate = new byte[savestateSize()];
+        saveInto(ByteBuffer.wrap(savestate));
+        return savestate;
+    }
 
     /**
      * load a savestate
      * @param savestate the savestate to load
      */
-    void load(byte[] savestate);
+    default void load(byte[] savestate) {
+        loadFrom(ByteBuffer.wrap(savestate));
+    }
+
+    /**
+     * @return The number of bytes saveInto will write.
+     */
+    int savestateSize();
+
+    /**
+     * Write an uncompressed savestate into a buffer, without allocating.
+     * @param buffer The buffer to write to, starting at its position, which
+     *               must have at least savestateSize() bytes remaining.
+     */
+    void saveInto(ByteBuffer buffer);
+
+    /**
+     * Load a savestate from a buffer, without allocating if the monster
+     * list is no longer than it was at the last load.
+     * @param buffer The buffer to read from, starting at its position.
+     */
+    void loadFrom(ByteBuffer buffer);
+
+    /**
+     * A 64 bit hash of everything saveInto writes, so states that save to
+     * the same bytes always have the same hash. The layers and the Lynx
+     * claimed array are hashed incrementally as they change, so the cost of
+     * this only depends on the number of creatures, not the size of the map.
+     * @return The hash of the current state.
+     */
+    long stateHash();
+
+    /**
+     * Mixes a value into a hash. The result depends on the order values
+     * are mixed in.
+     * @param hash The hash so far.
+     * @param value The value to add to it.
+     * @return The new hash.
+     */
+    static long mixHash(long hash, long value) {
+        long z = hash + value + 0x9E3779B97F4A7C15L; //SplitMix64's finaliser
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 }
@@ -118,58 +118,99 @@ public enum Tile {
     public static final int NUM_BOOTS = 4;
     public static final int NUM_KEYS = 4;
     
+    /**
+     * Tile property flags, for use with {@link #is(byte, int)} on the raw
+     * bytes returned by {@link Layer#getByte(int)}.
+     */
+    public static final int IS_ICE = 1, IS_ICE_CORNER = 1 << 1, IS_FF = 1 << 2, IS_SLIDING = 1 << 3,
+            IS_CHIP = 1 << 4, IS_SWIMMING_CHIP = 1 << 5, IS_CLONE_BLOCK = 1 << 6, IS_MONSTER = 1 << 7,
+            IS_CREATURE = 1 << 8, IS_TRANSPARENT = 1 << 9, IS_KEY = 1 << 10, IS_BOOT = 1 << 11,
+            IS_PICKUP = 1 << 12, IS_BUTTON = 1 << 13, IS_BLOCK = 1 << 14;
+
     private static final Tile[] allTiles = Tile.values();
+    // Indexed by unsigned byte so that invalid tiles read as WALL, which has no properties
+    private static final int[] properties = new int[256];
+    static {
+        for (Tile t : allTiles) {
+            int o = t.ordinal();
+            int p = 0;
+            if (ICE_SLIDE_SOUTHEAST.ordinal() <= o && o <= ICE_SLIDE_NORTHEAST.ordinal()) p |= IS_ICE_CORNER | IS_ICE;
+            if (t == ICE) p |= IS_ICE;
+            if (t == FF_UP || t == FF_LEFT || t == FF_DOWN || t == FF_RIGHT || t == FF_RANDOM) p |= IS_FF;
+            if ((p & (IS_ICE | IS_FF)) != 0 || t == TELEPORT) p |= IS_SLIDING;
+            if (CHIP_UP.ordinal() <= o && o <= CHIP_RIGHT.ordinal()) p |= IS_CHIP;
+            if (CHIP_SWIMMING_UP.ordinal() <= o && o <= CHIP_SWIMMING_RIGHT.ordinal()) p |= IS_SWIMMING_CHIP;
+            if (BLOCK_UP.ordinal() <= o && o <= BLOCK_RIGHT.ordinal()) p |= IS_CLONE_BLOCK | IS_CREATURE;
+            if (BUG_UP.ordinal() <= o && o <= PARAMECIUM_RIGHT.ordinal()) p |= IS_MONSTER | IS_CREATURE;
+            if (o >= BUG_UP.ordinal()) p |= IS_TRANSPARENT;
+            if (KEY_BLUE.ordinal() <= o && o <= KEY_YELLOW.ordinal()) p |= IS_KEY | IS_PICKUP;
+            if (BOOTS_WATER.ordinal() <= o && o <= BOOTS_FF.ordinal()) p |= IS_BOOT | IS_PICKUP;
+            if (t == BUTTON_BROWN || t == BUTTON_BLUE || t == BUTTON_RED || t == BUTTON_GREEN) p |= IS_BUTTON;
+            if (t == BLOCK || t == ICE_BLOCK) p |= IS_BLOCK;
+            properties[o] = p;
+        }
+    }
+
     public static Tile fromOrdinal(int ordinal){
         if (ordinal >= 0 && ordinal < allTiles.length)
             return allTiles[ordinal];
         return WALL;
     }
 
+    /**
+     * Checks a tile property without going through the enum.
+     * @param tile A raw tile byte, as stored in a layer.
+     * @param property One or more of the IS_ flags, or'd together.
+     * @return true if the tile has any of the given properties.
+     */
+    public static boolean is(byte tile, int property) {
+        return (properties[tile & 0xFF] & property) != 0;
+    }
+
     public boolean isIce(){
-        return this.ordinal() == ICE.ordinal() ||
-                (ICE_SLIDE_SOUTHEAST.ordinal() <= this.ordinal() && this.ordinal() <= ICE_SLIDE_NORTHEAST.ordinal());
+        return (properties[ordinal()] & IS_ICE) != 0;
     }
     public boolean isIceCorner() {
-        return (ICE_SLIDE_SOUTHEAST.ordinal() <= this.ordinal() && this.ordinal() <= ICE_SLIDE_NORTHEAST.ordinal());
+        return (properties[ordinal()] & IS_ICE_CORNER) != 0;
     }
     public boolean isFF(){
-        return this == FF_UP || this == FF_LEFT || this == FF_DOWN || this == FF_RIGHT || this == FF_RANDOM;
+        return (properties[ordinal()] & IS_FF) != 0;
     }
     public boolean isSliding(){
-        return isIce() || isFF() || this == TELEPORT;
+        return (properties[ordinal()] & IS_SLIDING) != 0;
     }
     public boolean isChip(){
-        return CHIP_UP.ordinal() <= ordinal() && ordinal() <= CHIP_RIGHT.ordinal();
+        return (properties[ordinal()] & IS_CHIP) != 0;
     }
     public boolean isSwimmingChip(){
-        return CHIP_SWIMMING_UP.ordinal() <= ordinal() && ordinal() <= CHIP_SWIMMING_RIGHT.ordinal();
+        return (properties[ordinal()] & IS_SWIMMING_CHIP) != 0;
     }
     public boolean isCloneBlock(){
-        return BLOCK_UP.ordinal() <= ordinal() && ordinal() <= BLOCK_RIGHT.ordinal();
+        return (properties[ordinal()] & IS_CLONE_BLOCK) != 0;
     }
     public boolean isMonster(){
-        return BUG_UP.ordinal() <= ordinal() && ordinal() <= PARAMECIUM_RIGHT.ordinal();
+        return (properties[ordinal()] & IS_MONSTER) != 0;
     }
     public boolean isCreature(){
-        return isMonster() || isCloneBlock();
+        return (properties[ordinal()] & IS_CREATURE) != 0;
     }
     public boolean isTransparent(){
-        return ordinal() >= BUG_UP.ordinal();
+        return (properties[ordinal()] & IS_TRANSPARENT) != 0;
     }
     public boolean isKey() {
-        return KEY_BLUE.ordinal() <= ordinal() && ordinal() <= KEY_YELLOW.ordinal();
+        return (properties[ordinal()] & IS_KEY) != 0;
     }
     public boolean isBoot() {
-        return BOOTS_WATER.ordinal() <= ordinal() && ordinal() <= BOOTS_FF.ordinal();
+        return (properties[ordinal()] & IS_BOOT) != 0;
     }
     public boolean isPickup() {
-        return KEY_BLUE.ordinal() <= ordinal() && ordinal() <= BOOTS_FF.ordinal();
+        return (properties[ordinal()] & IS_PICKUP) != 0;
     }
     public boolean isButton() {
-        return this == BUTTON_BROWN || this == BUTTON_BLUE || this == BUTTON_RED || this == BUTTON_GREEN;
+        return (properties[ordinal()] & IS_BUTTON) != 0;
     }
     public boolean isBlock() {
-        return this == BLOCK || this == ICE_BLOCK;
+        return (properties[ordinal()] & IS_BLOCK) != 0;
     }
 
     private String str;
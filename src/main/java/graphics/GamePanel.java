@@ -26,7 +26,7 @@ public abstract class GamePanel extends JPanel
     protected double hBetweenTiles, vBetweenTiles;
     private TileSheet tileSheet;
 
-    protected Position screenTopLeft = new Position(0, 0);
+    protected Position screenTopLeft = Position.fromXY(0, 0);
     
     protected static final int[][]
         blackDigits = new int[10][(SMALL_NUMERAL_WIDTH+2)*(SMALL_NUMERAL_HEIGHT+2)*CHANNELS],
@@ -334,7 +334,7 @@ public abstract class GamePanel extends JPanel
     }
     private void mousePressedOrReleased(MouseEvent e, boolean checkLeft) {
         if(emulator.isLevelLoaded()) {
-            Position clickPosition = new Position(e.getX() / tileWidth + screenTopLeft.getX(), e.getY() / tileHeight + screenTopLeft.getY());
+            Position clickPosition = Position.fromXY(e.getX() / tileWidth + screenTopLeft.getX(), e.getY() / tileHeight + screenTopLeft.getY());
             if (e.isPopupTrigger()) //docs for this say that it should be checked on both press and release
                 rightClick(clickPosition, e);
             else if (checkLeft && SwingUtilities.isLeftMouseButton(e))
@@ -367,7 +367,7 @@ public abstract class GamePanel extends JPanel
     public void mouseMoved(MouseEvent e) {
         if (emulator.isLevelLoaded()) {
             Level level = emulator.getLevel();
-            Position pos = new Position(e.getX() / tileWidth + screenTopLeft.getX(), e.getY() / tileHeight + screenTopLeft.getY());
+            Position pos = Position.fromXY(e.getX() / tileWidth + screenTopLeft.getX(), e.getY() / tileHeight + screenTopLeft.getY());
             Tile bgTile = null;
             Tile fgTile;
             if (level.supportsLayerBG())
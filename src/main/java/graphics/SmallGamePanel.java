@@ -17,7 +17,7 @@ public class SmallGamePanel extends GamePanel {
     private int windowSizeX, windowSizeY;
     private byte[] previousLayerFG = new byte[32*32];
     private byte[] previousLayerBG = new byte[32*32];
-    private Position previousScreenTopLeft = new Position(-1, -1);
+    private Position previousScreenTopLeft = Position.fromXY(-1, -1);
     
     private static final double[] offsets = new double[] {
         (double) 7/15 + (double) 1/30,
@@ -79,7 +79,7 @@ public class SmallGamePanel extends GamePanel {
         if (screenY < 0) screenY = 0;
         if (screenY + windowSizeY > 32) screenY = 32 - windowSizeY;
     
-        screenTopLeft = new Position(screenX, screenY);
+        screenTopLeft = Position.fromXY(screenX, screenY);
         screenBottomRight = screenTopLeft.add(windowSizeX, windowSizeY);
         super.updateGraphics(fromScratch);
     }
@@ -112,7 +112,7 @@ public class SmallGamePanel extends GamePanel {
 
         for (int xPos = 0; xPos < windowSizeX; xPos++) {
             for (int yPos = 0; yPos < windowSizeY; yPos++) {
-                Position p = new Position(screenTopLeft.getX() + xPos, screenTopLeft.getY() + yPos);
+                Position p = Position.fromXY(screenTopLeft.getX() + xPos, screenTopLeft.getY() + yPos);
                 int i = p.getIndex();
                 if (fromScratch || layerFG[i] != previousLayerFG[i - screenMotion] || layerBG[i] != previousLayerBG[i - screenMotion]) {
                     int x = tileWidth * xPos, y = tileHeight * yPos;
@@ -126,7 +126,7 @@ public class SmallGamePanel extends GamePanel {
         }
         previousLayerFG = layerFG.clone();
         previousLayerBG = layerBG.clone();
-        previousScreenTopLeft = screenTopLeft.clone();
+        previousScreenTopLeft = screenTopLeft;
     }
 
     protected void drawLevelWithoutBGSupport(Level level, boolean fromScratch) {
@@ -151,7 +151,7 @@ public class SmallGamePanel extends GamePanel {
 
         for (int xPos = 0; xPos < windowSizeX; xPos++) {
             for (int yPos = 0; yPos < windowSizeY; yPos++) {
-                Position p = new Position(screenTopLeft.getX() + xPos, screenTopLeft.getY() + yPos);
+                Position p = Position.fromXY(screenTopLeft.getX() + xPos, screenTopLeft.getY() + yPos);
                 int i = p.getIndex();
                 if (fromScratch || layerFG[i] != previousLayerFG[i - screenMotion]) {
                     int x = tileWidth * xPos, y = tileHeight * yPos;
@@ -191,7 +191,7 @@ public class SmallGamePanel extends GamePanel {
         }
 
         previousLayerFG = layerFG.clone();
-        previousScreenTopLeft = screenTopLeft.clone();
+        previousScreenTopLeft = screenTopLeft;
 
         graphicsCreatures.dispose();
     }
@@ -6,15 +6,22 @@ import game.Ruleset;
 import game.Step;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * A class for reading the .dat format.
  * For documentation on the dat format itself please read http://www.seasip.info/ccfile.html
+ * <p>
+ *     The file is read into memory once. Parsed levels are kept as templates
+ *     that haven't been played, and loading a level that is still cached is
+ *     only a fork of its template. The file is read again, and the cache
+ *     emptied, if it changes.
+ * </p>
  */
 public class DatParser{
 
@@ -23,11 +30,23 @@ public class DatParser{
     private final static int TWORLD_LYNX_SIGNATURE = 0x0102AAAC;
     private final static Set<Integer> SIGNATURES = Set.of(MSCC_SIGNATURE, MSCC_PG_SIGNATURE, TWORLD_LYNX_SIGNATURE);
 
+    private static final int CACHED_LEVELS = 16;
+
     private final File file;
-    private long[] levelStart;
+    private ByteBuffer buffer;
+    private long length;
+    private long lastModified;
+    private int[] levelStart;
 
     private Ruleset rules;
 
+    private final Map<Long, Level> templates = new LinkedHashMap<>(CACHED_LEVELS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Level> eldest) {
+            return size() > CACHED_LEVELS;
+        }
+    };
+
     public int lastLevel() {
         return levelStart.length;
     }
@@ -46,12 +65,12 @@ public class DatParser{
 
     /**
      * Reads either layer 1 or layer 2 of the .dat file. Only call this if the
-     * FileInputStream stream is pointing at the layer data, so that the next
+     * reader is pointing at the layer data, so that the next
      * word is the "Number of bytes in X layer".
      *
      * @return A 1028 element byte array containing the layer, row by row.
      */
-    private byte[] readLayer(DatReader reader) throws IOException{
+    private byte[] readLayer(DatReader reader){
         byte[] layer = new byte[32*32];
         int bytesInLayer = reader.readWord();
         int i = 0;
@@ -75,7 +94,7 @@ public class DatParser{
 
     /**
      * Reads a set of button connections from the .dat file. Only call this if
-     * the FileInputStream stream is pointing at the connection data, so that
+     * the reader is pointing at the connection data, so that
      * the next word is the "Button X position".
      *
      * @param length Length of this field
@@ -84,7 +103,7 @@ public class DatParser{
      * @return an nx2 array where each row is {buttonPosition, targetPosition},
      *         where a position is 32*y+x
      */
-    private int[][] readConnections(DatReader reader, int length, boolean trapConnections) throws IOException{
+    private int[][] readConnections(DatReader reader, int length, boolean trapConnections){
         int[][] connections = new int[length][2];
         for (int j = 0; j < length; j++){
             int buttonX = reader.readWord();
@@ -106,12 +125,29 @@ public class DatParser{
      * @param rules The ruleset to use, a value of CURRENT means to keep the currently selected ruleset (defaulting to file signature)
      * @return a Level object
      */
-    public Level parseLevel(int level, int rngSeed, Step step, Ruleset rules, Direction initialSlide) throws IOException{
-        DatReader reader = new DatReader(file);
+    public synchronized Level parseLevel(int level, int rngSeed, Step step, Ruleset rules, Direction initialSlide) throws IOException{
         if (rules != Ruleset.CURRENT)
             this.rules = rules;
+        if (length != file.length() || lastModified != file.lastModified())
+            readFile();
+        long key = (long) level << 8 | this.rules.ordinal();
+        Level template = templates.get(key);
+        if (template == null) {
+            template = readLevel(level);
+            templates.put(key, template);
+        }
+        return template.fork(rngSeed, step, initialSlide);
+    }
+
+    /**
+     * Parses a level into a template, which is only ever forked and never
+     * played itself.
+     */
+    private Level readLevel(int level) throws IOException{
+        if (level < 1 || level >= levelStart.length)
+            throw new IOException("No level " + level);
+        DatReader reader = new DatReader(buffer, levelStart[level]);
         try {
-            reader.skip(levelStart[level]);
             final int levelNumber = reader.readWord();
             int timeLimit = reader.readWord();
             int chips = reader.readWord();
@@ -171,78 +207,101 @@ public class DatParser{
                 optionalFieldsLength -= fieldLength;
             }
 
-            reader.close();
             return LevelFactory.makeLevel(levelNumber, timeLimit, chips, layerFG, layerBG, title, trapConnections,
-                    cloneConnections, password, hint, author, monsterPositions, rngSeed, step, lastLevel(), this.rules, initialSlide);
+                    cloneConnections, password, hint, author, monsterPositions, 0, Step.EVEN, lastLevel(), this.rules, Direction.UP);
         }
-        catch (IOException e){
-            reader.close();
-            throw(e);
+        catch (IndexOutOfBoundsException e){
+            throw new IOException("Level " + level + " is truncated");
         }
     }
 
     /**
-     * DatParser constructor. The .dat file is skimmed in order to create an
-     * array of pointers to each individual level. No levels get loaded in
-     * this constructor.
-     * @param file The .dat file
+     * Reads the file and skims it in order to create an array of pointers to
+     * each individual level, emptying the cache.
      */
-    public DatParser(File file) throws IOException {
-        this.file = file;
-        DatReader reader = new DatReader(file);
+    private void readFile() throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        DatReader reader = new DatReader(ByteBuffer.wrap(Files.readAllBytes(file.toPath())), 0);
         try {
             int signature = reader.readInt32();
             if (!SIGNATURES.contains(signature)) {
                 throw new IOException("Invalid signature");
             }
-            if (signature == MSCC_SIGNATURE || signature == MSCC_PG_SIGNATURE)
-                rules = Ruleset.MS;
-            else
-                rules = Ruleset.LYNX;
+            if (rules == null) {
+                if (signature == MSCC_SIGNATURE || signature == MSCC_PG_SIGNATURE)
+                    rules = Ruleset.MS;
+                else
+                    rules = Ruleset.LYNX;
+            }
             final int levels = reader.readWord();
-            long byteN = 4+2;
-            levelStart = new long[levels+1];  // +1 because we skip level #0
+            int byteN = 4+2;
+            int[] levelStart = new int[levels+1];  // +1 because we skip level #0
             for (int i = 1; i <= levels; i++) {
-                long bytesInLevel = reader.readWord();
+                int bytesInLevel = reader.readWord();
                 byteN += 2;
                 levelStart[i] = byteN;
                 byteN += bytesInLevel;
                 reader.skip(bytesInLevel);
             }
-            reader.close();
+            this.buffer = reader.buffer;
+            this.levelStart = levelStart;
+            this.length = length;
+            this.lastModified = lastModified;
+            templates.clear();
         }
-        catch (IOException e){
-            reader.close();
-            throw e;
+        catch (IndexOutOfBoundsException e){
+            throw new IOException("Levelset is truncated");
         }
     }
+
+    /**
+     * DatParser constructor. The .dat file is skimmed in order to create an
+     * array of pointers to each individual level. No levels get loaded in
+     * this constructor.
+     * @param file The .dat file
+     */
+    public DatParser(File file) throws IOException {
+        this.file = file;
+        readFile();
+    }
     
-    private static class DatReader extends FileInputStream{
-        private int readUnsignedByte() throws IOException{
+    private static class DatReader{
+        private final ByteBuffer buffer;
+        private int position;
+
+        private int read(){
+            return buffer.get(position++);
+        }
+        private int readUnsignedByte(){
             return read() & 0xFF;
         }
-        private int readWord() throws IOException{
+        private int readWord(){
             return readUnsignedByte() + 256*readUnsignedByte();
         }
-        private int readInt32() throws IOException{
+        private int readInt32(){
             return readUnsignedByte() + 256*readUnsignedByte() + 65536*readUnsignedByte() + 16777216*readUnsignedByte();
         }
+        private void skip(int n){
+            position += n;
+        }
         private String readText(int length) throws IOException{
             byte[] textBytes = new byte[length-1];
-            read(textBytes, 0, length-1);
-            read();                                         // trailing '\0'
+            buffer.get(position, textBytes);
+            position += length;                             // trailing '\0'
             return new String(textBytes, "Windows-1252");
         }
         private String readEncodedText(int length) throws IOException{
             byte[] textBytes = new byte[length-1];
-            read(textBytes, 0, length-1);
-            read();                                         // trailing '\0'
+            buffer.get(position, textBytes);
+            position += length;                             // trailing '\0'
             for (int i = 0; i < length - 1; i++)
                 textBytes[i] = (byte) (textBytes[i] ^ 0x99);
             return new String(textBytes, "Windows-1252");
         }
-        DatReader (File datFile) throws IOException{
-            super(datFile);
+        DatReader (ByteBuffer buffer, int position){
+            this.buffer = buffer;
+            this.position = position;
         }
     }
 
@@ -25,11 +25,11 @@ public class LevelFactory {
         for (short i = 0; i < 32*32; i++){
             Tile tileFG = layerFG.get(i);
             if (tileFG == Tile.TOGGLE_CLOSED || tileFG == Tile.TOGGLE_OPEN){
-                toggleDoors.add(new Position(i));
+                toggleDoors.add(Position.fromIndex(i));
             }
             Tile tileBG = layerBG.get(i);
             if ((tileBG == Tile.TOGGLE_CLOSED || tileBG == Tile.TOGGLE_OPEN) && tileFG.isMonster()){
-                toggleDoors.add(new Position(i));
+                toggleDoors.add(Position.fromIndex(i));
             }
         }
         return toggleDoors.toArray(new Position[0]);
@@ -43,7 +43,7 @@ public class LevelFactory {
         l = 0;
         for (short i = 0; i < 32*32; i++){
             if (layerFG.get(i) == Tile.TELEPORT || (layerFG.get(i).isMonster() && layerBG.get(i) == Tile.TELEPORT)){
-                teleports[l++] = new Position(i);
+                teleports[l++] = Position.fromIndex(i);
             }
         }
         return teleports;
@@ -64,7 +64,7 @@ public class LevelFactory {
         for (int[] monsterPosition : monsterPositions) {
             int x = monsterPosition[0];
             int y = monsterPosition[1];
-            Position position = new Position(x, y);
+            Position position = Position.fromXY(x, y);
             if (!position.isValid())
                 continue;
             if (layerFG.get(position).isMonster() && (layerBG.get(position) != Tile.CLONE_MACHINE)) {
@@ -79,7 +79,7 @@ public class LevelFactory {
         int index = 0;
         for (Tile tile : layerFG) {
             if (tile.isCreature() || tile == Tile.BLOCK || (tile.isChip() && numChips == 0) || tile.isSwimmingChip()) {
-                creatures.add(new LynxCreature(new Position(index), tile));
+                creatures.add(new LynxCreature(Position.fromIndex(index), tile));
                 if (tile.isChip())
                     numChips++;
 
@@ -89,7 +89,7 @@ public class LevelFactory {
             index++;
         }
         if (numChips == 0)
-            creatures.add(new LynxCreature(new Position(0, 0), Tile.CHIP_DOWN));
+            creatures.add(new LynxCreature(Position.fromXY(0, 0), Tile.CHIP_DOWN));
             //the idea is that instead of making levels invalid we instead "legalize" them
         for (int i=0; i < creatures.size(); i++) {
             LynxCreature c = creatures.get(i);
@@ -108,9 +108,9 @@ public class LevelFactory {
     private static MSCreature findMSPlayer(Layer layerFG){
         for (int i = 32*32-1; i >= 0; i--){
             Tile tile = layerFG.get(i);
-            if (Tile.CHIP_UP.ordinal() <= tile.ordinal()) return new MSCreature(new Position(i), tile);
+            if (Tile.CHIP_UP.ordinal() <= tile.ordinal()) return new MSCreature(Position.fromIndex(i), tile);
         }
-        return new MSCreature(new Position(0), Tile.CHIP_DOWN);
+        return new MSCreature(Position.fromIndex(0), Tile.CHIP_DOWN);
     }
     private static int getTimer(int timeLimit, int startingDecimalTimesTen){
         if (timeLimit == 0) return -2;
@@ -126,7 +126,7 @@ public class LevelFactory {
         MultiHashMap<Position, GreenButton> buttons = new MultiHashMap<>();
         for (short i = 0; i < 32*32; i++){
             if (layerFG.get(i) == Tile.BUTTON_GREEN || layerBG.get(i) == Tile.BUTTON_GREEN){
-                Position p = new Position(i);
+                Position p = Position.fromIndex(i);
                 buttons.put(p, new GreenButton(p));
             }
         }
@@ -136,7 +136,7 @@ public class LevelFactory {
         MultiHashMap<Position, BlueButton> buttons = new MultiHashMap<>();
         for (short i = 0; i < 32*32; i++){
             if (layerFG.get(i) == Tile.BUTTON_BLUE || layerBG.get(i) == Tile.BUTTON_BLUE){
-                Position p = new Position(i);
+                Position p = Position.fromIndex(i);
                 buttons.put(p, new BlueButton(p));
             }
         }
@@ -145,16 +145,16 @@ public class LevelFactory {
     private static MultiHashMap<Position, BrownButton> getBrownButtons(int[][] trapConnections) {
         MultiHashMap<Position, BrownButton> buttons = new MultiHashMap<>(trapConnections.length);
         for (int[] trapConnection : trapConnections) {
-            Position buttonPos = new Position(trapConnection[0]);
-            buttons.put(buttonPos, new BrownButton(buttonPos, new Position(trapConnection[1])));
+            Position buttonPos = Position.fromIndex(trapConnection[0]);
+            buttons.put(buttonPos, new BrownButton(buttonPos, Position.fromIndex(trapConnection[1])));
         }
         return buttons;
     }
     private static MultiHashMap<Position, RedButton> getRedButtons(int[][] cloneConnections) {
         MultiHashMap<Position, RedButton> buttons = new MultiHashMap<>(cloneConnections.length);
         for (int[] cloneConnection : cloneConnections) {
-            Position buttonPos = new Position(cloneConnection[0]);
-            buttons.put(buttonPos, new RedButton(buttonPos, new Position(cloneConnection[1])));
+            Position buttonPos = Position.fromIndex(cloneConnection[0]);
+            buttons.put(buttonPos, new RedButton(buttonPos, Position.fromIndex(cloneConnection[1])));
         }
         return buttons;
     }
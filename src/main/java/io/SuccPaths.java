@@ -44,7 +44,11 @@ public class SuccPaths {
             writer.printf("%s = %s\n", "TileHeight", settingsMap.get("Graphics:TileHeight"));
             writer.printf("%s = %s\n", "TWSNotate", settingsMap.get("Graphics:TWSNotate"));
             writer.printf("%s = %s\n", "CustomBaseImage", settingsMap.get("Graphics:CustomBaseImage"));
-            writer.printf("%s = %s\n", "CustomOverlayImage", settingsMap.get("Graphics:CustomOverlayImage"));
+            writer.printf("%s = %s\n\n", "CustomOverlayImage", settingsMap.get("Graphics:CustomOverlayImage"));
+
+            writer.println("[History]");
+            writer.printf("%s = %s\n", "ReplayInterval", settingsMap.get("History:ReplayInterval"));
+            writer.printf("%s = %s\n", "CachedStates", settingsMap.get("History:CachedStates"));
         }
         catch (IOException e) {
             e.printStackTrace();
@@ -138,6 +142,32 @@ public class SuccPaths {
             return false;
         }
     }
+    /**
+     * @return The number of ticks between full states in the rewind history,
+     * with only the moves stored in between, or 0 to store every tick. See
+     * SavestateManager.setHistoryPolicy.
+     */
+    public int getReplayInterval() {
+        try {
+            return Integer.parseInt(settingsMap.get("History:ReplayInterval"));
+        }
+        catch (NumberFormatException e) {
+            setReplayInterval(0);
+            return 0;
+        }
+    }
+    /**
+     * @return The number of states rebuilt from moves to keep in memory.
+     */
+    public int getCachedStates() {
+        try {
+            return Integer.parseInt(settingsMap.get("History:CachedStates"));
+        }
+        catch (NumberFormatException e) {
+            setCachedStates(256);
+            return 256;
+        }
+    }
     public String getJSONPath(String levelsetName, int levelNumber, String levelName, String ruleset) {
         String json = getSuccPath();
         new File(Paths.get(json, levelsetName).toString()).mkdirs();
@@ -192,6 +222,14 @@ public class SuccPaths {
         settingsMap.put("Graphics:TWSNotate", String.valueOf(twsNotation));
         updateSettingsFile();
     }
+    public void setReplayInterval(int replayInterval) {
+        settingsMap.put("History:ReplayInterval", String.valueOf(replayInterval));
+        updateSettingsFile();
+    }
+    public void setCachedStates(int cachedStates) {
+        settingsMap.put("History:CachedStates", String.valueOf(cachedStates));
+        updateSettingsFile();
+    }
     public void setCustomTilesetImages(String baseImage, String overlayImage) {
         settingsMap.put("Graphics:CustomBaseImage", baseImage);
         settingsMap.put("Graphics:CustomOverlayImage", overlayImage);
@@ -266,7 +304,11 @@ public class SuccPaths {
                     "[Graphics]\n" +
                     "TilesheetNum = 0\n" +
                     "TileWidth = 20\n" +
-                    "TileHeight = 20");
+                    "TileHeight = 20\n" +
+                    "\n" +
+                    "[History]\n" +
+                    "ReplayInterval = 0\n" +
+                    "CachedStates = 256");
             fw.close();
         }
         catch(Exception g) {
@@ -6,66 +6,123 @@ import game.Level;
 import game.Ruleset;
 import game.Step;
 
-import java.io.*;
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import static emulator.SuperCC.*;
 
+/**
+ * Reads solutions out of a Tile World solution file. The file is read into
+ * memory once and indexed by level number and password, so finding a
+ * solution doesn't depend on where it is in the file. Solutions can be read
+ * on any number of threads at once.
+ */
 public class TWSReader{
 
-    private int headerLength;
-    private Ruleset ruleset;
+    private static final int SIGNATURE = -1717882059;
 
     private final File twsFile;
+    private volatile Contents contents;
 
-    public void verifyAndInit() throws IOException {
-        twsInputStream reader = new twsInputStream(twsFile);
-        try{
-            if (reader.readInt() != -1717882059)
+    /**
+     * The contents of the file at the time it was read, never changed
+     * afterwards.
+     */
+    private static class Contents {
+        private final ByteBuffer buffer;
+        private final Ruleset ruleset;
+        private final long length;
+        private final long lastModified;
+        private final Map<Long, Integer> records = new HashMap<>(); //offsets of the records, by level number and password
+
+        private Contents(File twsFile) throws IOException {
+            length = twsFile.length();
+            lastModified = twsFile.lastModified();
+            buffer = ByteBuffer.wrap(Files.readAllBytes(twsFile.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.limit() < 8 || buffer.getInt(0) != SIGNATURE)
                 throw new IOException("Invalid signature");
-            if (reader.readByte() == 2)
-                ruleset = Ruleset.MS;
-            else
-                ruleset = Ruleset.LYNX;
-            reader.skip(2);
-            int len = reader.readByte();
-            headerLength = 8 + len;
-            reader.skip(len);
-            reader.close();
-        }
-        catch (IOException e){
-            reader.close();
-            throw e;
+            ruleset = buffer.get(4) == 2 ? Ruleset.MS : Ruleset.LYNX;
+            int offset = 8 + (buffer.get(7) & 0xFF);
+
+            while (offset + 10 <= buffer.limit()) { //10: length of recordLength, level number and password
+                int recordLength = buffer.getInt(offset);
+                if (recordLength < 0)
+                    break;
+                if (recordLength >= 6)
+                    records.putIfAbsent(key(buffer.getShort(offset + 4) & 0xFFFF, buffer.getInt(offset + 6)), offset);
+                offset += recordLength + 4;              //4: length of recordLength
+            }
         }
     }
 
-    public Solution readSolution(Level level) throws IOException{
-        verifyAndInit();
-        twsInputStream reader = new twsInputStream(twsFile);
-        reader.skip(headerLength);
+    private static long key(int levelNumber, int password) {
+        return ((long) levelNumber << 32) | Integer.toUnsignedLong(password);
+    }
 
-        long offset = headerLength;
-        int recordLength = 0;
+    /**
+     * Reads the file again, replacing the index of its solutions.
+     * @throws IOException if the file can't be read or isn't a TWS file.
+     */
+    public void verifyAndInit() throws IOException {
+        contents = new Contents(twsFile);
+    }
 
-        while (offset < twsFile.length()){
-            recordLength = reader.readInt();
-            int levelNumber = reader.readShort();
-            int twsPassword = reader.readInt();
+    /**
+     * @return The contents of the file, read again if the file has changed
+     * since it was last read.
+     */
+    private Contents contents() throws IOException {
+        Contents c = contents;
+        if (c.length != twsFile.length() || c.lastModified != twsFile.lastModified()) {
+            synchronized (this) {
+                c = contents;
+                if (c.length != twsFile.length() || c.lastModified != twsFile.lastModified())
+                    contents = c = new Contents(twsFile);
+            }
+        }
+        return c;
+    }
 
-            byte[] levelPass = level.getPassword().getBytes("Windows-1252");
-            long pass = Integer.toUnsignedLong(levelPass[0] + (levelPass[1] << 8) + (levelPass[2] << 16) + (levelPass[3] << 24));
+    /**
+     * @return The offset of the record for a level, or null if the file has
+     * none.
+     */
+    private static Integer recordOffset(Contents contents, Level level) throws IOException {
+        byte[] levelPass = level.getPassword().getBytes("Windows-1252");
+        int pass = (levelPass[0] & 0xFF) | (levelPass[1] & 0xFF) << 8 | (levelPass[2] & 0xFF) << 16 | (levelPass[3] & 0xFF) << 24;
+        return contents.records.get(key(level.getLevelNumber(), pass));
+    }
 
-            if (levelNumber == level.getLevelNumber() && twsPassword == pass)
-                break;
-            offset += recordLength + 4;              //4: length of recordLength
-            reader.skip(recordLength - 6);        //6: bytes read since recordLength
-        }
-        if (offset >= twsFile.length())
+    /**
+     * @return Whether the file has a solution recorded for a level, rather
+     * than no record or one with only the level number and password.
+     * @throws IOException if the file can't be read.
+     */
+    public boolean hasSolution(Level level) throws IOException {
+        Contents contents = contents();
+        Integer offset = recordOffset(contents, level);
+        return offset != null && contents.buffer.getInt(offset) != 6;
+    }
+
+    public Solution readSolution(Level level) throws IOException{
+        Contents contents = contents();
+        Integer offset = recordOffset(contents, level);
+        if (offset == null)
             throw new IOException("Level not found in tws");
 
+        int recordLength = contents.buffer.getInt(offset);
         if (recordLength == 6)
             throw new IOException("No solution recorded"); //If the offset is equal to 6 it means that the only thing the TWS file stores for that level is its level number, and its password
-        reader.bytesRead = 6; //cancel out earlier readings and add len of level number and pass
+        RecordReader reader = new RecordReader(contents.buffer, offset + 10); //10: length of recordLength, level number and password
+        int recordEnd = offset + 4 + recordLength;
         reader.readByte();    //Other Flags
 
         int stepSlideValue = reader.readByte();
@@ -77,7 +134,7 @@ public class TWSReader{
 
         reader.counter = 0;
         CharArrayWriter writer = new CharArrayWriter();
-        while (reader.bytesRead < recordLength){
+        while (reader.position < recordEnd){
             int b = reader.readByte();
             try {
                 switch (b & 0b11) {
@@ -104,7 +161,7 @@ public class TWSReader{
         for (int i = writer.size() + reader.solutionLengthOffset; i <= solutionTime; i++)
             writer.write('~');
 
-        Solution s = new Solution(writer.toCharArray(), rngSeed, step, Solution.QUARTER_MOVES, ruleset, initialSlide);
+        Solution s = new Solution(writer.toCharArray(), rngSeed, step, Solution.QUARTER_MOVES, contents.ruleset, initialSlide);
         s.efficiency = 1 - (double) reader.ineffiencies / solutionTime;
         s.melindaRouterGenerated = reader.melindaRouter;
         return s;
@@ -115,7 +172,11 @@ public class TWSReader{
         verifyAndInit();
     }
 
-    private static class twsInputStream extends FileInputStream{
+    /**
+     * Decodes one record, reading the buffer with absolute gets only so any
+     * number of these can share it.
+     */
+    private static class RecordReader{
         private final char[] DIRECTIONS = new char[] {UP, LEFT, DOWN, RIGHT, UP_LEFT, DOWN_LEFT, UP_RIGHT, DOWN_RIGHT};
         private final Set<Character> cardinalSet = Set.of(UP, LEFT, DOWN, RIGHT);
 
@@ -126,7 +187,6 @@ public class TWSReader{
         public int num3TickTime = 0;
         public boolean melindaRouter = false;
 
-        public int bytesRead = 0;
         public int counter;
         public void readFormat1(int b, Writer writer) throws IOException{
             int length = b & 0b11;
@@ -218,33 +278,20 @@ public class TWSReader{
             }
         }
 
-        public twsInputStream (File file) throws FileNotFoundException{
-            super(file);
-        }
-        int readByte() throws IOException{
-            bytesRead++;
-            return read();
-        }
-        int readShort() throws IOException{
-            bytesRead += 2;
-            return read() + (read() << 8);
-        }
-        int readInt() throws IOException{
-            bytesRead += 4;
-            return read() + (read() << 8) + (read() << 16) + (read() << 24);
+        private final ByteBuffer buffer;
+        private int position;
+
+        private RecordReader(ByteBuffer buffer, int position){
+            this.buffer = buffer;
+            this.position = position;
         }
-        byte[] readAscii(int length) throws IOException{
-            bytesRead += length;
-            byte[] asciiBytes = new byte[length];
-            read(asciiBytes);
-            return asciiBytes;
+        int readByte(){
+            return buffer.get(position++) & 0xFF;
         }
-        byte[] readEncodedAscii(int length) throws IOException{
-            bytesRead += length;
-            byte[] asciiBytes = new byte[length];
-            read(asciiBytes);
-            for (int i = 0; i < length; i++) asciiBytes[i] = (byte) ((int) asciiBytes[i] ^ 0x99b);
-            return asciiBytes;
+        int readInt(){
+            int i = buffer.getInt(position);
+            position += 4;
+            return i;
         }
     }
 
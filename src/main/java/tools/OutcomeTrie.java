@@ -0,0 +1,224 @@
+package tools;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import emulator.TickFlags;
+import game.Level;
+import game.RNG;
+
+import java.nio.ByteBuffer;
+import java.util.function.Predicate;
+
+/**
+ * Remembers how a solution plays out for each sequence of RNG outcomes seen
+ * so far, so that a seed only has to be played from the first RNG use where
+ * it does something no earlier seed did. The game only sees the seed
+ * through what each use of the RNG returns, so two seeds that give the same
+ * outcomes play the same way, and once a run ends its result holds for
+ * every seed giving the same outcomes up to there.
+ * <p>
+ *     Each branch is one use of the RNG, reached by a sequence of outcomes,
+ *     and keeps the state from the start of the tick it happens in. A new
+ *     outcome is played from that tick, and the branches for the uses in the
+ *     next few ticks are added as the run finds them. Nothing is added once
+ *     the trie has used its memory limit.
+ * </p>
+ * This is not thread safe, each search thread has its own.
+ */
+class OutcomeTrie {
+
+    /*
+     * Seeds rarely share a long run of outcomes after they first differ, so
+     * a run only adds the first few ticks that use the RNG after that. A
+     * seed that goes further down the same path plays from the last of them.
+     */
+    private static final int TICKS_PER_RUN = 8;
+    private static final int BRANCH_BYTES = 48;    // a rough size for a branch without its children
+
+    /**
+     * The start of a tick in which the RNG is used.
+     */
+    private static final class TickStart {
+        byte[] state;           // null while the tick is being played
+        final int move;         // the move made on the tick
+        final long advances;    // the RNG advances from the root to the tick
+
+        TickStart(byte[] state, int move, long advances) {
+            this.state = state;
+            this.move = move;
+            this.advances = advances;
+        }
+    }
+
+    private static final class Branch {
+        TickStart tick;         // the tick the use happens in
+        RNG.Call call;          // the use, null until it is known
+        boolean ended;          // whether the run ended instead of using the RNG again
+        boolean succeeded;      // if it ended
+        Branch[] children;      // by outcome index
+    }
+
+    private final SuperCC emulator;
+    private final Level level;
+    private final Solution solution;
+    private final Predicate<Level> succeeded;
+    private final long maxBytes;
+    private final Branch root = new Branch();
+    private long bytes;
+    private long runs, branches;
+
+    private ByteBuffer tickState = ByteBuffer.allocate(0);
+    private Branch cursor;          // the branch for the next use of the RNG while playing
+    private TickStart currentTick;  // the tick being played, once it has used the RNG
+    private int ticksKept;
+    private int tickMove;
+    private long tickAdvances;
+
+    /**
+     * @param emulator The emulator whose level is played.
+     * @param solution The solution to play.
+     * @param rootState The state before the first tick that uses the RNG.
+     * @param rootMove The move made on that tick.
+     * @param succeeded Whether a finished run succeeded.
+     * @param maxBytes The most memory to use for states.
+     */
+    OutcomeTrie(SuperCC emulator, Solution solution, byte[] rootState, int rootMove,
+                Predicate<Level> succeeded, long maxBytes) {
+        this.emulator = emulator;
+        this.level = emulator.getLevel();
+        this.solution = solution;
+        this.succeeded = succeeded;
+        this.maxBytes = maxBytes;
+        root.tick = new TickStart(rootState, rootMove, 0);
+    }
+
+    /**
+     * @return The number of times a seed had to be played.
+     */
+    long getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return The number of uses of the RNG in the trie.
+     */
+    long getBranches() {
+        return branches;
+    }
+
+    /**
+     * @param seed The seed to try.
+     * @return Whether the solution works with it.
+     */
+    boolean succeeds(int seed) {
+        Branch b = root, from = root;
+        int value = seed;
+        while (b != null) {
+            if (b.ended)
+                return b.succeeded;
+            if (b.call == null)
+                break;
+            from = b;
+            value = RNG.next(value);
+            b = b.children[RNG.outcomeIndex(b.call, value)];
+        }
+        return play(from, seed);
+    }
+
+    /**
+     * Plays a seed from the start of the tick of a branch, adding the
+     * branches it finds while there is room.
+     */
+    private boolean play(Branch from, int seed) {
+        runs++;
+        TickStart start = from.tick;
+        RNG rng = level.getRNG();
+        level.load(start.state);
+        rng.setCurrentValue(RNG.skip(seed, start.advances));
+        boolean recording = bytes < maxBytes;
+        cursor = recording ? firstBranch(start, seed) : null;
+        rng.setTracer(recording ? this::advanced : null);
+        currentTick = start;
+        tickAdvances = start.advances;
+        ticksKept = 0;
+        try {
+            for (int move = start.move; move < solution.basicMoves.length; ) {
+                if (recording && currentTick == null) {
+                    if (tickState.capacity() < level.savestateSize())
+                        tickState = ByteBuffer.allocate(level.savestateSize());
+                    level.saveInto(tickState.clear());
+                }
+                tickMove = move;
+                long before = rng.getAdvances();
+                move = solution.tickMove(emulator, TickFlags.LIGHT, move);
+                if (currentTick != null && currentTick.state == null)
+                    keep(currentTick);
+                currentTick = null;
+                tickAdvances += rng.getAdvances() - before;
+                if (recording && (bytes >= maxBytes || ticksKept == TICKS_PER_RUN || cursor == null)) {
+                    recording = false;
+                    cursor = null;
+                    rng.setTracer(null);
+                }
+            }
+        }
+        finally {
+            rng.setTracer(null);
+        }
+        boolean result = succeeded.test(level);
+        if (cursor != null && cursor.call == null) {
+            cursor.ended = true;
+            cursor.succeeded = result;
+        }
+        cursor = null;
+        return result;
+    }
+
+    /**
+     * @return The branch for the first use of the RNG in a tick, on the path
+     * of a seed.
+     */
+    private Branch firstBranch(TickStart tick, int seed) {
+        Branch b = root;
+        int value = seed;
+        while (b.tick != tick) {
+            value = RNG.next(value);
+            b = b.children[RNG.outcomeIndex(b.call, value)];
+        }
+        return b;
+    }
+
+    /**
+     * Follows the trie along with the game as it plays, adding a branch for
+     * every use of the RNG that isn't in it yet.
+     */
+    private void advanced(RNG.Call call, int value) {
+        if (cursor == null)
+            return;
+        if (cursor.call == null) {
+            if (currentTick == null)
+                currentTick = new TickStart(null, tickMove, tickAdvances);
+            cursor.tick = currentTick;
+            cursor.call = call;
+            cursor.children = new Branch[call.outcomes];
+            bytes += BRANCH_BYTES + 4L * call.outcomes;
+            branches++;
+        }
+        else if (cursor.call != call) {
+            cursor = null; //the same outcomes didn't play the same way, so don't trust anything after here
+            return;
+        }
+        int outcome = RNG.outcomeIndex(call, value);
+        Branch child = cursor.children[outcome];
+        if (child == null)
+            child = cursor.children[outcome] = new Branch();
+        cursor = child;
+    }
+
+    private void keep(TickStart tick) {
+        tick.state = new byte[tickState.flip().remaining()];
+        tickState.get(tick.state);
+        bytes += tick.state.length;
+        ticksKept++;
+    }
+}
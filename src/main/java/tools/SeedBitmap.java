@@ -0,0 +1,461 @@
+package tools;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of RNG seeds, split the same way as a roaring bitmap:
+ * the top 15 bits of a seed pick one of 32768 containers, which holds the
+ * bottom 16 bits either as a sorted array, when it has few seeds, or as a
+ * bitmap. A container with every seed in it is shared and takes no memory.
+ * On disk each container is written as an array, a bitmap or a list of
+ * runs, whichever is smallest, so even a set of every seed is only a few
+ * hundred KB.
+ */
+public class SeedBitmap {
+
+    private static final int MAGIC = 0x53454544; //"SEED"
+    private static final int VERSION = 1;
+    private static final int CONTAINER_BITS = 16;
+    private static final int CONTAINERS = 1 << (31 - CONTAINER_BITS);
+    private static final int CONTAINER_SIZE = 1 << CONTAINER_BITS;
+    private static final int WORDS = CONTAINER_SIZE / Long.SIZE;
+    private static final int ARRAY_MAX = 4096;                          // an array this long takes as much as a bitmap
+    private static final byte ARRAY = 0, BITMAP = 1, RUNS = 2;
+
+    private final Container[] containers = new Container[CONTAINERS];
+    private long cardinality;
+
+    /**
+     * The bottom 16 bits of the seeds in one container. Unless it is FULL,
+     * bits is null while the seeds are kept in the first size elements of
+     * array.
+     */
+    private static final class Container {
+        private char[] array;
+        private long[] bits;
+        private int size;
+
+        private static final Container FULL = new Container(null, fullBits(), CONTAINER_SIZE);
+
+        private Container(char[] array, long[] bits, int size) {
+            this.array = array;
+            this.bits = bits;
+            this.size = size;
+        }
+
+        private static long[] fullBits() {
+            long[] bits = new long[WORDS];
+            Arrays.fill(bits, -1L);
+            return bits;
+        }
+
+        boolean contains(int low) {
+            if (bits != null)
+                return (bits[low >>> 6] & (1L << low)) != 0;
+            return Arrays.binarySearch(array, 0, size, (char) low) >= 0;
+        }
+
+        /**
+         * @return The container holding low as well, which is different if
+         * this container had to change its representation.
+         */
+        Container add(int low) {
+            if (size == CONTAINER_SIZE)
+                return this;
+            if (bits != null) {
+                long bit = 1L << low;
+                if ((bits[low >>> 6] & bit) == 0) {
+                    bits[low >>> 6] |= bit;
+                    size++;
+                }
+                return size == CONTAINER_SIZE ? FULL : this;
+            }
+            int i = Arrays.binarySearch(array, 0, size, (char) low);
+            if (i >= 0)
+                return this;
+            if (size == ARRAY_MAX) {
+                Container bitmap = toBitmap();
+                bitmap.add(low);
+                return bitmap;
+            }
+            i = -i - 1;
+            if (size == array.length)
+                array = Arrays.copyOf(array, Math.min(array.length * 2, ARRAY_MAX));
+            System.arraycopy(array, i, array, i + 1, size - i);
+            array[i] = (char) low;
+            size++;
+            return this;
+        }
+
+        private Container toBitmap() {
+            long[] bits = new long[WORDS];
+            for (int i = 0; i < size; i++)
+                bits[array[i] >>> 6] |= 1L << array[i];
+            return new Container(null, bits, size);
+        }
+
+        /**
+         * @return The smallest value from low upwards, or -1 if there is none.
+         */
+        int next(int low) {
+            if (bits == null) {
+                int i = Arrays.binarySearch(array, 0, size, (char) low);
+                if (i < 0)
+                    i = -i - 1;
+                return i < size ? array[i] : -1;
+            }
+            int word = low >>> 6;
+            long w = bits[word] & (-1L << low);
+            while (w == 0) {
+                if (++word == WORDS)
+                    return -1;
+                w = bits[word];
+            }
+            return word * Long.SIZE + Long.numberOfTrailingZeros(w);
+        }
+
+        void forEach(int high, IntConsumer action) {
+            for (int low = next(0); low >= 0; low = low + 1 < CONTAINER_SIZE ? next(low + 1) : -1)
+                action.accept(high | low);
+        }
+
+        /**
+         * @return The intersection of two containers, or null if it is empty.
+         */
+        Container and(Container other) {
+            if (bits != null && other.bits != null) {
+                long[] result = new long[WORDS];
+                int size = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    result[i] = bits[i] & other.bits[i];
+                    size += Long.bitCount(result[i]);
+                }
+                if (size == 0)
+                    return null;
+                if (size == CONTAINER_SIZE)
+                    return FULL;
+                Container c = new Container(null, result, size);
+                return size > ARRAY_MAX ? c : c.toArray();
+            }
+            Container array = bits == null ? this : other;
+            Container checked = array == this ? other : this;
+            char[] result = new char[array.size];
+            int size = 0;
+            for (int i = 0; i < array.size; i++) {
+                if (checked.contains(array.array[i]))
+                    result[size++] = array.array[i];
+            }
+            return size == 0 ? null : new Container(result, null, size);
+        }
+
+        private Container toArray() {
+            char[] array = new char[size];
+            int i = 0;
+            for (int low = next(0); low >= 0; low = low + 1 < CONTAINER_SIZE ? next(low + 1) : -1)
+                array[i++] = (char) low;
+            return new Container(array, null, size);
+        }
+
+        private int runs() {
+            int runs = 0;
+            if (size == CONTAINER_SIZE)
+                return 1;
+            if (bits == null) {
+                for (int i = 0; i < size; i++) {
+                    if (i == 0 || array[i] != array[i - 1] + 1)
+                        runs++;
+                }
+                return runs;
+            }
+            long carry = 0;
+            for (long w : bits) {
+                runs += Long.bitCount(w & ~(w << 1 | carry));
+                carry = w >>> 63;
+            }
+            return runs;
+        }
+
+        /**
+         * Writes the start and length of every run of seeds, a word at a
+         * time for a bitmap.
+         */
+        private void writeRuns(DataOutput out) throws IOException {
+            if (size == CONTAINER_SIZE) {
+                writeRun(out, 0, CONTAINER_SIZE);
+                return;
+            }
+            if (bits == null) {
+                int start = 0;
+                for (int i = 1; i <= size; i++) {
+                    if (i == size || array[i] != array[i - 1] + 1) {
+                        writeRun(out, array[start], array[i - 1] + 1);
+                        start = i;
+                    }
+                }
+                return;
+            }
+            int start = -1;
+            for (int word = 0; word < WORDS; word++) {
+                long w = bits[word];
+                int bit = 0;
+                while (bit < Long.SIZE) {
+                    if (start < 0) {
+                        long rest = w >>> bit;
+                        if (rest == 0)
+                            break;
+                        bit += Long.numberOfTrailingZeros(rest);
+                        start = word * Long.SIZE + bit;
+                    }
+                    else {
+                        long rest = ~w >>> bit;
+                        if (rest == 0)
+                            break;
+                        bit += Long.numberOfTrailingZeros(rest);
+                        writeRun(out, start, word * Long.SIZE + bit);
+                        start = -1;
+                    }
+                }
+            }
+            if (start >= 0)
+                writeRun(out, start, CONTAINER_SIZE);
+        }
+
+        private static void writeRun(DataOutput out, int start, int end) throws IOException {
+            out.writeChar(start);
+            out.writeChar(end - start - 1);
+        }
+
+        void write(DataOutput out) throws IOException {
+            int runs = runs();
+            if (runs * 4 <= Math.min(size * 2, WORDS * 8)) {
+                out.writeByte(RUNS);
+                out.writeChar(runs - 1);
+                writeRuns(out);
+            }
+            else if (size <= ARRAY_MAX) {
+                out.writeByte(ARRAY);
+                out.writeChar(size - 1);
+                Container array = bits == null ? this : toArray();
+                for (int i = 0; i < size; i++)
+                    out.writeChar(array.array[i]);
+            }
+            else {
+                out.writeByte(BITMAP);
+                for (long w : bits)
+                    out.writeLong(w);
+            }
+        }
+
+        /**
+         * Sets the bits from start up to but not including end.
+         */
+        private static void setRange(long[] bits, int start, int end) {
+            int first = start >>> 6, last = (end - 1) >>> 6;
+            if (first == last) {
+                bits[first] |= (-1L << start) & (-1L >>> -end);
+                return;
+            }
+            bits[first] |= -1L << start;
+            Arrays.fill(bits, first + 1, last, -1L);
+            bits[last] |= -1L >>> -end;
+        }
+
+        static Container read(DataInput in) throws IOException {
+            byte type = in.readByte();
+            switch (type) {
+                case ARRAY: {
+                    int size = in.readChar() + 1;
+                    if (size > ARRAY_MAX)
+                        throw new IOException("Seed array too long: " + size);
+                    char[] array = new char[size];
+                    for (int i = 0; i < size; i++) {
+                        array[i] = in.readChar();
+                        if (i > 0 && array[i] <= array[i - 1])
+                            throw new IOException("Seed array out of order");
+                    }
+                    return new Container(array, null, size);
+                }
+                case BITMAP: {
+                    long[] bits = new long[WORDS];
+                    int size = 0;
+                    for (int i = 0; i < WORDS; i++) {
+                        bits[i] = in.readLong();
+                        size += Long.bitCount(bits[i]);
+                    }
+                    return size == CONTAINER_SIZE ? FULL : new Container(null, bits, size);
+                }
+                case RUNS: {
+                    int runs = in.readChar() + 1;
+                    long[] bits = new long[WORDS];
+                    int size = 0;
+                    for (int i = 0; i < runs; i++) {
+                        int start = in.readChar();
+                        int length = in.readChar() + 1;
+                        if (start + length > CONTAINER_SIZE)
+                            throw new IOException("Seed run out of range");
+                        setRange(bits, start, start + length);
+                        size += length;
+                    }
+                    if (size == CONTAINER_SIZE)
+                        return FULL;
+                    Container c = new Container(null, bits, size);
+                    return size > ARRAY_MAX ? c : c.toArray();
+                }
+                default:
+                    throw new IOException("Unknown seed container type: " + type);
+            }
+        }
+    }
+
+    private static void checkSeed(int seed) {
+        if (seed < 0)
+            throw new IllegalArgumentException("Seed out of range: " + seed);
+    }
+
+    /**
+     * @param seed A seed from 0 to 2^31-1.
+     * @return true if the seed wasn't in the set already.
+     */
+    public boolean add(int seed) {
+        checkSeed(seed);
+        int high = seed >>> CONTAINER_BITS;
+        Container c = containers[high];
+        if (c == null) {
+            containers[high] = new Container(new char[] {(char) seed}, null, 1);
+            cardinality++;
+            return true;
+        }
+        int size = c.size;
+        c = containers[high] = c.add(seed & (CONTAINER_SIZE - 1));
+        cardinality += c.size - size;
+        return c.size != size;
+    }
+
+    /**
+     * Adds every seed from first to last.
+     */
+    public void addRange(int first, int last) {
+        checkSeed(first);
+        for (long seed = first; seed <= last; ) {
+            int high = (int) (seed >>> CONTAINER_BITS);
+            long end = Math.min(last, ((long) high + 1 << CONTAINER_BITS) - 1);
+            if (seed == (long) high << CONTAINER_BITS && end - seed + 1 == CONTAINER_SIZE) {
+                cardinality += CONTAINER_SIZE - (containers[high] == null ? 0 : containers[high].size);
+                containers[high] = Container.FULL;
+            }
+            else {
+                for (long s = seed; s <= end; s++)
+                    add((int) s);
+            }
+            seed = end + 1;
+        }
+    }
+
+    public boolean contains(int seed) {
+        if (seed < 0)
+            return false;
+        Container c = containers[seed >>> CONTAINER_BITS];
+        return c != null && c.contains(seed & (CONTAINER_SIZE - 1));
+    }
+
+    /**
+     * @return The number of seeds in the set.
+     */
+    public long cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @param from The seed to start looking from.
+     * @return The smallest seed in the set that is at least from, or -1 if
+     * there is none.
+     */
+    public int nextSeed(int from) {
+        if (from < 0)
+            from = 0;
+        for (int high = from >>> CONTAINER_BITS; high < CONTAINERS; high++) {
+            Container c = containers[high];
+            if (c != null) {
+                int low = c.next(high == from >>> CONTAINER_BITS ? from & (CONTAINER_SIZE - 1) : 0);
+                if (low >= 0)
+                    return high << CONTAINER_BITS | low;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Calls an action on every seed in the set, in increasing order.
+     */
+    public void forEach(IntConsumer action) {
+        for (int high = 0; high < CONTAINERS; high++) {
+            if (containers[high] != null)
+                containers[high].forEach(high << CONTAINER_BITS, action);
+        }
+    }
+
+    /**
+     * @return A new set of the seeds that are in both sets, for example the
+     * seeds that work for two different routes.
+     */
+    public SeedBitmap and(SeedBitmap other) {
+        SeedBitmap result = new SeedBitmap();
+        for (int high = 0; high < CONTAINERS; high++) {
+            if (containers[high] != null && other.containers[high] != null) {
+                Container c = containers[high].and(other.containers[high]);
+                if (c != null) {
+                    result.containers[high] = c;
+                    result.cardinality += c.size;
+                }
+            }
+        }
+        return result;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        int count = 0;
+        for (Container c : containers) {
+            if (c != null)
+                count++;
+        }
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(count);
+        for (int high = 0; high < CONTAINERS; high++) {
+            if (containers[high] != null) {
+                out.writeShort(high);
+                containers[high].write(out);
+            }
+        }
+    }
+
+    public static SeedBitmap read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != VERSION)
+            throw new IOException("Not a seed bitmap");
+        SeedBitmap bitmap = new SeedBitmap();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int high = in.readShort();
+            if (high < 0 || high >= CONTAINERS || bitmap.containers[high] != null)
+                throw new IOException("Invalid seed container: " + high);
+            Container c = Container.read(in);
+            bitmap.containers[high] = c;
+            bitmap.cardinality += c.size;
+        }
+        return bitmap;
+    }
+
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            write(out);
+        }
+    }
+
+    public static SeedBitmap read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return read(in);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package tools;
+
+import emulator.Solution;
+import game.Level;
+import game.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Estimates the share of seeds a solution works with by trying random seeds,
+ * and stops as soon as the estimate is good enough. This answers whether a
+ * route works with most seeds or only a few in seconds, where finding every
+ * seed it works with takes hours.
+ * <p>
+ *     The estimate comes with a 95% Wilson score interval, which stays
+ *     sensible when the share is close to 0 or 1. Sampling stops once the
+ *     interval is no wider than the width asked for. Alternatively, a
+ *     sequential probability ratio test decides whether the share is above
+ *     or below a threshold, which takes far fewer seeds when the share is
+ *     well away from it. Seeds are drawn with replacement.
+ * </p>
+ */
+public class SeedSampler {
+
+    public static final double DEFAULT_WIDTH = 0.05;
+    public static final long DEFAULT_MAX_SAMPLES = 1 << 20;
+
+    private static final double Z = 1.959963984540054;     // 95% two sided
+    private static final double ERROR = 0.05;              // the chance the test decides wrongly either way
+    private static final int BATCH = 64;                   // seeds a thread tries between checks
+
+    /**
+     * Called every so often while sampling, and once more when it stops.
+     * Called from the sampling threads.
+     */
+    public interface ProgressListener {
+        void progress(SeedSampler sampler);
+    }
+
+    public enum Decision {
+        ABOVE,
+        BELOW,
+        UNDECIDED
+    }
+
+    private final SeedSearchEngine engine;
+    private double width = Double.NaN;
+    private double threshold = Double.NaN, margin;
+    private long maxSamples = DEFAULT_MAX_SAMPLES;
+    private long randomSeed = System.nanoTime();
+    private ProgressListener listener;
+    private long progressNanos, lastProgress;
+
+    private long samples, successes;
+    private long taken;                 // seeds handed to the threads, including those not yet counted
+    private Decision decision = Decision.UNDECIDED;
+    private volatile boolean stopping;
+
+    /**
+     * @param level The level to play, loaded with the step, ruleset and
+     *              initial slide of the solution. It isn't changed.
+     * @param solution The solution to try.
+     * @param endPosition The position Chip has to end on alive, or null if
+     *                    the solution has to finish the level.
+     */
+    public SeedSampler(Level level, Solution solution, Position endPosition) {
+        engine = new SeedSearchEngine(level, solution, endPosition, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stops once the confidence interval is at most this wide. This is the
+     * default, with a width of {@link #DEFAULT_WIDTH}, if no threshold is set.
+     */
+    public synchronized void setWidth(double width) {
+        if (!(width > 0 && width <= 1))
+            throw new IllegalArgumentException("Invalid interval width: " + width);
+        this.width = width;
+    }
+
+    /**
+     * Stops once the share of seeds is known to be above or below a
+     * threshold, see {@link #getDecision()}.
+     * @param threshold The share to test against.
+     * @param margin Shares within this of the threshold count as close
+     *               enough either way. The smaller it is, the more seeds it
+     *               takes to decide on shares near the threshold.
+     */
+    public synchronized void setThreshold(double threshold, double margin) {
+        if (!(threshold - margin > 0 && threshold + margin < 1 && margin > 0))
+            throw new IllegalArgumentException("Invalid threshold: " + threshold + " +/- " + margin);
+        this.threshold = threshold;
+        this.margin = margin;
+    }
+
+    /**
+     * Stops after this many seeds, whether or not the estimate is good
+     * enough.
+     */
+    public synchronized void setMaxSamples(long maxSamples) {
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Seeds the choice of seeds, so that a run with one thread can be
+     * repeated.
+     */
+    public synchronized void setRandomSeed(long randomSeed) {
+        this.randomSeed = randomSeed;
+    }
+
+    public synchronized void setProgressListener(ProgressListener listener, long intervalMillis) {
+        this.listener = listener;
+        progressNanos = intervalMillis * 1_000_000;
+    }
+
+    /**
+     * Samples until the estimate is good enough, the maximum number of seeds
+     * has been tried or {@link #stop()} is called.
+     * @param threads The number of threads to sample on.
+     */
+    public void run(int threads) throws InterruptedException {
+        SplittableRandom random = begin();
+        Thread[] samplers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            SplittableRandom own = random.split();
+            samplers[i] = new Thread(() -> sample(own, threads), "Seed sampler " + i);
+            samplers[i].setDaemon(true);
+            samplers[i].start();
+        }
+        try {
+            for (Thread t : samplers)
+                t.join();
+        }
+        finally {
+            stopping = true;
+        }
+        end();
+    }
+
+    /**
+     * Samples the same way as {@link #run(int)}, on threads that are already
+     * running, for example to sample one route after another without
+     * starting new threads each time.
+     * @param executor The threads to sample on.
+     * @param threads The number of tasks to sample with, which should be no
+     *                more than the number of threads the executor has.
+     */
+    public void run(ExecutorService executor, int threads) throws InterruptedException {
+        SplittableRandom random = begin();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            SplittableRandom own = random.split();
+            tasks.add(() -> {
+                sample(own, threads);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : executor.invokeAll(tasks)) {
+                try {
+                    f.get();
+                }
+                catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        }
+        finally {
+            stopping = true;
+        }
+        end();
+    }
+
+    private synchronized SplittableRandom begin() {
+        stopping = false;
+        if (Double.isNaN(width) && Double.isNaN(threshold))
+            width = DEFAULT_WIDTH;
+        taken = samples;
+        lastProgress = System.nanoTime();
+        return new SplittableRandom(randomSeed);
+    }
+
+    private void end() {
+        ProgressListener l;
+        synchronized (this) {
+            l = listener;
+        }
+        if (l != null)
+            l.progress(this);
+    }
+
+    /**
+     * Stops sampling from another thread. The estimate so far is kept.
+     */
+    public void stop() {
+        stopping = true;
+    }
+
+    /**
+     * @return The number of seeds to try next, so that no more than the
+     * maximum are tried in all, or 0 once that many have been handed out.
+     */
+    private synchronized int takeBatch() {
+        int batch = (int) Math.max(0, Math.min(BATCH, maxSamples - taken));
+        taken += batch;
+        return batch;
+    }
+
+    private void sample(SplittableRandom random, int threads) {
+        SeedSearchEngine.Searcher searcher = engine.new Searcher(threads);
+        int[] found = new int[1];
+        int batch;
+        while (!stopping && (batch = takeBatch()) > 0) {
+            int batchSuccesses = 0;
+            for (int i = 0; i < batch; i++) {
+                int seed = random.nextInt() & 0x7FFFFFFF;
+                batchSuccesses += searcher.search(seed, seed, found);
+            }
+            ProgressListener report = null;
+            synchronized (this) {
+                if (stopping)
+                    return;
+                samples += batch;
+                successes += batchSuccesses;
+                if (!Double.isNaN(threshold))
+                    decision = test(successes, samples, threshold, margin);
+                if (samples >= maxSamples || isConclusive())
+                    stopping = true;
+                long now = System.nanoTime();
+                if (listener != null && !stopping && now - lastProgress >= progressNanos) {
+                    lastProgress = now;
+                    report = listener;
+                }
+            }
+            if (report != null)
+                report.progress(this);
+        }
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    public synchronized long getSuccesses() {
+        return successes;
+    }
+
+    /**
+     * @return The share of the seeds tried that the solution worked with.
+     */
+    public synchronized double getRate() {
+        return samples == 0 ? 0 : (double) successes / samples;
+    }
+
+    public synchronized double getLowerBound() {
+        return wilsonInterval(successes, samples)[0];
+    }
+
+    public synchronized double getUpperBound() {
+        return wilsonInterval(successes, samples)[1];
+    }
+
+    /**
+     * @return Whether the share of seeds is above or below the threshold,
+     * with a 5% chance of being wrong when the share is outside the margin,
+     * or UNDECIDED if that isn't known yet or no threshold was set.
+     */
+    public synchronized Decision getDecision() {
+        return decision;
+    }
+
+    /**
+     * @return Whether the estimate is good enough, rather than sampling
+     * having stopped after the most seeds or been stopped early.
+     */
+    public synchronized boolean isConclusive() {
+        return decision != Decision.UNDECIDED
+                || !Double.isNaN(width) && getUpperBound() - getLowerBound() <= width;
+    }
+
+    /**
+     * @param successes The number of seeds the solution worked with.
+     * @param samples The number of seeds tried.
+     * @return The lower and upper bound of the 95% Wilson score interval for
+     * the share of seeds the solution works with.
+     */
+    public static double[] wilsonInterval(long successes, long samples) {
+        if (samples == 0)
+            return new double[] {0, 1};
+        double n = samples, p = successes / n, z2 = Z * Z;
+        double centre = (p + z2 / (2 * n)) / (1 + z2 / n);
+        double half = Z * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n)) / (1 + z2 / n);
+        return new double[] {Math.max(0, centre - half), Math.min(1, centre + half)};
+    }
+
+    /**
+     * Wald's sequential probability ratio test of a share of threshold - margin
+     * against threshold + margin, with both errors at 5%.
+     */
+    static Decision test(long successes, long samples, double threshold, double margin) {
+        double below = threshold - margin, above = threshold + margin;
+        double llr = successes * Math.log(above / below)
+                + (samples - successes) * Math.log((1 - above) / (1 - below));
+        if (llr >= Math.log((1 - ERROR) / ERROR))
+            return Decision.ABOVE;
+        if (llr <= Math.log(ERROR / (1 - ERROR)))
+            return Decision.BELOW;
+        return Decision.UNDECIDED;
+    }
+}
@@ -2,18 +2,16 @@ package tools;
 
 import emulator.Solution;
 import emulator.SuperCC;
-import emulator.TickFlags;
+import game.Level;
 import game.Position;
-import game.Ruleset;
 
 import javax.swing.*;
 
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class SeedSearch {
 
@@ -31,22 +29,16 @@ public class SeedSearch {
     private JLabel threadLabel;
     private JLabel rulesetWarningLabel;
 
-    private static final int UPDATE_VALUE_RATE = 1000;
-    private static final int UPDATE_GUI_RATE = UPDATE_VALUE_RATE * 2;
+    private static final long UPDATE_GUI_MILLIS = 500;
+    private static final long CHECKPOINT_MILLIS = 60_000;
 
-    private final byte[] startingState;
-    private static boolean killFlag = false;
-    private static boolean running = false;
-    private static AtomicInteger numAlive = new AtomicInteger(0);
-    private DecimalFormat df;
-
-    private long[] threadCurrentSeed;
-    private AtomicLong globalAttempts = new AtomicLong(0);
-    private AtomicLong globalSuccesses = new AtomicLong(0);
-    private AtomicLong globalLastSuccess = new AtomicLong(-1);
-    private boolean ranAlready = false;
+    private final Solution solution;
+    private final Level startingLevel;
+    private final File checkpoint;
+    private final DecimalFormat df;
+    private SeedSearchEngine engine;
     private boolean untilPosition = false;
-    private Position endPosition = new Position(0, 0);
+    private Position endPosition = Position.fromXY(0, 0);
 
     public SeedSearch(SuperCC emulator, Solution solution) {
         int maxNumThreads = Runtime.getRuntime().availableProcessors();
@@ -60,29 +52,21 @@ public class SeedSearch {
 
         emulator.loadLevel(emulator.getLevel().getLevelNumber(), 0, solution.step, false,
                 solution.ruleset, solution.initialSlide);
-        startingState = emulator.getLevel().save();
+        this.solution = new Solution(solution);
+        startingLevel = emulator.getLevel().fork();
+        checkpoint = new File(emulator.getSeedSearchPath());
     
         resultsLabel.setText("Successes: 0/0 (0%)");
         df = new DecimalFormat("##.####");
 
         startStopButton.addActionListener((e) -> {
-            int numThreads = threadSlider.getValue();
-            int start = Integer.parseInt(startField.getText());
-            long numSeeds = Integer.MAX_VALUE - start;
-            long seedPoolSize = (numSeeds + 1) / numThreads; //avoids overflow before reducing back in range
-
-            if (running) {
+            if (engine != null && engine.isRunning()) {
                 startStopButton.setText("Resume");
-                killFlag = true;
+                engine.stop();
+                return;
             }
-            else {
-                if (!ranAlready) {
-                    threadCurrentSeed = new long[numThreads];
-                    ranAlready = true;
-                    for (int i=0; i < numThreads; i++) {
-                        threadCurrentSeed[i] = (start + seedPoolSize * i);
-                    }
-                }
+            if (engine == null) {
+                int start = Integer.parseInt(startField.getText());
                 if (untilPosition) {
                     String positionString = positionField.getText().replaceAll("\\s+",""); //Remove whitespace
                     String[] positionStrings = positionString.split(",");
@@ -91,33 +75,30 @@ public class SeedSearch {
                     positions[0] = Integer.min(positions[0], 31);
                     positions[1] = Integer.max(positions[1], 0);
                     positions[1] = Integer.min(positions[1], 31);
-                    endPosition = new Position(positions[0], positions[1]);
+                    endPosition = Position.fromXY(positions[0], positions[1]);
                 }
-                searchTypeLabel.setVisible(false);
-                untilExitRadioButton.setVisible(false);
-                untilPositionRadioButton.setVisible(false);
-                positionField.setVisible(false);
-                startLabel.setVisible(false);
-                startField.setVisible(false);
-                threadLabel.setVisible(false);
-                threadSlider.setVisible(false);
-                rulesetWarningLabel.setVisible(false);
-                startStopButton.setText("Pause");
-
-                for (int i = 0; i < numThreads; i++) {
-                    long end;
-                    if (i != numThreads - 1) {
-                        end = start + seedPoolSize * (i + 1) - 1;
-                    }
-                    else
-                        end = Integer.MAX_VALUE;
-
-                    SuperCC threadEmulator = new SuperCC(false);
-                    threadEmulator.openLevelset(new File(emulator.getLevelsetPath()));
-                    threadEmulator.loadLevel(emulator.getLevel().getLevelNumber(), solution.rngSeed, solution.step, false, solution.ruleset, solution.initialSlide);
-                    new SeedSearchThread(i, end, threadEmulator, new Solution(solution)).start();
+                engine = new SeedSearchEngine(startingLevel, this.solution, untilPosition ? endPosition : null,
+                        start, Integer.MAX_VALUE);
+                try {
+                    engine.resume(checkpoint); //carries on from the last time this search was closed
+                }
+                catch (IOException ex) {
+                    emulator.throwError("Could not load the seed search checkpoint:\n" + ex.getMessage());
                 }
+                engine.setCheckpoint(checkpoint, CHECKPOINT_MILLIS);
+                engine.setProgressListener(search -> SwingUtilities.invokeLater(this::updateText), UPDATE_GUI_MILLIS);
             }
+            searchTypeLabel.setVisible(false);
+            untilExitRadioButton.setVisible(false);
+            untilPositionRadioButton.setVisible(false);
+            positionField.setVisible(false);
+            startLabel.setVisible(false);
+            startField.setVisible(false);
+            threadLabel.setVisible(false);
+            threadSlider.setVisible(false);
+            rulesetWarningLabel.setVisible(false);
+            startStopButton.setText("Pause");
+            engine.start(threadSlider.getValue());
         });
         untilPositionRadioButton.addActionListener(e -> {
             positionField.setEnabled(true);
@@ -134,7 +115,10 @@ public class SeedSearch {
         frame.setLocationRelativeTo(emulator.getMainWindow());
         frame.setVisible(true);
         frame.addWindowListener(new WindowAdapter() {
-            @Override public void windowClosing(WindowEvent windowEvent) { killFlag = true; }
+            @Override public void windowClosing(WindowEvent windowEvent) {
+                if (engine != null)
+                    engine.stop(); //saves a checkpoint once the threads have stopped
+            }
         });
     }
 
@@ -143,80 +127,21 @@ public class SeedSearch {
         exampleSeedLabel = new JLabel("Example seed:");
     }
 
-    private void updateValues(int attempsSinceUpdate, int successes, long exampleSuccess, long currentSeed) {
-        globalAttempts.addAndGet(attempsSinceUpdate);
-        globalSuccesses.addAndGet(successes);
-        if (exampleSuccess >= 0)
-            globalLastSuccess.set(exampleSuccess);
-        if (currentSeed % UPDATE_GUI_RATE == 0)
-            updateText();
-    }
-
     private void updateText() {
-        long lastSuccessNA = globalLastSuccess.get();
-        long globalSuccessesNA = globalSuccesses.get();
-        long globalAttemptsNA = globalAttempts.get();
-        resultsLabel.setText("Successes: "+ globalSuccessesNA +"/"+globalAttemptsNA+" ("+df.format(100.0 * globalSuccessesNA / globalAttemptsNA)+"%)");
+        long lastSuccess = engine.getLastSuccess();
+        long successes = engine.getSuccesses();
+        long attempts = engine.getAttempts();
+        resultsLabel.setText("Successes: "+ successes +"/"+attempts+" ("+df.format(100.0 * successes / attempts)+"%), "
+                + Math.round(engine.getSeedsPerSecond()) + " seeds/s");
         resultsLabel.repaint();
-        if (lastSuccessNA >= 0)
-            exampleSeedLabel.setText("Example seed: " + lastSuccessNA);
+        if (lastSuccess >= 0)
+            exampleSeedLabel.setText("Example seed: " + lastSuccess);
         exampleSeedLabel.repaint();
-    }
-
-    private boolean verifySeed(long seed, Solution solution, SuperCC emulator) {
-        solution.rngSeed = (int) seed;
-        emulator.getLevel().load(startingState);
-        emulator.getLevel().getCheats().setRng((int) seed);
-        solution.loadMoves(emulator, TickFlags.LIGHT, false);
-        if (!untilPosition)
-            return emulator.getLevel().isCompleted();
-        else
-            return emulator.getLevel().getChip().getPosition().equals(endPosition) && !emulator.getLevel().getChip().isDead();
+        if (engine.isFinished())
+            startStopButton.setText("Finished");
     }
 
     public static boolean isRunning() {
-        return running;
-    }
-
-    private class SeedSearchThread extends Thread {
-        int threadNum, attemptsSinceUpdate, successesSinceUpdate;
-        long currentSeed, endSeed, lastSuccess;
-        SuperCC emulator;
-        Solution solution;
-        public void run(){
-            running = true;
-            killFlag = false;
-            while (!killFlag && currentSeed <= endSeed) {
-                if (verifySeed(currentSeed, solution, emulator)) {
-                    successesSinceUpdate++;
-                    lastSuccess = currentSeed;
-                }
-                attemptsSinceUpdate++;
-                currentSeed++;
-                if (currentSeed % UPDATE_VALUE_RATE == 0) {
-                    updateValues(attemptsSinceUpdate, successesSinceUpdate, lastSuccess, currentSeed);
-                    attemptsSinceUpdate = 0;
-                    successesSinceUpdate = 0;
-                }
-            }
-            updateValues(attemptsSinceUpdate, successesSinceUpdate, lastSuccess, currentSeed); //just have it update with the last result, in case a success is found before an update and it gets canceled
-            threadCurrentSeed[threadNum] = currentSeed;
-            if (numAlive.decrementAndGet() == 0) { //last one cleans up
-                updateText();
-                running = false;
-                killFlag = false;
-            }
-        }
-
-        SeedSearchThread(int threadNum, long endSeed, SuperCC emulator, Solution solution) {
-            this.threadNum = threadNum;
-            this.currentSeed = threadCurrentSeed[threadNum];
-            this.endSeed = endSeed;
-            this.lastSuccess = -1;
-            this.emulator = emulator;
-            this.solution = solution;
-
-            numAlive.incrementAndGet();
-        }
+        return SeedSearchEngine.anyRunning();
     }
 }
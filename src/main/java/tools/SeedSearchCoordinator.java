@@ -0,0 +1,346 @@
+package tools;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Hands out the chunks of a seed search to worker processes over TCP, so a
+ * search can use more than one machine. The coordinator takes its chunks
+ * from a SeedSearchEngine, which keeps track of the results and checkpoints
+ * the same way as for a search on local threads, and which can run local
+ * threads at the same time.
+ * <p>
+ *     Every worker is sent the levelset, level number, solution and goal
+ *     when it connects, so it doesn't need any files of its own. A worker
+ *     asks for a chunk for every thread it has, sends back the seeds that
+ *     worked in each as a SeedBitmap, and sends a heartbeat every few
+ *     seconds. The chunks of a worker that disconnects or stops sending
+ *     anything are handed out again. The coordinator sends heartbeats too,
+ *     so a worker can tell when the coordinator is gone.
+ * </p>
+ * See {@link SeedSearchWorker} for the other end.
+ */
+public class SeedSearchCoordinator implements Closeable {
+
+    static final int MAGIC = 0x53534357; //"SSCW"
+    static final int VERSION = 2;
+    static final byte REQUEST = 1, RESULT = 2, HEARTBEAT = 3, CHUNK = 4, DONE = 5;
+    static final long HEARTBEAT_MILLIS = 2000;
+    private static final long MONITOR_MILLIS = 100, CLOSE_MILLIS = 2000;
+
+    private final SeedSearchEngine engine;
+    private final ServerSocket server;
+    private final long timeoutMillis;
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final byte[] levelset;
+    private final String levelsetName;
+    private final byte[] solution;
+    private volatile boolean closed;
+    private int reassigned;
+    private int workers;
+
+    /**
+     * Starts listening for workers.
+     * @param engine The search to hand out.
+     * @param levelset The levelset file of the level being searched.
+     * @param port The port to listen on, or 0 for any free port.
+     * @param timeoutMillis The time without hearing from a worker after which
+     *                      it is treated as lost. This must be longer than
+     *                      {@link #HEARTBEAT_MILLIS}.
+     * @throws IOException if the levelset can't be read or the port can't be
+     * listened on.
+     */
+    public SeedSearchCoordinator(SeedSearchEngine engine, File levelset, int port, long timeoutMillis)
+            throws IOException {
+        if (timeoutMillis <= HEARTBEAT_MILLIS)
+            throw new IllegalArgumentException("Worker timeout must be longer than " + HEARTBEAT_MILLIS + "ms");
+        this.engine = engine;
+        this.timeoutMillis = timeoutMillis;
+        this.levelset = Files.readAllBytes(levelset.toPath());
+        levelsetName = levelset.getName();
+        solution = engine.getSolution().toJSON().toJSONString().getBytes(StandardCharsets.UTF_8);
+        server = new ServerSocket(port);
+        Thread accept = new Thread(this::accept, "Seed search coordinator");
+        accept.setDaemon(true);
+        accept.start();
+        Thread monitor = new Thread(this::monitor, "Seed search monitor");
+        monitor.setDaemon(true);
+        monitor.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return The number of workers that have connected.
+     */
+    public synchronized int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return The number of chunks handed out again after their worker was
+     * lost.
+     */
+    public synchronized int getReassignedChunks() {
+        return reassigned;
+    }
+
+    /**
+     * Waits for every chunk to be searched, or for the coordinator to be
+     * closed.
+     */
+    public synchronized void await() throws InterruptedException {
+        while (!closed && !engine.isFinished())
+            wait(MONITOR_MILLIS);
+    }
+
+    /**
+     * Stops listening and disconnects every worker. If the search is
+     * finished the workers are told so and given a moment to hang up first.
+     * Chunks the workers haven't finished are given back to the engine.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        }
+        catch (IOException ignored) { }
+        if (engine.isFinished()) {
+            for (Connection c : connections)
+                c.finish();
+            long deadline = System.currentTimeMillis() + CLOSE_MILLIS;
+            try {
+                while (!connections.isEmpty() && System.currentTimeMillis() < deadline)
+                    Thread.sleep(MONITOR_MILLIS / 10);
+            }
+            catch (InterruptedException ignored) { }
+        }
+        for (Connection c : connections)
+            c.close();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Connection c = new Connection(socket);
+                connections.add(c);
+                synchronized (this) {
+                    workers++;
+                }
+                Thread t = new Thread(c::read, "Seed search worker " + socket.getRemoteSocketAddress());
+                t.setDaemon(true);
+                t.start();
+            }
+            catch (IOException e) {
+                if (!closed)
+                    System.err.println("[SuperCC Error] Seed search coordinator: " + e);
+            }
+        }
+    }
+
+    /**
+     * Drops workers that have gone quiet, hands out chunks given back by
+     * them to the workers waiting for one, and tells every worker to stop
+     * once the search is finished.
+     */
+    private void monitor() {
+        while (!closed) {
+            long now = System.currentTimeMillis();
+            boolean finished = engine.isFinished();
+            for (Connection c : connections) {
+                if (now - c.lastHeard > timeoutMillis)
+                    c.close();
+                else if (finished)
+                    c.finish();
+                else {
+                    c.serve();
+                    c.heartbeat(now);
+                }
+            }
+            if (finished) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+            try {
+                Thread.sleep(MONITOR_MILLIS);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private class Connection {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final Set<Integer> assigned = new HashSet<>();
+        private int wanted;                                 // chunks asked for but not yet sent
+        private boolean done;
+        private volatile long lastHeard = System.currentTimeMillis();
+        private long lastSent = lastHeard;                  // guarded by out
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        private void read() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                    throw new IOException("Not a seed search worker");
+                in.readInt(); //the worker's threads, it asks for a chunk for each
+                sendJob();
+                int[] found = new int[SeedSearchEngine.CHUNK_SIZE];
+                while (true) {
+                    byte message = in.readByte();
+                    lastHeard = System.currentTimeMillis();
+                    switch (message) {
+                        case REQUEST -> {
+                            synchronized (this) {
+                                wanted++;
+                            }
+                            serve();
+                        }
+                        case RESULT -> {
+                            int chunk = in.readInt();
+                            SeedBitmap hits = SeedBitmap.read(in);
+                            int first = engine.firstSeed(chunk), last = engine.lastSeed(chunk);
+                            int successes = 0;
+                            for (int seed = hits.nextSeed(0); seed >= 0; seed = seed == Integer.MAX_VALUE ? -1 : hits.nextSeed(seed + 1)) {
+                                if (seed < first || seed > last || successes == found.length)
+                                    throw new IOException("Seed " + seed + " is not in chunk " + chunk);
+                                found[successes++] = seed;
+                            }
+                            synchronized (this) {
+                                if (!assigned.remove(chunk))
+                                    continue; //handed out again already
+                            }
+                            engine.chunkDone(chunk, found, successes);
+                        }
+                        case HEARTBEAT -> { }
+                        default -> throw new IOException("Unknown message from seed search worker: " + message);
+                    }
+                }
+            }
+            catch (EOFException | SocketException e) {
+                //the worker disconnected, or was disconnected
+            }
+            catch (IOException e) {
+                if (!closed)
+                    System.err.println("[SuperCC Error] Seed search worker " + socket.getRemoteSocketAddress() + ": " + e);
+            }
+            finally {
+                close();
+            }
+        }
+
+        private void sendJob() throws IOException {
+            synchronized (out) {
+                out.writeUTF(levelsetName);
+                out.writeInt(levelset.length);
+                out.write(levelset);
+                out.writeInt(engine.getLevelNumber());
+                out.writeInt(solution.length);
+                out.write(solution);
+                out.writeInt(engine.getEndPosition() == null ? -1 : engine.getEndPosition().getIndex());
+                out.flush();
+                lastSent = System.currentTimeMillis();
+            }
+        }
+
+        /**
+         * Sends as many of the chunks the worker asked for as there are left.
+         */
+        synchronized void serve() {
+            try {
+                while (wanted > 0 && !done) {
+                    int chunk = engine.pollChunk();
+                    if (chunk < 0)
+                        return;
+                    assigned.add(chunk);
+                    wanted--;
+                    synchronized (out) {
+                        out.writeByte(CHUNK);
+                        out.writeInt(chunk);
+                        out.writeInt(engine.firstSeed(chunk));
+                        out.writeInt(engine.lastSeed(chunk));
+                        out.flush();
+                        lastSent = System.currentTimeMillis();
+                    }
+                }
+            }
+            catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Sends a heartbeat if nothing else has been sent for a while.
+         */
+        void heartbeat(long now) {
+            try {
+                synchronized (out) {
+                    if (now - lastSent < HEARTBEAT_MILLIS)
+                        return;
+                    out.writeByte(HEARTBEAT);
+                    out.flush();
+                    lastSent = now;
+                }
+            }
+            catch (IOException e) {
+                close();
+            }
+        }
+
+        synchronized void finish() {
+            if (done)
+                return;
+            done = true;
+            try {
+                synchronized (out) {
+                    out.writeByte(DONE);
+                    out.flush();
+                }
+            }
+            catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            if (!connections.remove(this))
+                return;
+            try {
+                socket.close();
+            }
+            catch (IOException ignored) { }
+            int returned;
+            synchronized (this) {
+                returned = assigned.size();
+                for (int chunk : assigned)
+                    engine.returnChunk(chunk);
+                assigned.clear();
+            }
+            synchronized (SeedSearchCoordinator.this) {
+                reassigned += returned;
+            }
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package tools;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import emulator.TickFlags;
+import game.Level;
+import game.Position;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tries a solution with every seed in a range to find the seeds it works
+ * with, without needing a GUI. The range is split into chunks that the
+ * threads take one at a time from a shared cursor, so a thread that gets
+ * slow seeds doesn't hold the others up. The chunks finished and the seeds
+ * found can be saved to a checkpoint file, both every so often and when the
+ * search is stopped, and a later search over the same range picks up from
+ * that file.
+ */
+public class SeedSearchEngine {
+
+    public static final int CHUNK_SIZE = 1024;
+    public static final long DEFAULT_OUTCOME_MEMORY = 128 << 20;   // shared by all the search threads
+
+    private static final int CHECKPOINT_MAGIC = 0x53534348; //"SSCH"
+    private static final int CHECKPOINT_VERSION = 2;
+    private static final AtomicInteger running = new AtomicInteger();  // engines searching right now
+
+    /**
+     * Called every so often while searching, and once more when the search
+     * stops or finishes. Called from the search threads.
+     */
+    public interface ProgressListener {
+        void progress(SeedSearchEngine engine);
+    }
+
+    private final Level level;
+    private final Solution solution;
+    private final Position endPosition;
+    private final int firstSeed, lastSeed;
+    private final int chunks;
+    private final byte[] resumeState;  //the state before the first tick that advances the RNG
+    private final int resumeMove;      //the move made on that tick
+
+    private final BitSet completed = new BitSet();
+    private SeedBitmap hits = new SeedBitmap();
+    private long attempts;
+    private int lastSuccess = -1;
+    private int nextChunk;
+    private final ArrayDeque<Integer> returned = new ArrayDeque<>();    // chunks given back before being searched
+
+    private File checkpoint;
+    private long checkpointNanos, lastCheckpoint;
+    private ProgressListener listener;
+    private long progressNanos, lastProgress;
+    private volatile long outcomeMemory = DEFAULT_OUTCOME_MEMORY;
+
+    private volatile boolean stopping;
+    private int alive;
+    private long runStart, runStartAttempts;
+
+    /**
+     * @param level The level to play, loaded with the step, ruleset and
+     *              initial slide of the solution. It isn't changed.
+     * @param solution The solution to try.
+     * @param endPosition The position Chip has to end on alive, or null if
+     *                    the solution has to finish the level.
+     * @param firstSeed The first seed to try.
+     * @param lastSeed The last seed to try.
+     */
+    public SeedSearchEngine(Level level, Solution solution, Position endPosition, int firstSeed, int lastSeed) {
+        if (firstSeed < 0 || lastSeed < firstSeed)
+            throw new IllegalArgumentException("Invalid seed range: " + firstSeed + " to " + lastSeed);
+        this.level = level.fork();
+        this.solution = new Solution(solution);
+        this.endPosition = endPosition;
+        this.firstSeed = firstSeed;
+        this.lastSeed = lastSeed;
+        chunks = (int) (((long) lastSeed - firstSeed) / CHUNK_SIZE + 1);
+        runStart = System.nanoTime();
+
+        //Every seed plays the same until the RNG is first advanced, so each attempt can start from there
+        SuperCC probe = new SuperCC(false);
+        probe.setLevel(level.fork());
+        resumeMove = new Solution(solution).loadMovesUntilRng(probe, TickFlags.LIGHT);
+        resumeState = probe.getLevel().save();
+    }
+
+    /**
+     * Saves the progress to a file every so often while searching, and when
+     * the search stops.
+     * @param file The checkpoint file.
+     * @param intervalMillis The time between saves.
+     */
+    public synchronized void setCheckpoint(File file, long intervalMillis) {
+        checkpoint = file;
+        checkpointNanos = intervalMillis * 1_000_000;
+    }
+
+    /**
+     * Sets how much memory the search threads may use between them to
+     * remember how the solution played for the RNG outcomes seen so far, see
+     * {@link OutcomeTrie}. Each thread gets an equal share. Takes effect for
+     * threads started afterwards.
+     * @param bytes The memory for states, or 0 to play every seed from the
+     *              first tick that uses the RNG.
+     */
+    public void setOutcomeMemory(long bytes) {
+        outcomeMemory = bytes;
+    }
+
+    public synchronized void setProgressListener(ProgressListener listener, long intervalMillis) {
+        this.listener = listener;
+        progressNanos = intervalMillis * 1_000_000;
+    }
+
+    /**
+     * Starts searching, or continues after stop. Returns straight away.
+     * @param threads The number of threads to search on.
+     */
+    public synchronized void start(int threads) {
+        if (alive != 0)
+            throw new IllegalStateException("Seed search already running");
+        stopping = false;
+        nextChunk = 0;
+        returned.clear();
+        alive = threads;
+        runStart = System.nanoTime();
+        runStartAttempts = attempts;
+        lastCheckpoint = lastProgress = runStart;
+        running.incrementAndGet();
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(() -> search(threads), "Seed search " + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Stops the search without waiting for it. The seeds of any chunk that
+     * was being searched are tried again when it restarts.
+     */
+    public synchronized void stop() {
+        stopping = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits for the search to stop or finish.
+     */
+    public synchronized void await() throws InterruptedException {
+        while (alive != 0)
+            wait();
+    }
+
+    public synchronized boolean isRunning() {
+        return alive != 0;
+    }
+
+    /**
+     * @return true if every seed in the range has been tried.
+     */
+    public synchronized boolean isFinished() {
+        return completed.cardinality() == chunks;
+    }
+
+    /**
+     * @return Whether any seed search is running.
+     */
+    public static boolean anyRunning() {
+        return running.get() != 0;
+    }
+
+    public synchronized long getAttempts() {
+        return attempts;
+    }
+
+    public synchronized long getSuccesses() {
+        return hits.cardinality();
+    }
+
+    /**
+     * @return The last seed found that works, or -1 if none has been.
+     */
+    public synchronized int getLastSuccess() {
+        return lastSuccess;
+    }
+
+    /**
+     * @return The seeds tried per second since the search was last started.
+     */
+    public synchronized double getSeedsPerSecond() {
+        long nanos = System.nanoTime() - runStart;
+        return nanos == 0 ? 0 : (attempts - runStartAttempts) * 1e9 / nanos;
+    }
+
+    Solution getSolution() {
+        return solution;
+    }
+
+    Position getEndPosition() {
+        return endPosition;
+    }
+
+    int getLevelNumber() {
+        return level.getLevelNumber();
+    }
+
+    /**
+     * @return The seeds found so far. Must not be used while searching.
+     */
+    public synchronized SeedBitmap getHits() {
+        return hits;
+    }
+
+    /**
+     * Tries seeds on its own copy of the level, so each thread needs one.
+     */
+    class Searcher {
+        private final SuperCC emulator = new SuperCC(false);
+        private final OutcomeTrie outcomes;
+
+        /**
+         * @param threads The number of threads searching at once, which
+         *                share the outcome memory.
+         */
+        Searcher(int threads) {
+            emulator.setLevel(SeedSearchEngine.this.level.fork());
+            outcomes = new OutcomeTrie(emulator, new Solution(solution), resumeState, resumeMove,
+                    SeedSearchEngine.this::succeeded, outcomeMemory / Math.max(1, threads));
+        }
+
+        /**
+         * @param found Filled with the seeds that work.
+         * @return The number of seeds that work, or -1 if the search stopped
+         * first.
+         */
+        int search(int first, int last, int[] found) {
+            int successes = 0;
+            for (long seed = first; seed <= last; seed++) {
+                if (stopping)
+                    return -1;
+                if (outcomes.succeeds((int) seed))
+                    found[successes++] = (int) seed;
+            }
+            return successes;
+        }
+    }
+
+    private void search(int threads) {
+        int[] found = new int[CHUNK_SIZE];
+        int chunk = -1;
+        try {
+            Searcher searcher = new Searcher(threads);
+            while ((chunk = takeChunk()) >= 0) {
+                int successes = searcher.search(firstSeed(chunk), lastSeed(chunk), found);
+                if (successes < 0)
+                    return;
+                chunkDone(chunk, found, successes);
+            }
+        }
+        finally {
+            if (chunk >= 0)
+                returnChunk(chunk); //for the other threads, if this one failed part way through
+            searchDone();
+        }
+    }
+
+    private boolean succeeded(Level level) {
+        if (endPosition == null)
+            return level.isCompleted();
+        return level.getChip().getPosition().equals(endPosition) && !level.getChip().isDead();
+    }
+
+    int firstSeed(int chunk) {
+        return (int) (firstSeed + (long) chunk * CHUNK_SIZE);
+    }
+
+    int lastSeed(int chunk) {
+        return (int) Math.min(lastSeed, firstSeed(chunk) + (long) CHUNK_SIZE - 1);
+    }
+
+    /**
+     * Waits for a chunk to search. While every chunk has been handed out but
+     * some aren't finished, one of them may still be given back, for example
+     * by a worker that was lost, so this waits for that rather than leaving
+     * it to nobody.
+     * @return The next chunk that hasn't been searched, or -1 once every
+     * chunk is finished or the search is stopping.
+     */
+    synchronized int takeChunk() {
+        try {
+            int chunk;
+            while ((chunk = pollChunk()) < 0 && !stopping && !isFinished())
+                wait();
+            return chunk;
+        }
+        catch (InterruptedException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return The next chunk that hasn't been searched, or -1 if there are
+     * none left to hand out or the search is stopping. Chunks given back
+     * come first.
+     */
+    synchronized int pollChunk() {
+        if (stopping)
+            return -1;
+        while (!returned.isEmpty()) {
+            int chunk = returned.poll();
+            if (!completed.get(chunk))
+                return chunk;
+        }
+        int chunk = completed.nextClearBit(nextChunk);
+        if (chunk >= chunks)
+            return -1;
+        nextChunk = chunk + 1;
+        return chunk;
+    }
+
+    /**
+     * Gives back a chunk that was taken but won't be searched, to be handed
+     * out again.
+     */
+    synchronized void returnChunk(int chunk) {
+        if (!completed.get(chunk)) {
+            returned.add(chunk);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Records the seeds found in a chunk. A chunk reported twice, for example
+     * by a worker that was thought lost, is only counted once.
+     */
+    synchronized void chunkDone(int chunk, int[] found, int successes) {
+        if (completed.get(chunk))
+            return;
+        completed.set(chunk);
+        notifyAll();
+        attempts += lastSeed(chunk) - firstSeed(chunk) + 1;
+        for (int i = 0; i < successes; i++)
+            hits.add(found[i]);
+        if (successes > 0)
+            lastSuccess = found[successes - 1];
+        long now = System.nanoTime();
+        if (checkpoint != null && now - lastCheckpoint >= checkpointNanos) {
+            lastCheckpoint = now;
+            saveCheckpoint();
+        }
+        if (listener != null && now - lastProgress >= progressNanos) {
+            lastProgress = now;
+            listener.progress(this);
+        }
+    }
+
+    private void searchDone() {
+        ProgressListener listener;
+        synchronized (this) {
+            if (--alive != 0)
+                return;
+            saveCheckpoint();
+            running.decrementAndGet();
+            notifyAll();
+            listener = this.listener;
+        }
+        if (listener != null)
+            listener.progress(this);
+    }
+
+    /**
+     * Saves a checkpoint now, if a checkpoint file has been set.
+     */
+    synchronized void saveCheckpoint() {
+        if (checkpoint == null)
+            return;
+        try {
+            writeCheckpoint(checkpoint);
+        }
+        catch (IOException e) {
+            System.err.println("[SuperCC Error] Could not save seed search checkpoint: " + e);
+        }
+    }
+
+    /**
+     * @return A number that changes if the level, solution or goal changes,
+     * to tell checkpoints of a different search apart. The level's title and
+     * password are checked as well, as the level number alone doesn't tell
+     * levelsets apart.
+     */
+    private int searchHash() {
+        int hash = Arrays.hashCode(level.getLayerFG().getBytes());
+        hash = 31 * hash + Arrays.hashCode(level.getLayerBG().getBytes());
+        hash = 31 * hash + Arrays.hashCode(solution.basicMoves);
+        hash = 31 * hash + solution.step.ordinal();
+        hash = 31 * hash + solution.ruleset.ordinal();
+        hash = 31 * hash + solution.initialSlide.ordinal();
+        hash = 31 * hash + (endPosition == null ? -1 : endPosition.getIndex());
+        return 31 * hash + level.getLevelNumber();
+    }
+
+    private String levelTitle() {
+        return Objects.toString(level.getTitle(), "");
+    }
+
+    private String levelPassword() {
+        return Objects.toString(level.getPassword(), "");
+    }
+
+    /**
+     * Writes the chunks searched and the seeds found. The file is replaced
+     * in one step, so a crash while writing leaves the last checkpoint.
+     */
+    public synchronized void writeCheckpoint(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeByte(CHECKPOINT_VERSION);
+            out.writeInt(firstSeed);
+            out.writeInt(lastSeed);
+            out.writeInt(CHUNK_SIZE);
+            out.writeUTF(levelTitle());
+            out.writeUTF(levelPassword());
+            out.writeInt(searchHash());
+            out.writeLong(attempts);
+            out.writeInt(lastSuccess);
+            long[] words = completed.toLongArray();
+            out.writeInt(words.length);
+            for (long w : words)
+                out.writeLong(w);
+            hits.write(out);
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Continues from a checkpoint, if it is of the same search. Must be
+     * called before starting.
+     * @param file The checkpoint file.
+     * @return true if the checkpoint was loaded, false if there is no such
+     * file or it is for another level, solution, goal or seed range, or
+     * was written by another version.
+     * @throws IOException if the file can't be read.
+     */
+    public synchronized boolean resume(File file) throws IOException {
+        if (alive != 0)
+            throw new IllegalStateException("Seed search already running");
+        if (!file.exists())
+            return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC)
+                throw new IOException("Not a seed search checkpoint: " + file);
+            if (in.readByte() != CHECKPOINT_VERSION
+                    || in.readInt() != firstSeed || in.readInt() != lastSeed || in.readInt() != CHUNK_SIZE
+                    || !in.readUTF().equals(levelTitle()) || !in.readUTF().equals(levelPassword())
+                    || in.readInt() != searchHash())
+                return false;
+            long attempts = in.readLong();
+            int lastSuccess = in.readInt();
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++)
+                words[i] = in.readLong();
+            SeedBitmap found = SeedBitmap.read(in);
+            completed.clear();
+            completed.or(BitSet.valueOf(words));
+            this.attempts = attempts;
+            this.lastSuccess = lastSuccess;
+            hits = found;
+            return true;
+        }
+    }
+}
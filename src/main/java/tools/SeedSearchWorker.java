@@ -0,0 +1,188 @@
+package tools;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import game.Position;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static tools.SeedSearchCoordinator.*;
+
+/**
+ * Searches the chunks handed out by a {@link SeedSearchCoordinator} on a
+ * number of threads, until the coordinator says the search is finished.
+ */
+public class SeedSearchWorker {
+
+    private static final int[] NO_CHUNK = new int[0];
+
+    private final String host;
+    private final int port;
+    private final int threads;
+    private final long timeoutMillis;
+    private DataOutputStream out;
+    private volatile boolean running;
+    private long chunks;
+
+    /**
+     * @param host The machine the coordinator is on.
+     * @param port The port the coordinator listens on.
+     * @param threads The number of threads to search on.
+     * @param timeoutMillis The time without hearing from the coordinator
+     *                      after which it is treated as lost. This must be
+     *                      longer than {@link SeedSearchCoordinator#HEARTBEAT_MILLIS}.
+     */
+    public SeedSearchWorker(String host, int port, int threads, long timeoutMillis) {
+        if (timeoutMillis <= HEARTBEAT_MILLIS)
+            throw new IllegalArgumentException("Coordinator timeout must be longer than " + HEARTBEAT_MILLIS + "ms");
+        this.host = host;
+        this.port = port;
+        this.threads = threads;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return The number of chunks this worker has searched.
+     */
+    public synchronized long getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Connects to the coordinator and searches until it says the search is
+     * finished.
+     * @throws IOException if the connection fails or is lost before then,
+     * including when nothing is heard from the coordinator for too long.
+     */
+    public void run() throws IOException, InterruptedException {
+        File levelsetDir = Files.createTempDirectory("supercc-seedsearch").toFile();
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout((int) timeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            send(o -> {
+                o.writeInt(MAGIC);
+                o.writeInt(VERSION);
+                o.writeInt(threads);
+            });
+
+            SeedSearchEngine engine = readJob(in, levelsetDir);
+            BlockingQueue<int[]> queue = new LinkedBlockingQueue<>();
+            running = true;
+            Thread[] searchers = new Thread[threads];
+            for (int i = 0; i < threads; i++) {
+                searchers[i] = new Thread(() -> search(engine, queue), "Seed search worker " + i);
+                searchers[i].setDaemon(true);
+                searchers[i].start();
+            }
+            Thread heartbeat = new Thread(this::heartbeat, "Seed search heartbeat");
+            heartbeat.setDaemon(true);
+            heartbeat.start();
+
+            try {
+                while (true) {
+                    byte message = in.readByte();
+                    if (message == DONE)
+                        break;
+                    if (message == HEARTBEAT)
+                        continue;
+                    if (message != CHUNK)
+                        throw new IOException("Unknown message from seed search coordinator: " + message);
+                    queue.add(new int[] {in.readInt(), in.readInt(), in.readInt()});
+                }
+            }
+            finally {
+                running = false;
+                for (int i = 0; i < threads; i++)
+                    queue.add(NO_CHUNK);
+                heartbeat.interrupt();
+            }
+            for (Thread t : searchers)
+                t.join();
+        }
+        finally {
+            for (File f : levelsetDir.listFiles())
+                f.delete();
+            levelsetDir.delete();
+        }
+    }
+
+    private SeedSearchEngine readJob(DataInputStream in, File levelsetDir) throws IOException {
+        File levelset = new File(levelsetDir, new File(in.readUTF()).getName());
+        byte[] levelsetBytes = new byte[in.readInt()];
+        in.readFully(levelsetBytes);
+        Files.write(levelset.toPath(), levelsetBytes);
+        int levelNumber = in.readInt();
+        byte[] solutionBytes = new byte[in.readInt()];
+        in.readFully(solutionBytes);
+        Solution solution = Solution.fromJSON(solutionBytes);
+        int endPosition = in.readInt();
+
+        SuperCC emulator = new SuperCC(false);
+        emulator.openLevelset(levelset);
+        emulator.loadLevel(levelNumber, 0, solution.step, false, solution.ruleset, solution.initialSlide);
+        return new SeedSearchEngine(emulator.getLevel(), solution,
+                endPosition < 0 ? null : Position.fromIndex(endPosition), 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Asks for a chunk, then searches every chunk it is given and asks for
+     * another.
+     */
+    private void search(SeedSearchEngine engine, BlockingQueue<int[]> queue) {
+        SeedSearchEngine.Searcher searcher = engine.new Searcher(threads);
+        int[] found = new int[SeedSearchEngine.CHUNK_SIZE];
+        try {
+            send(o -> o.writeByte(REQUEST));
+            while (running) {
+                int[] chunk = queue.take();
+                if (chunk == NO_CHUNK)
+                    return;
+                int successes = searcher.search(chunk[1], chunk[2], found);
+                SeedBitmap hits = new SeedBitmap();
+                for (int i = 0; i < successes; i++)
+                    hits.add(found[i]);
+                send(o -> {
+                    o.writeByte(RESULT);
+                    o.writeInt(chunk[0]);
+                    hits.write(o);
+                    o.writeByte(REQUEST);
+                });
+                synchronized (this) {
+                    chunks++;
+                }
+            }
+        }
+        catch (IOException | InterruptedException e) {
+            //the connection is gone, which run reports
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            while (running) {
+                Thread.sleep(HEARTBEAT_MILLIS);
+                send(o -> o.writeByte(HEARTBEAT));
+            }
+        }
+        catch (IOException | InterruptedException e) {
+            //stopped
+        }
+    }
+
+    private interface Message {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void send(Message message) throws IOException {
+        synchronized (out) {
+            message.write(out);
+            out.flush();
+        }
+    }
+}
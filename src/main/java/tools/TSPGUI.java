@@ -53,7 +53,7 @@ public class TSPGUI {
     private SuperCC emulator;
     private boolean hasGui = true;
 
-    public boolean killFlag = false;
+    public volatile boolean killFlag = false;
     public static boolean running = false;
 
     public TSPGUI(SuperCC emulator) {
@@ -144,7 +144,7 @@ public class TSPGUI {
                     if (x < 0 || x > 31 || y < 0 || y > 31)
                         throw new Exception("Numbers must be between 0 and 31 inclusive.");
 
-                    ListNode node = new ListNode(x, y, emulator.getLevel().getLayerFG().get(new Position(x, y)));
+                    ListNode node = new ListNode(x, y, emulator.getLevel().getLayerFG().get(Position.fromXY(x, y)));
                     if (checkDuplicate(nodes, node))
                         throw new Exception("No duplicates allowed");
                     nodes.addElement(node);
@@ -179,7 +179,7 @@ public class TSPGUI {
                     if (x < 0 || x > 31 || y < 0 || y > 31)
                         throw new Exception("Numbers must be between 0 and 31 inclusive.");
 
-                    ListNode node = new ListNode(x, y, emulator.getLevel().getLayerFG().get(new Position(x, y)));
+                    ListNode node = new ListNode(x, y, emulator.getLevel().getLayerFG().get(Position.fromXY(x, y)));
                     if (checkDuplicate(exitNodes, node))
                         throw new Exception("No duplicates allowed.");
                     exitNodes.addElement(node);
@@ -216,8 +216,8 @@ public class TSPGUI {
                     if (x1 == x2 && y1 == y2)
                         throw new Exception("Both coordinates cannot be equal.");
 
-                    ListNode n1 = new ListNode(x1, y1, emulator.getLevel().getLayerFG().get(new Position(x1, y1)));
-                    ListNode n2 = new ListNode(x2, y2, emulator.getLevel().getLayerFG().get(new Position(x2, y2)));
+                    ListNode n1 = new ListNode(x1, y1, emulator.getLevel().getLayerFG().get(Position.fromXY(x1, y1)));
+                    ListNode n2 = new ListNode(x2, y2, emulator.getLevel().getLayerFG().get(Position.fromXY(x2, y2)));
                     if (!nodesExist(n1, n2))
                         throw new Exception("Coordinates must refer to nodes.");
 
@@ -8,9 +8,16 @@ import tools.TSPGUI;
 import util.CharList;
 
 import javax.swing.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TSPSolver {
     public static final int INFINITE_DISTANCE = 9999;
@@ -49,6 +56,12 @@ public class TSPSolver {
     private int deltaTime;
 
     private final int LIMIT = 500000; // Upper bound of exploration
+    /*
+     * Each distance search can hold up to LIMIT savestates in its queue, so
+     * the memory used grows with the number of searches running at once.
+     * This keeps it to a few searches however many processors there are.
+     */
+    private static final int MAX_SEARCH_THREADS = 4;
 
     public TSPSolver(SuperCC emulator, TSPGUI gui, ArrayList<TSPGUI.ListNode> inputNodes, ArrayList<TSPGUI.ListNode> exitNodes,
                      ArrayList<TSPGUI.RestrictionNode> restrictionNodes, SimulatedAnnealingParameters simulatedAnnealingParameters,
@@ -137,29 +150,55 @@ public class TSPSolver {
         search();
     }
 
+    /**
+     * Finds the distances from several input nodes at once, each on its own
+     * copy of the level, with at most MAX_SEARCH_THREADS running together.
+     * Every search only fills in the row of its own node, and the rows are
+     * put together once they are all done.
+     */
     private void search() {
         boolean isBoost = deltaTime == -1;
-        for(int from = 0; from < inputNodeSize + 1; from++) {
-            if(isBoost && !canBoost(nodes.get(from))) {
-                continue;
+        level.load(initialState);
+        int total = (inputNodeSize + 1) * 2;
+        AtomicInteger done = new AtomicInteger(isBoost ? inputNodeSize + 1 : 0);
+        output.setText("Finding distances... " + done.get() + "/" + total);
+        ThreadLocal<SuperCC> emulators = ThreadLocal.withInitial(() -> {
+            SuperCC e = new SuperCC(false);
+            e.setLevel(level.fork());
+            return e;
+        });
+        ExecutorService pool = Executors.newWorkStealingPool(
+                Math.min(MAX_SEARCH_THREADS, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<DistanceSearch>> searches = new ArrayList<>();
+            for(int from = 0; from < inputNodeSize + 1; from++) {
+                if(isBoost && !canBoost(nodes.get(from))) {
+                    done.incrementAndGet();
+                    continue;
+                }
+                DistanceSearch search = new DistanceSearch(from);
+                searches.add(pool.submit(() -> {
+                    search.run(emulators.get());
+                    done.incrementAndGet();
+                    SwingUtilities.invokeLater(() -> output.setText("Finding distances... " + done.get() + "/" + total));
+                    return search;
+                }));
             }
-            outputDistanceProgress(from, isBoost);
-            level.load(initialState);
-            level.getCheats().moveChip(new Position(nodes.get(from)));
-            if(isBoost) {
-                emulator.tick(SuperCC.WAIT, TickFlags.LIGHT); // Half wait
+            for(Future<DistanceSearch> future : searches) {
+                DistanceSearch search = future.get();
+                currentDistances[search.from] = search.distances;
+                currentPaths[search.from] = search.paths;
+                currentBoostNodes[search.from] = search.boostNodes;
             }
-            searchBFS(from);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
         }
     }
 
-    private void outputDistanceProgress(int from, boolean isBoost) {
-        int current = from + 1;
-        if(isBoost) current += inputNodeSize + 1;
-        int total = (inputNodeSize + 1) * 2;
-        output.setText("Finding distances... " + current + "/" + total);
-    }
-
     private boolean canBoost(int position) {
         for(Direction dir : new Direction[] {Direction.UP, Direction.RIGHT, Direction.DOWN, Direction.LEFT}) {
             int delta = getDelta(dir);
@@ -186,7 +225,7 @@ public class TSPSolver {
                 errorString += "    " +
                         emulator.getLevel().getLayerFG().get(nodes.get(i)).toString() +
                         " at " +
-                        new Position(nodes.get(i)).toString() +
+                        Position.fromIndex(nodes.get(i)).toString() +
                         " inaccessible!\n";
             }
         }
@@ -223,77 +262,6 @@ public class TSPSolver {
         }
     }
 
-    private void searchBFS(int from) {
-        currentDistances[from][from] = 0;
-        PriorityQueue<PathNode> states = new PriorityQueue<>(100, (a, b) -> b.time - a.time);
-        states.add(new PathNode(level.save(), new CharList(), startTime, 'u'));
-
-        int[] visitedAt = new int[1024 * 4];
-        int[] visitedCount = new int[1024 * 4];
-        int statesExplored = 0;
-
-        while (!states.isEmpty() && statesExplored < LIMIT && !gui.killFlag) {
-            statesExplored++;
-            PathNode node = states.poll();
-            byte[] state = node.state;
-            level.load(state);
-
-            int index = level.getChip().getPosition().getIndex() + 1024 * getDirectionIndex(node.lastMove);
-            Tile onTile = level.getLayerBG().get(index % 1024);
-            if(!onTile.isSliding()) {
-                index %= 1024;
-            }
-
-            if(statesExplored > 1) {
-                if (visitedAt[index] < level.getTChipTime()) {
-                    visitedAt[index] = level.getTChipTime();
-                    visitedCount[index] = 0;
-                }
-                if (visitedCount[index] > 0) {
-                    continue;
-                }
-                visitedCount[index]++;
-                getToNode(from, index, node, false);
-            }
-
-            for (int direction = 0; direction < directions.length; direction++) {
-                if (direction > 0) {
-                    level.load(state);
-                }
-                boolean can = true;
-                if (level.getChip().isSliding()) {
-                    can = handleSliding(directions[direction], index, visitedAt, visitedCount, from, onTile, node);
-                }
-                if (can) {
-                    emulator.tick(directions[direction], TickFlags.LIGHT);
-                    int newIndex = level.getChip().getPosition().index;
-                    if(index == newIndex) {
-                        continue;
-                    }
-                    CharList newMoves = node.moves.clone();
-                    newMoves.add(directions[direction]);
-                    states.add(new PathNode(level.save(), newMoves, level.getTChipTime(), directions[direction]));
-                }
-            }
-        }
-    }
-
-    private boolean getToNode(int from, int index, PathNode node, boolean isBoost) {
-        if (nodes.contains(index % 1024)) {
-            ArrayList<Integer> indices = getNodeIndices(index % 1024);
-            for(int to : indices) {
-                int distance = startTime - level.getTChipTime() / 10 + deltaTime;
-                if (currentDistances[from][to] > distance) {
-                    currentDistances[from][to] = distance;
-                    currentPaths[from][to] = node;
-                    currentBoostNodes[from][to] = isBoost;
-                }
-            }
-            return true;
-        }
-        return false;
-    }
-
     private ArrayList<Integer> getNodeIndices(int index) {
         ArrayList<Integer> indices = new ArrayList<>();
         for(int i = 0; i < nodes.size(); i++) {
@@ -363,34 +331,6 @@ public class TSPSolver {
            t == Tile.THIN_WALL_DOWN || t == Tile.THIN_WALL_UP);
     }
 
-    private boolean handleSliding(char direction, int position, int[] visitedAt, int[] visitedCount, int from, Tile onTile, PathNode node) {
-        Direction dir = level.getChip().getDirection();
-        int delta = getDelta(dir);
-        if(position % 1024 + delta >= 1024) {
-            return false;
-        }
-        int newPosition = ((position % 1024) + delta) + 1024 * getDirectionIndex(direction);
-        Tile newTile = level.getLayerFG().get(newPosition % 1024);
-
-        if(!canEnter(direction, newPosition) && !isThinWall(newTile)) {
-            return false;
-        }
-
-        if(!canEnter(dirToChar(dir), newPosition)) {
-            return !onTile.isIce();
-        }
-
-        if(!newTile.isSliding()) {
-            boolean isBoost = level.getTChipTime() % 2 == 1;
-            boolean gotTo = getToNode(from, newPosition, node, isBoost);
-            if(!gotTo && visitedCount[newPosition] >= 1) {
-                return false;
-            }
-            return true;
-        }
-        return canOverride(direction, newTile);
-    }
-
     private int getDelta(Direction dir) {
         if(dir == Direction.UP) return -32;
         if(dir == Direction.RIGHT) return 1;
@@ -428,33 +368,6 @@ public class TSPSolver {
         return false;
     }
 
-    private boolean canEnter(char d, int position) {
-        Tile t = level.getLayerFG().get(position % 1024);
-
-        switch(t) {
-            case WALL:
-            case HIDDENWALL_TEMP:
-            case INVISIBLE_WALL:
-            case BLUEWALL_REAL:
-            case CLONE_MACHINE:
-                return false;
-            case THIN_WALL_DOWN: return d != SuperCC.UP;
-            case THIN_WALL_DOWN_RIGHT: return (d == SuperCC.DOWN || d == SuperCC.RIGHT);
-            case THIN_WALL_LEFT: return d != SuperCC.RIGHT;
-            case THIN_WALL_RIGHT: return d != SuperCC.LEFT;
-            case THIN_WALL_UP: return d != SuperCC.DOWN;
-            case ICE_SLIDE_NORTHEAST: return (d == SuperCC.DOWN || d == SuperCC.LEFT);
-            case ICE_SLIDE_SOUTHEAST: return (d == SuperCC.UP || d == SuperCC.LEFT);
-            case ICE_SLIDE_NORTHWEST: return (d == SuperCC.DOWN || d == SuperCC.RIGHT);
-            case ICE_SLIDE_SOUTHWEST: return (d == SuperCC.UP || d == SuperCC.RIGHT);
-            default: return true;
-        }
-    }
-
-    private boolean canOverride(char d, Tile t) {
-        return directionEquals(level.getChip().getDirection(), d) || t.isFF();
-    }
-
     private void createSolution(int[] solution) {
         output.setText("Reconstructing solution...");
         level.load(startState);
@@ -506,6 +419,160 @@ public class TSPSolver {
         return distancesBoost;
     }
 
+    /**
+     * The search for the distances from one input node, on a level of its own.
+     */
+    private class DistanceSearch {
+        private final int from;
+        private final int[] distances = new int[nodes.size()];
+        private final PathNode[] paths = new PathNode[nodes.size()];
+        private final boolean[] boostNodes = new boolean[nodes.size()];
+        private SuperCC emulator;
+        private Level level;
+
+        DistanceSearch(int from) {
+            this.from = from;
+            Arrays.fill(distances, INFINITE_DISTANCE);
+        }
+
+        void run(SuperCC emulator) {
+            this.emulator = emulator;
+            this.level = emulator.getLevel();
+            level.load(initialState);
+            level.getCheats().moveChip(Position.fromIndex(nodes.get(from)));
+            if(deltaTime == -1) {
+                emulator.tick(SuperCC.WAIT, TickFlags.LIGHT); // Half wait
+            }
+            searchBFS();
+        }
+
+        private void searchBFS() {
+            distances[from] = 0;
+            PriorityQueue<PathNode> states = new PriorityQueue<>(100, (a, b) -> b.time - a.time);
+            states.add(new PathNode(level.save(), new CharList(), startTime, 'u'));
+
+            int[] visitedAt = new int[1024 * 4];
+            int[] visitedCount = new int[1024 * 4];
+            int statesExplored = 0;
+
+            while (!states.isEmpty() && statesExplored < LIMIT && !gui.killFlag) {
+                statesExplored++;
+                PathNode node = states.poll();
+                ByteBuffer state = ByteBuffer.wrap(node.state);
+                level.loadFrom(state);
+
+                int index = level.getChip().getPosition().getIndex() + 1024 * getDirectionIndex(node.lastMove);
+                Tile onTile = level.getLayerBG().get(index % 1024);
+                if(!onTile.isSliding()) {
+                    index %= 1024;
+                }
+
+                if(statesExplored > 1) {
+                    if (visitedAt[index] < level.getTChipTime()) {
+                        visitedAt[index] = level.getTChipTime();
+                        visitedCount[index] = 0;
+                    }
+                    if (visitedCount[index] > 0) {
+                        continue;
+                    }
+                    visitedCount[index]++;
+                    getToNode(index, node, false);
+                }
+
+                for (int direction = 0; direction < directions.length; direction++) {
+                    if (direction > 0) {
+                        level.loadFrom(state.rewind());
+                    }
+                    boolean can = true;
+                    if (level.getChip().isSliding()) {
+                        can = handleSliding(directions[direction], index, visitedAt, visitedCount, onTile, node);
+                    }
+                    if (can) {
+                        emulator.tick(directions[direction], TickFlags.LIGHT);
+                        int newIndex = level.getChip().getPosition().index;
+                        if(index == newIndex) {
+                            continue;
+                        }
+                        CharList newMoves = node.moves.clone();
+                        newMoves.add(directions[direction]);
+                        states.add(new PathNode(level.save(), newMoves, level.getTChipTime(), directions[direction]));
+                    }
+                }
+            }
+        }
+
+        private boolean getToNode(int index, PathNode node, boolean isBoost) {
+            if (nodes.contains(index % 1024)) {
+                ArrayList<Integer> indices = getNodeIndices(index % 1024);
+                for(int to : indices) {
+                    int distance = startTime - level.getTChipTime() / 10 + deltaTime;
+                    if (distances[to] > distance) {
+                        distances[to] = distance;
+                        paths[to] = node;
+                        boostNodes[to] = isBoost;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private boolean handleSliding(char direction, int position, int[] visitedAt, int[] visitedCount, Tile onTile, PathNode node) {
+            Direction dir = level.getChip().getDirection();
+            int delta = getDelta(dir);
+            if(position % 1024 + delta >= 1024) {
+                return false;
+            }
+            int newPosition = ((position % 1024) + delta) + 1024 * getDirectionIndex(direction);
+            Tile newTile = level.getLayerFG().get(newPosition % 1024);
+
+            if(!canEnter(direction, newPosition) && !isThinWall(newTile)) {
+                return false;
+            }
+
+            if(!canEnter(dirToChar(dir), newPosition)) {
+                return !onTile.isIce();
+            }
+
+            if(!newTile.isSliding()) {
+                boolean isBoost = level.getTChipTime() % 2 == 1;
+                boolean gotTo = getToNode(newPosition, node, isBoost);
+                if(!gotTo && visitedCount[newPosition] >= 1) {
+                    return false;
+                }
+                return true;
+            }
+            return canOverride(direction, newTile);
+        }
+
+        private boolean canEnter(char d, int position) {
+            Tile t = level.getLayerFG().get(position % 1024);
+
+            switch(t) {
+                case WALL:
+                case HIDDENWALL_TEMP:
+                case INVISIBLE_WALL:
+                case BLUEWALL_REAL:
+                case CLONE_MACHINE:
+                    return false;
+                case THIN_WALL_DOWN: return d != SuperCC.UP;
+                case THIN_WALL_DOWN_RIGHT: return (d == SuperCC.DOWN || d == SuperCC.RIGHT);
+                case THIN_WALL_LEFT: return d != SuperCC.RIGHT;
+                case THIN_WALL_RIGHT: return d != SuperCC.LEFT;
+                case THIN_WALL_UP: return d != SuperCC.DOWN;
+                case ICE_SLIDE_NORTHEAST: return (d == SuperCC.DOWN || d == SuperCC.LEFT);
+                case ICE_SLIDE_SOUTHEAST: return (d == SuperCC.UP || d == SuperCC.LEFT);
+                case ICE_SLIDE_NORTHWEST: return (d == SuperCC.DOWN || d == SuperCC.RIGHT);
+                case ICE_SLIDE_SOUTHWEST: return (d == SuperCC.UP || d == SuperCC.RIGHT);
+                default: return true;
+            }
+        }
+
+        private boolean canOverride(char d, Tile t) {
+            return directionEquals(level.getChip().getDirection(), d) || t.isFF();
+        }
+    }
+
     private class PathNode {
         public byte[] state;
         public CharList moves;
@@ -1,16 +1,24 @@
 package tools.variation;
 
+import emulator.Solution;
 import emulator.SuperCC;
+import game.Level;
 import game.Position;
+import tools.SeedSampler;
 import util.CharList;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class FunctionEvaluator {
+    private static final int SAMPLER_THREADS = Runtime.getRuntime().availableProcessors();
+
     private SuperCC emulator;
     private Interpreter interpreter;
     private VariationManager manager;
+    private ExecutorService samplers;   // started by the first successRate call, shared by the rest
 
     public FunctionEvaluator(SuperCC emulator, Interpreter interpreter, VariationManager manager) {
         this.emulator = emulator;
@@ -79,13 +87,13 @@ public class FunctionEvaluator {
                 Object x = function.arguments.get(0).evaluate(interpreter);
                 Object y = function.arguments.get(1).evaluate(interpreter);
                 checkIfNumber(function, x, y);
-                return emulator.getLevel().getLayerFG().get(new Position(((Double)x).intValue(), ((Double)y).intValue()));
+                return emulator.getLevel().getLayerFG().get(Position.fromXY(((Double)x).intValue(), ((Double)y).intValue()));
             case "getbackgroundtile":
                 checkArgCount(function, 2);
                 x = function.arguments.get(0).evaluate(interpreter);
                 y = function.arguments.get(1).evaluate(interpreter);
                 checkIfNumber(function, x, y);
-                return emulator.getLevel().getLayerBG().get(new Position(((Double)x).intValue(), ((Double)y).intValue()));
+                return emulator.getLevel().getLayerBG().get(Position.fromXY(((Double)x).intValue(), ((Double)y).intValue()));
             case "getplayerx":
                 checkArgCount(function, 0);
                 return (double)emulator.getLevel().getChip().getPosition().getX();
@@ -107,6 +115,17 @@ public class FunctionEvaluator {
                 int time = emulator.getLevel().getTimer();
                 if(emulator.getLevel().isUntimed()) time = emulator.getLevel().getTChipTime();
                 return (double)time / 100;
+            case "successrate":
+                if(function.arguments.size() > 1) {
+                    checkArgCount(function, 1);
+                }
+                double width = SeedSampler.DEFAULT_WIDTH;
+                if(function.arguments.size() == 1) {
+                    Object w = function.arguments.get(0).evaluate(interpreter);
+                    checkIfNumber(function, w);
+                    width = (Double)w;
+                }
+                return successRate(function, width);
             case "printe":
                 interpreter.print("e\n", Color.WHITE);
                 return null;
@@ -243,6 +262,52 @@ public class FunctionEvaluator {
         return length;
     }
 
+    /**
+     * Estimates the share of seeds the moves made so far work with, see
+     * {@link SeedSampler}. They work with a seed if they finish the level,
+     * or if the level isn't finished yet if Chip ends up alive where he is
+     * now.
+     * @param width The width of the 95% interval to stop at.
+     */
+    private double successRate(Expr.Function function, double width) {
+        if(!(width > 0 && width <= 1)) {
+            throw new Interpreter.RuntimeError(function.token, "Width must be between 0 and 1");
+        }
+        Level level = emulator.getLevel();
+        Level start = level.fork();
+        start.load(emulator.getSavestates().getStartingState());
+        Solution route = new Solution(interpreter.moveList.clone(), level.getRngSeed(), level.getStep(),
+                level.getRuleset(), level.getInitialRFFDirection());
+        SeedSampler sampler = new SeedSampler(start, route,
+                level.isCompleted() ? null : level.getChip().getPosition());
+        sampler.setWidth(width);
+        if(samplers == null) {
+            samplers = Executors.newFixedThreadPool(SAMPLER_THREADS, r -> {
+                Thread t = new Thread(r, "Seed sampler");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        try {
+            sampler.run(samplers, SAMPLER_THREADS);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return sampler.getRate();
+    }
+
+    /**
+     * Stops the threads started for successRate, once the script has
+     * finished.
+     */
+    void shutdown() {
+        if(samplers != null) {
+            samplers.shutdown();
+            samplers = null;
+        }
+    }
+
     private Object move(ArrayList<Expr> arguments) {
         for(Expr arg : arguments) {
             Move move = (Move)arg.evaluate(interpreter);
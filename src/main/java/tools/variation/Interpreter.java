@@ -68,7 +68,7 @@ public class Interpreter implements Expr.Evaluator, Stmt.Executor {
         while(!vt.killFlag && !isFinished()) {
             variationCount++;
             try {
-                level.load(manager.savestates[atSequence][manager.getStartingMove()]);
+                level.loadFrom(manager.savestates[atSequence][manager.getStartingMove()].rewind());
                 moveList = manager.moveLists[atSequence][manager.getStartingMove()].clone();
                 for (int i = fromStatement; i < statements.size(); i++) {
                     Stmt stmt = statements.get(i);
@@ -97,6 +97,7 @@ public class Interpreter implements Expr.Evaluator, Stmt.Executor {
             }
             getNextPermutation();
         }
+        evaluator.shutdown();
         long timeEnd = System.currentTimeMillis();
         double totalTime = (double)(timeEnd - timeStart)/1000;
         long varsPerSecond = Math.round(variationCount/totalTime);
@@ -5,8 +5,8 @@ import game.Level;
 import util.CharList;
 
 import java.awt.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 
@@ -17,7 +17,7 @@ public class VariationManager {
     private Level level;
     private Interpreter interpreter;
     public int[] sequenceIndex;
-    public byte[][][] savestates;
+    public ByteBuffer[][] savestates;
     public CharList[][] moveLists;
     private ArrayList<Double> cumulativeTotalPermutations = new ArrayList<>();
     private double totalValidPermutationCount = 1;
@@ -43,19 +43,17 @@ public class VariationManager {
         this.sequenceIndex = new int[sequences.size()];
 
         this.variableStates = new HashMap[sequences.size()][];
-        this.savestates = new byte[sequences.size()][][];
+        this.savestates = new ByteBuffer[sequences.size()][];
         this.moveLists = new CharList[sequences.size()][];
 
         for(int i = 0; i < sequences.size(); i++) {
             int limit = sequences.get(i).permutation.getUpperLimit();
-            this.savestates[i] = new byte[limit][];
+            this.savestates[i] = new ByteBuffer[limit];
             this.variableStates[i] = new HashMap[limit];
             this.moveLists[i] = new CharList[limit];
         }
 
-        byte[] initialState = level.save();
-
-        this.savestates[0][0] = Arrays.copyOf(initialState, initialState.length);
+        saveState(0, 0);
         this.moveLists[0][0] = new CharList();
 
         char[] moves = emulator.getSavestates().getMoves();
@@ -106,13 +104,28 @@ public class VariationManager {
                 newVariables.put(var, newVal);
             }
             variableStates[index][move] = newVariables;
-            byte[] newSavestate = level.save();
-            savestates[index][move] = Arrays.copyOf(newSavestate, newSavestate.length);
+            saveState(index, move);
             moveLists[index][move] = interpreter.moveList.clone();
             lastIndex = index;
             lastStartingMove = move;
     }
 
+    /**
+     * Saves the level into the buffer for a sequence and move, reusing the
+     * buffer from the last time that slot was saved if it is big enough.
+     */
+    private void saveState(int index, int move) {
+        ByteBuffer savestate = savestates[index][move];
+        int size = level.savestateSize();
+        if (savestate == null || savestate.capacity() < size) {
+            savestate = ByteBuffer.allocate(size + 64); //some space for the monster list to grow
+            savestates[index][move] = savestate;
+        }
+        savestate.clear();
+        level.saveInto(savestate);
+        savestate.flip();
+    }
+
     public void terminate(int index) {
         int sum = 0;
         int prevSum = 0;
@@ -55,6 +55,15 @@ public class CharList implements Iterable<Character>, RandomAccess, Serializable
         size--;
     }
 
+    /**
+     * Removes every element after the first size elements. Does nothing if
+     * the list is already that short.
+     * @param size the number of elements to keep
+     */
+    public void truncate(int size){
+        this.size = Math.min(this.size, size);
+    }
+
     /**
      * Returns an array containing all of the elements in this list in proper
      * sequence (from first to last element).
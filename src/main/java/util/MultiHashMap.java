@@ -126,8 +126,10 @@ public class MultiHashMap<K, V> implements Map<K, V> {
         map = new HashMap<>();
     }
 
-    @SuppressWarnings("unchecked")
+    // The lists are copied as well, so that putting into the copy never changes the original
     public MultiHashMap(MultiHashMap<K, V> other) {
-        map = new HashMap<>((Map<K, List<V>>) other.map.clone());
+        map = new HashMap<>(other.map.size());
+        for (Map.Entry<K, List<V>> entry : other.map.entrySet())
+            map.put(entry.getKey(), new ArrayList<>(entry.getValue()));
     }
 }
@@ -2,14 +2,20 @@ package util;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class TreeNode<T> implements Serializable {
     
-    private transient T data;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TreeNode, Object> DATA =
+            AtomicReferenceFieldUpdater.newUpdater(TreeNode.class, Object.class, "data");
+
+    private transient volatile T data;
     private transient TreeNode<T> parent;
+    private transient int depth;
     
     public T getData(){
         return data;
@@ -18,6 +24,15 @@ public class TreeNode<T> implements Serializable {
     public void setData(T object){
         this.data = object;
     }
+
+    /**
+     * Atomically replaces the data, if it is still the expected object.
+     * Used to publish data from other threads without losing a concurrent setData.
+     * @return true if the data was replaced.
+     */
+    public boolean compareAndSetData(T expected, T object){
+        return DATA.compareAndSet(this, expected, object);
+    }
     
     public TreeNode<T> getParent(){
         return parent;
@@ -27,29 +42,31 @@ public class TreeNode<T> implements Serializable {
         return parent != null;
     }
     
-    public LinkedList<TreeNode<T>> getHistory() {
+    /**
+     * @return Every node from the root down to this one, so that the node at
+     * index i has a depth of i + 1.
+     */
+    @SuppressWarnings("unchecked")
+    public List<TreeNode<T>> getHistory() {
+        TreeNode<T>[] history = new TreeNode[depth];
         TreeNode<T> state = this;
-        LinkedList<TreeNode<T>> list = new LinkedList<>();
-        list.add(this);
-        while (state.hasParent()) {
+        for (int i = depth - 1; i >= 0; i--) {
+            history[i] = state;
             state = state.getParent();
-            list.addFirst(state);
         }
-        return list;
+        return new ArrayList<>(Arrays.asList(history));
     }
-    
+
+    /**
+     * @return The number of nodes from the root down to this one, counting
+     * both. The root has a depth of 1.
+     */
     public int depth() {
-        TreeNode<T> state = this;
-        int depth = 1;
-        while (state.hasParent()) {
-            state = state.getParent();
-            depth++;
-        }
         return depth;
     }
     
     private void writeObject(java.io.ObjectOutputStream out) throws IOException {
-        LinkedList<TreeNode<T>> history = getHistory();
+        List<TreeNode<T>> history = getHistory();
         out.writeInt(history.size());
         for (TreeNode<T> node : history) {
             out.writeObject(node.data);
@@ -64,11 +81,13 @@ public class TreeNode<T> implements Serializable {
         }
         this.data = node.data;
         this.parent = node.parent;
+        this.depth = node.depth;
     }
     
     public TreeNode(T object, TreeNode<T> parent){
         this.parent = parent;
         this.data = object;
+        this.depth = parent == null ? 1 : parent.depth + 1;
     }
     
 }
@@ -0,0 +1,82 @@
+package emulator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LevelsetVerifierTest {
+
+    @Test
+    void verifyLevelsets() throws Exception {
+        List<LevelsetVerifier> verifiers = List.of(
+                new LevelsetVerifier(new File("./testData/sets/CHIPS.DAT"), new File("./testData/tws/public_CHIPS.dac.tws")),
+                new LevelsetVerifier(new File("./testData/sets/CHIPS-Lynx.DAT"), new File("./testData/tws/public_CHIPS-lynx.dac.tws")));
+        List<LevelsetVerifier.Result> results = LevelsetVerifier.verify(verifiers, 4);
+
+        assertEquals(2 * 149, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            LevelsetVerifier.Result r = results.get(i);
+            assertEquals(i % 149 + 1, r.levelNumber);
+            if (r.levelset.getName().equals("CHIPS-Lynx.DAT") && r.levelNumber == 145) //"Thanks to...", not playable in Lynx
+                assertEquals(LevelsetVerifier.Status.MISSING, r.status);
+            else {
+                assertEquals(LevelsetVerifier.Status.PASS, r.status, r.levelset.getName() + " " + r.levelNumber);
+                assertTrue(r.ticks > 0);
+            }
+        }
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        LevelsetVerifier.report(results, 1, new PrintStream(report, true));
+        String[] lines = report.toString().split("\\R");
+        assertEquals(results.size() + 2, lines.length);
+        assertTrue(lines[1].startsWith("CHIPS.DAT\t1\tPASS\t"));
+        assertTrue(lines[lines.length - 1].startsWith("# levels=298 passed=297 failed=0 errors=0 missing=1 "));
+        assertEquals(3, LevelsetVerifier.exitCode(results));
+        assertEquals(0, LevelsetVerifier.exitCode(results.subList(0, 149)));
+    }
+
+    @Test
+    void truncatedLevelset(@TempDir Path dir) throws Exception {
+        byte[] data = Files.readAllBytes(Path.of("./testData/sets/CHIPS.DAT"));
+        File truncated = dir.resolve("CHIPS.DAT").toFile();
+        Files.write(truncated.toPath(), Arrays.copyOf(data, data.length - 100)); //cuts level 149 short
+        LevelsetVerifier verifier = new LevelsetVerifier(truncated, new File("./testData/tws/public_CHIPS.dac.tws"));
+        //one thread, so the emulator that can't load level 149 still holds level 148
+        List<LevelsetVerifier.Result> results = LevelsetVerifier.verify(List.of(verifier), 1);
+
+        assertEquals(149, results.size());
+        LevelsetVerifier.Result last = results.get(148);
+        assertEquals(149, last.levelNumber);
+        assertEquals(LevelsetVerifier.Status.ERROR, last.status);
+        assertEquals("Could not load level 149", last.message);
+        assertEquals(LevelsetVerifier.Status.PASS, results.get(147).status);
+        assertEquals(1, LevelsetVerifier.exitCode(results));
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        LevelsetVerifier.report(results, 1, new PrintStream(report, true));
+        String[] lines = report.toString().split("\\R");
+        assertTrue(lines[149].startsWith("CHIPS.DAT\t149\tERROR\t0\t"));
+        assertTrue(lines[149].endsWith("\tCould not load level 149"));
+        assertTrue(lines[150].startsWith("# levels=149 passed=148 failed=0 errors=1 missing=0 "));
+    }
+
+    @Test
+    void verifyArguments() {
+        assertTrue(ArgumentParser.isVerify(new String[] {"--verify", "a.dat", "b.tws"}));
+        assertFalse(ArgumentParser.isVerify(new String[] {"a.dat", "--verify"}));
+        assertEquals(2, ArgumentParser.verify(new String[] {"--verify", "./testData/sets/CHIPS.DAT"}));
+        assertEquals(2, ArgumentParser.verify(new String[] {"--verify", "./testData/sets/CHIPS.DAT",
+                "./testData/tws/public_CHIPS.dac.tws", "--threads", "none"}));
+        assertEquals(2, ArgumentParser.verify(new String[] {"--verify", "./testData/sets/missing.DAT",
+                "./testData/tws/public_CHIPS.dac.tws"}));
+    }
+}
@@ -0,0 +1,77 @@
+package emulator;
+
+import game.Level;
+import game.Savestate;
+import org.junit.jupiter.api.Test;
+import util.ByteList;
+import util.TreeNode;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SavestateCompressorTest {
+    private final SuperCC emulator = new SuperCC(false);
+
+    private void roundTrip(String levelset, String tws, boolean compressible) {
+        emulator.openLevelset(new File(levelset));
+        emulator.setTWSFile(new File(tws));
+        ByteList list = new ByteList();
+        for (int i = 1; i < emulator.lastLevelNumber(); i += 7) {
+            emulator.loadLevel(i);
+            try {
+                emulator.twsReader.readSolution(emulator.getLevel()).load(emulator, TickFlags.LIGHT);
+            }
+            catch (Exception ignored) { }
+            Level level = emulator.getLevel();
+            byte[] state = level.save();
+            byte[] compressed = SavestateCompressor.compress(state, list);
+            if (compressible)
+                assertTrue(compressed.length < state.length);
+            else
+                assertSame(state, compressed);
+            assertArrayEquals(state, SavestateCompressor.decompress(compressed), "level " + i);
+            assertEquals(Savestate.getChip(state).bits(), Savestate.getChip(compressed).bits());
+            level.load(compressed);
+            assertArrayEquals(state, level.save(), "level " + i);
+        }
+    }
+
+    @Test
+    void msRoundTrip() {
+        roundTrip("./testData/sets/CCLP1.DAT", "./testData/tws/public_CCLP1.dac.tws", true);
+    }
+
+    // Lynx savestates are written packed, so the compressor leaves them alone
+    @Test
+    void lynxRoundTrip() {
+        roundTrip("./testData/sets/CCLP1-Lynx.DAT", "./testData/tws/public_CCLP1-lynx.dac.tws", false);
+    }
+
+    @Test
+    void backgroundCompression() throws Exception {
+        emulator.savestateCompressor = new SavestateCompressor();
+        emulator.openLevelset(new File("./testData/sets/CCLP1.DAT"));
+        emulator.setTWSFile(new File("./testData/tws/public_CCLP1.dac.tws"));
+        emulator.loadLevel(15);
+        emulator.twsReader.readSolution(emulator.getLevel()).load(emulator);
+
+        SavestateManager manager = emulator.getSavestates();
+        List<TreeNode<byte[]>> nodes = manager.getPlaybackNodes();
+        assertTrue(nodes.size() > 5 * 64, "solution too short to compress any keyframes");
+        List<byte[]> states = new ArrayList<>();
+        for (TreeNode<byte[]> node : nodes) states.add(manager.stateOf(node));
+
+        for (int i = 0; i < 100 && emulator.savestateCompressor.queued() > 0; i++) Thread.sleep(10);
+        Thread.sleep(50);
+        assertTrue(nodes.stream().anyMatch(n -> n.getData()[0] == Savestate.COMPRESSED_V2));
+        assertTrue(nodes.get(nodes.size() - 1).getData()[0] != Savestate.COMPRESSED_V2);
+        assertEquals(manager.getChipHistory(), states.stream().map(s -> Savestate.getChip(s).getPosition()).toList());
+        for (int i = nodes.size() - 1; i >= 0; i--)
+            assertArrayEquals(states.get(i), manager.stateOf(nodes.get(i)));
+        manager.stateOf(nodes.get(nodes.size() - 1));
+        assertArrayEquals(states.get(0), manager.stateOf(nodes.get(0)));
+    }
+}
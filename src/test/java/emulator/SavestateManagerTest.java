@@ -0,0 +1,185 @@
+package emulator;
+
+import game.Position;
+import game.Savestate;
+import game.Tile;
+import org.junit.jupiter.api.Test;
+import util.ByteList;
+import util.TreeNode;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SavestateManagerTest {
+    private final SuperCC emulator = new SuperCC(false);
+
+    @Test
+    void deltaRoundTrip() {
+        byte[] parent = {6, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        byte[] child = {6, 0, 1, 2, 9, 4, 5, 6, 7, 8, 9, 10, 11};
+        ByteList buffer = new ByteList();
+        byte[] grow = SavestateDelta.encode(parent, child, buffer);
+        assertTrue(SavestateDelta.isDelta(grow));
+        assertArrayEquals(child, SavestateDelta.apply(parent, grow, false));
+        assertArrayEquals(parent, SavestateDelta.apply(child, grow, true));
+        assertArrayEquals(child, SavestateDelta.applyInPlace(parent.clone(), grow));
+
+        byte[] shrink = SavestateDelta.encode(child, parent, buffer);
+        assertArrayEquals(parent, SavestateDelta.apply(child, shrink, false));
+        assertArrayEquals(child, SavestateDelta.apply(parent, shrink, true));
+    }
+
+    /**
+     * Replays a levelset with savestates being written, checking that every
+     * state in the history comes back the same whichever direction it is
+     * reached from, and that the stored history is a small fraction of the
+     * size full savestates would take: under a quarter for deltas, under a
+     * twentieth for moves.
+     * @param replayInterval The interval between full states when storing
+     *                       moves, or 0 to store deltas.
+     */
+    private void replayHistory(String levelset, String tws, int replayInterval) {
+        emulator.openLevelset(new File(levelset));
+        emulator.setTWSFile(new File(tws));
+        long fullSize = 0;
+        long storedSize = 0;
+        for (int i = 1; i < emulator.lastLevelNumber(); i++) {
+            emulator.loadLevel(i);
+            Solution s;
+            try {
+                s = emulator.twsReader.readSolution(emulator.getLevel());
+            }
+            catch (Exception e) {
+                continue;
+            }
+            emulator.loadLevel(i, s.rngSeed, s.step, false, s.ruleset, s.initialSlide);
+            SavestateManager manager = emulator.getSavestates();
+            manager.setHistoryPolicy(replayInterval, 16);
+            s.loadMoves(emulator, TickFlags.PRELOADING, false);
+            List<TreeNode<byte[]>> nodes = manager.getPlaybackNodes();
+            assertArrayEquals(emulator.getLevel().save(), manager.stateOf(nodes.get(nodes.size() - 1)));
+
+            List<byte[]> forwards = new ArrayList<>();
+            for (TreeNode<byte[]> node : nodes) {
+                byte[] state = manager.stateOf(node);
+                forwards.add(state);
+                fullSize += state.length;
+            }
+            for (int j = nodes.size() - 1; j >= 0; j--)
+                assertArrayEquals(forwards.get(j), manager.stateOf(nodes.get(j)), "level " + i + " state " + j);
+            for (int j = nodes.size() - 1; j >= 0; j -= 37) {
+                manager.stateOf(nodes.get(0));
+                assertArrayEquals(forwards.get(j), manager.stateOf(nodes.get(j)), "level " + i + " state " + j);
+            }
+            storedSize += manager.getHistorySize();
+        }
+        assertTrue(storedSize * (replayInterval == 0 ? 4 : 20) < fullSize, "History took " + storedSize + " of " + fullSize + " bytes");
+    }
+
+    @Test
+    void msHistory() {
+        replayHistory("./testData/sets/CCLP1.DAT", "./testData/tws/public_CCLP1.dac.tws", 0);
+    }
+
+    @Test
+    void lynxHistory() {
+        replayHistory("./testData/sets/CCLP1-Lynx.DAT", "./testData/tws/public_CCLP1-lynx.dac.tws", 0);
+    }
+
+    @Test
+    void msReplayHistory() {
+        replayHistory("./testData/sets/CCLP1.DAT", "./testData/tws/public_CCLP1.dac.tws", 64);
+    }
+
+    @Test
+    void lynxReplayHistory() {
+        replayHistory("./testData/sets/CCLP1-Lynx.DAT", "./testData/tws/public_CCLP1-lynx.dac.tws", 64);
+    }
+
+    /**
+     * A tick made after the level was changed outside of a tick can't be
+     * rebuilt by replaying its move, so it has to keep its full state.
+     */
+    @Test
+    void replayKeepsCheats() {
+        emulator.openLevelset(new File("./testData/sets/CCLP1.DAT"));
+        SavestateManager manager = emulator.getSavestates();
+        manager.setHistoryPolicy(16, 4);
+        List<byte[]> states = new ArrayList<>();
+        states.add(emulator.getLevel().save());
+        char[] moves = {SuperCC.RIGHT, SuperCC.WAIT, SuperCC.DOWN, SuperCC.LEFT, SuperCC.WAIT, SuperCC.UP};
+        for (int i = 0; i < 40; i++) {
+            if (i == 10)
+                emulator.getLevel().getCheats().setLayerBG(Position.fromXY(31, 31), Tile.WALL);
+            emulator.tick(moves[i % moves.length], TickFlags.PRELOADING);
+            states.add(emulator.getLevel().save());
+        }
+        List<TreeNode<byte[]>> nodes = manager.getPlaybackNodes();
+        assertEquals(states.size(), nodes.size());
+        assertTrue(manager.getHistorySize() < 4 * states.get(0).length);
+        for (int i = nodes.size() - 1; i >= 0; i--)
+            assertArrayEquals(states.get(i), manager.stateOf(nodes.get(i)), "state " + i);
+    }
+
+    private static List<Position> chipPositions(List<byte[]> states) {
+        return states.stream().map(s -> Savestate.getChip(s).getPosition()).toList();
+    }
+
+    /**
+     * Restores savestates on two branches that share their first ticks,
+     * checking the playback path, moves and chip history of each.
+     */
+    @Test
+    void switchBranches() {
+        emulator.openLevelset(new File("./testData/sets/CCLP1.DAT"));
+        SavestateManager manager = emulator.getSavestates();
+        char[] moves = {SuperCC.RIGHT, SuperCC.WAIT, SuperCC.DOWN, SuperCC.LEFT, SuperCC.WAIT, SuperCC.UP};
+        List<byte[]> first = new ArrayList<>();
+        first.add(emulator.getLevel().save());
+        for (int i = 0; i < 40; i++) {
+            emulator.tick(moves[i % moves.length], TickFlags.PRELOADING);
+            first.add(emulator.getLevel().save());
+        }
+        manager.addSavestate(1);
+        char[] firstMoves = manager.getMoves();
+
+        manager.playbackRewind(20);
+        emulator.getLevel().load(manager.getSavestate());
+        List<byte[]> second = new ArrayList<>(first.subList(0, 21));
+        for (int i = 0; i < 30; i++) {
+            emulator.tick(moves[(i + 3) % moves.length], TickFlags.PRELOADING);
+            second.add(emulator.getLevel().save());
+        }
+        manager.addSavestate(2);
+        char[] secondMoves = manager.getMoves();
+        assertEquals(50, secondMoves.length);
+
+        for (int key : new int[] {1, 2, 1, 2}) {
+            List<byte[]> states = key == 1 ? first : second;
+            assertTrue(manager.load(key, emulator.getLevel()));
+            List<TreeNode<byte[]>> nodes = manager.getPlaybackNodes();
+            assertEquals(states.size(), nodes.size());
+            assertEquals(states.size() - 1, manager.getPlaybackIndex());
+            for (int i = 0; i < nodes.size(); i++) {
+                assertEquals(i + 1, nodes.get(i).depth());
+                assertArrayEquals(states.get(i), manager.stateOf(nodes.get(i)), "savestate " + key + " state " + i);
+            }
+            assertArrayEquals(key == 1 ? firstMoves : secondMoves, manager.getMoves());
+            assertEquals(chipPositions(states), manager.getChipHistory());
+        }
+
+        manager.playbackRewind(10);
+        assertEquals(chipPositions(second.subList(0, 11)), manager.getChipHistory());
+        emulator.getLevel().load(manager.getSavestate());
+        emulator.tick(SuperCC.WAIT, TickFlags.PRELOADING);
+        assertEquals(12, manager.getPlaybackNodes().size());
+        assertEquals(11, manager.getMoveList().size());
+        assertEquals(chipPositions(second.subList(0, 11)), manager.getChipHistory().subList(0, 11));
+        manager.restart();
+        assertEquals(0, manager.getPlaybackIndex());
+        assertSame(manager.getPlaybackNodes().get(0), manager.getNode());
+    }
+}
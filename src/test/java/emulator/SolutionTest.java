@@ -0,0 +1,65 @@
+package emulator;
+
+import game.Level;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolutionTest {
+    private static final int[] SEEDS = {0, 1, 0x1234567, 0x7FFFFFFF};
+
+    private final SuperCC emulator = new SuperCC(false);
+
+    /**
+     * Checks that playing a solution with a seed from the state before the
+     * RNG is first advanced ends the same as playing it from the start.
+     * @return The number of levels where the RNG is first advanced after
+     * the first tick.
+     */
+    private int checkResume(String levelset, String tws) {
+        emulator.openLevelset(new File(levelset));
+        emulator.setTWSFile(new File(tws));
+        int late = 0;
+        for (int i = 1; i < emulator.lastLevelNumber(); i += 3) {
+            emulator.loadLevel(i);
+            Solution s;
+            try {
+                s = emulator.twsReader.readSolution(emulator.getLevel());
+            }
+            catch (Exception e) {
+                continue;
+            }
+            emulator.loadLevel(i, 0, s.step, false, s.ruleset, s.initialSlide);
+            int resumeMove = s.loadMovesUntilRng(emulator, TickFlags.LIGHT);
+            Level level = emulator.getLevel();
+            byte[] resumeState = level.save();
+            if (level.getTickNumber() > 0)
+                late++;
+
+            for (int seed : SEEDS) {
+                emulator.loadLevel(i, seed, s.step, false, s.ruleset, s.initialSlide);
+                s.loadMoves(emulator, TickFlags.LIGHT, false);
+                byte[] full = emulator.getLevel().save();
+
+                level = emulator.getLevel();
+                level.load(resumeState);
+                level.getCheats().setRng(seed);
+                s.loadMoves(emulator, TickFlags.LIGHT, resumeMove);
+                assertArrayEquals(full, level.save(), "level " + i + " seed " + seed);
+            }
+        }
+        return late;
+    }
+
+    @Test
+    void msResumeAtRng() {
+        assertTrue(checkResume("./testData/sets/CCLP1.DAT", "./testData/tws/public_CCLP1.dac.tws") > 0);
+    }
+
+    @Test
+    void lynxResumeAtRng() {
+        assertTrue(checkResume("./testData/sets/CCLP1-Lynx.DAT", "./testData/tws/public_CCLP1-lynx.dac.tws") > 0);
+    }
+}
@@ -0,0 +1,158 @@
+package game;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import emulator.TickFlags;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CreatureListTest {
+    private static final int RUNAWAY_TRAIN = 118; //clones well over a hundred monsters
+
+    private final SuperCC emulator = new SuperCC(false);
+
+    // The linear scans that the position index replaced
+    private static Creature scanCreatureAt(Level level, Position position, boolean includeChip) {
+        for (Creature c : level.getMonsterList()) {
+            if (((c.getCreatureType() == CreatureID.CHIP || c == level.getChip()) && !includeChip)
+                    || c.getCreatureType() == CreatureID.DEAD)
+                continue;
+            if (c.getPosition().equals(position))
+                return c;
+        }
+        return null;
+    }
+
+    private static Creature scanAnimationAt(Level level, Position position) {
+        for (Creature c : level.getMonsterList()) {
+            if (c.getPosition().equals(position) && c.getCreatureType() == CreatureID.DEAD && c.getAnimationTimer() != 0)
+                return c;
+        }
+        return null;
+    }
+
+    private static boolean scanOccupied(Level level, Position position) {
+        for (Creature c : level.getMonsterList()) {
+            if (c.getPosition().equals(position))
+                return true;
+        }
+        return false;
+    }
+
+    private static void checkPosition(Level level, Position position, String where) {
+        CreatureList list = level.getMonsterList();
+        assertSame(scanCreatureAt(level, position, false), list.creatureAt(position, false), where + position);
+        assertSame(scanCreatureAt(level, position, true), list.creatureAt(position, true), where + position);
+        assertEquals(scanOccupied(level, position), list.occupied(position), where + position);
+        if (!level.supportsLayerBG())
+            assertSame(scanAnimationAt(level, position), list.animationAt(position), where + position);
+    }
+
+    // Checks the tiles of every creature and their neighbours
+    private static void checkCreatures(Level level, String where) {
+        List<Creature> creatures = new ArrayList<>();
+        creatures.add(level.getChip());
+        for (Creature c : level.getMonsterList())
+            creatures.add(c);
+        for (Creature c : creatures) {
+            checkPosition(level, c.getPosition(), where);
+            for (Direction d : Direction.CARDINALS)
+                checkPosition(level, c.getPosition().move(d), where);
+        }
+    }
+
+    /**
+     * Ticks through a solution the same way Solution does, checking the
+     * index after every tick.
+     */
+    private void replayChecked(Solution s, int levelNumber) {
+        emulator.loadLevel(levelNumber, s.rngSeed, s.step, false, s.ruleset, s.initialSlide);
+        Level level = emulator.getLevel();
+        for (int move = 0; move < s.basicMoves.length; move++) {
+            char c = s.basicMoves[move];
+            if (c == SuperCC.CHIP_RELATIVE_CLICK) {
+                int x = s.basicMoves[++move] - 9;
+                int y = s.basicMoves[++move] - 9;
+                if (x == 0 && y == 0)
+                    c = SuperCC.WAIT;
+                else {
+                    Position chipPosition = level.getChip().getPosition();
+                    Position clickPosition = chipPosition.add(x, y);
+                    level.setClick(clickPosition.getIndex());
+                    c = clickPosition.clickChar(chipPosition);
+                }
+            }
+            if (emulator.tick(c, TickFlags.LIGHT))
+                move += level.ticksPerMove() - 1;
+            checkCreatures(level, "level " + levelNumber + " tick " + level.getTickNumber() + " ");
+            if (level.getChip().isDead())
+                break;
+        }
+        for (int i = 0; i < 1024; i++)
+            checkPosition(level, Position.fromIndex(i), "level " + levelNumber + " end ");
+
+        level.load(level.save());
+        for (int i = 0; i < 1024; i++)
+            checkPosition(level, Position.fromIndex(i), "level " + levelNumber + " loaded ");
+    }
+
+    private void checkLevelset(String levelset, String tws) {
+        emulator.openLevelset(new File(levelset));
+        emulator.setTWSFile(new File(tws));
+        for (int i = 1; i < emulator.lastLevelNumber(); i++) {
+            if (i % 5 != 0 && i != RUNAWAY_TRAIN)
+                continue;
+            emulator.loadLevel(i);
+            Solution s;
+            try {
+                s = emulator.twsReader.readSolution(emulator.getLevel());
+            }
+            catch (Exception e) {
+                continue;
+            }
+            replayChecked(s, i);
+        }
+    }
+
+    @Test
+    void msIndex() {
+        checkLevelset("./testData/sets/CCLP1.DAT", "./testData/tws/public_CCLP1.dac.tws");
+    }
+
+    @Test
+    void lynxIndex() {
+        checkLevelset("./testData/sets/CCLP1-Lynx.DAT", "./testData/tws/public_CCLP1-lynx.dac.tws");
+    }
+
+    /**
+     * Replays a level that clones a large number of monsters, where finding
+     * creatures by position used to mean scanning the whole list. How long
+     * it takes is measured by TickBenchmark.
+     */
+    private void cloneMany(String levelset, String tws) throws Exception {
+        emulator.openLevelset(new File(levelset));
+        emulator.setTWSFile(new File(tws));
+        emulator.loadLevel(RUNAWAY_TRAIN);
+        Solution s = emulator.twsReader.readSolution(emulator.getLevel());
+        emulator.loadLevel(RUNAWAY_TRAIN, s.rngSeed, s.step, false, s.ruleset, s.initialSlide);
+        s.loadMoves(emulator, TickFlags.LIGHT, false);
+        Level level = emulator.getLevel();
+        assertTrue(level.isCompleted());
+        assertTrue(level.getMonsterList().size() > 100, level.getMonsterList().size() + " monsters");
+    }
+
+    @Test
+    void msCloneMany() throws Exception {
+        cloneMany("./testData/sets/CCLP1.DAT", "./testData/tws/public_CCLP1.dac.tws");
+    }
+
+    @Test
+    void lynxCloneMany() throws Exception {
+        cloneMany("./testData/sets/CCLP1-Lynx.DAT", "./testData/tws/public_CCLP1-lynx.dac.tws");
+    }
+}
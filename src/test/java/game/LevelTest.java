@@ -0,0 +1,133 @@
+package game;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import emulator.TickFlags;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LevelTest {
+    private static final int FORKS = 4;
+
+    private final SuperCC emulator = new SuperCC(false);
+
+    /**
+     * Forks the start of a level several times and replays the solution on
+     * each fork on its own thread while the original level replays it on
+     * this one. Every copy has to finish in the same state.
+     */
+    private void forkLevelset(String levelset, String tws) throws Exception {
+        emulator.openLevelset(new File(levelset));
+        emulator.setTWSFile(new File(tws));
+        ExecutorService threads = Executors.newFixedThreadPool(FORKS);
+        try {
+            for (int i = 1; i < emulator.lastLevelNumber(); i += 3) {
+                emulator.loadLevel(i);
+                Solution s;
+                try {
+                    s = emulator.twsReader.readSolution(emulator.getLevel());
+                }
+                catch (Exception e) {
+                    continue;
+                }
+                emulator.loadLevel(i, s.rngSeed, s.step, false, s.ruleset, s.initialSlide);
+                Level level = emulator.getLevel();
+                byte[] start = level.save();
+
+                List<Future<byte[]>> results = new ArrayList<>();
+                for (int j = 0; j < FORKS; j++) {
+                    Level fork = level.fork();
+                    assertNotSame(level.getLayerFG(), fork.getLayerFG());
+                    assertArrayEquals(start, fork.save(), "level " + i);
+                    Solution forkSolution = new Solution(s);
+                    results.add(threads.submit(() -> {
+                        SuperCC forkEmulator = new SuperCC(false);
+                        forkEmulator.setLevel(fork);
+                        forkSolution.loadMoves(forkEmulator, TickFlags.LIGHT, false);
+                        return fork.save();
+                    }));
+                }
+                s.loadMoves(emulator, TickFlags.LIGHT, false);
+                byte[] end = level.save();
+                for (Future<byte[]> result : results)
+                    assertArrayEquals(end, result.get(), "level " + i);
+                assertArrayEquals(end, level.fork().save(), "level " + i);
+            }
+        }
+        finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    void msFork() throws Exception {
+        forkLevelset("./testData/sets/CCLP1.DAT", "./testData/tws/public_CCLP1.dac.tws");
+    }
+
+    @Test
+    void lynxFork() throws Exception {
+        forkLevelset("./testData/sets/CCLP1-Lynx.DAT", "./testData/tws/public_CCLP1-lynx.dac.tws");
+    }
+
+    /**
+     * Replays every fourth level with the state hash checked against a
+     * freshly loaded copy after every tick. States that save differently
+     * must hash differently, and loading a state must restore its hash.
+     */
+    private void hashLevelset(String levelset, String tws) {
+        emulator.openLevelset(new File(levelset));
+        emulator.setTWSFile(new File(tws));
+        emulator.checkStateHash = true;
+        Map<Long, byte[]> states = new HashMap<>();
+        for (int i = 1; i < emulator.lastLevelNumber(); i += 4) {
+            emulator.loadLevel(i);
+            Solution s;
+            try {
+                s = emulator.twsReader.readSolution(emulator.getLevel());
+            }
+            catch (Exception e) {
+                continue;
+            }
+            emulator.loadLevel(i, s.rngSeed, s.step, false, s.ruleset, s.initialSlide);
+            Level level = emulator.getLevel();
+            byte[] start = level.save();
+            long startHash = level.stateHash();
+            s.loadMoves(emulator, TickFlags.LIGHT, false);
+            byte[] end = level.save();
+            long endHash = level.stateHash();
+            assertNotEquals(startHash, endHash, "level " + i);
+
+            level.load(start);
+            assertEquals(startHash, level.stateHash(), "level " + i);
+            level.load(end);
+            assertEquals(endHash, level.stateHash(), "level " + i);
+
+            for (byte[] state : List.of(start, end)) {
+                level.load(state);
+                byte[] other = states.putIfAbsent(level.stateHash(), state);
+                if (other != null)
+                    assertArrayEquals(other, state, "level " + i);
+            }
+        }
+    }
+
+    @Test
+    void msStateHash() {
+        hashLevelset("./testData/sets/CCLP1.DAT", "./testData/tws/public_CCLP1.dac.tws");
+    }
+
+    @Test
+    void lynxStateHash() {
+        hashLevelset("./testData/sets/CCLP1-Lynx.DAT", "./testData/tws/public_CCLP1-lynx.dac.tws");
+    }
+}
@@ -0,0 +1,124 @@
+package game.MS;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import emulator.TickFlags;
+import game.Level;
+import game.Position;
+import game.button.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MSLevelTest {
+    private final SuperCC emulator = new SuperCC(false);
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * The bytes allocated per tick while replaying, averaged over the whole
+     * levelset. Some allocation is expected when monsters die or are cloned,
+     * as the monster list has to be rebuilt.
+     */
+    private static final double MAX_BYTES_PER_TICK = 32;
+
+    /**
+     * Replays every solution in the levelset, returning the average number
+     * of bytes allocated by the current thread per tick, excluding loading
+     * the level.
+     */
+    private double replayAllocation() throws IOException {
+        long threadId = Thread.currentThread().getId();
+        long allocated = 0;
+        long ticks = 0;
+        for (int i = 1; i < emulator.lastLevelNumber(); i++) {
+            emulator.loadLevel(i);
+            Solution s = emulator.twsReader.readSolution(emulator.getLevel());
+            emulator.loadLevel(i, s.rngSeed, s.step, false, s.ruleset, s.initialSlide);
+            Level level = emulator.getLevel();
+
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            s.loadMoves(emulator, TickFlags.LIGHT, false);
+            allocated += threadBean.getThreadAllocatedBytes(threadId) - before;
+            ticks += level.getTickNumber();
+        }
+        return allocated / (double) ticks;
+    }
+
+    @Test
+    void tickAllocation() throws IOException {
+        if (!threadBean.isThreadAllocatedMemorySupported())
+            return;
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        emulator.openLevelset(new File("./testData/sets/CHIPS.DAT"));
+        emulator.setTWSFile(new File("./testData/tws/public_CHIPS.dac.tws"));
+
+        replayAllocation(); //warm up so the measurement is of compiled code
+        double bytesPerTick = replayAllocation();
+        assertTrue(bytesPerTick < MAX_BYTES_PER_TICK, "Ticking allocated " + bytesPerTick + " bytes per tick");
+    }
+
+    @Test
+    void saveLoadBuffers() throws IOException {
+        emulator.openLevelset(new File("./testData/sets/CHIPS.DAT"));
+        emulator.setTWSFile(new File("./testData/tws/public_CHIPS.dac.tws"));
+        emulator.loadLevel(134);
+        Solution s = emulator.twsReader.readSolution(emulator.getLevel());
+        s.load(emulator, TickFlags.LIGHT);
+        Level level = emulator.getLevel();
+        level.load(level.save()); //loading masks the rng seed, so start from a loaded state
+        byte[] saved = level.save();
+        ByteBuffer buffer = ByteBuffer.allocate(level.savestateSize());
+        level.saveInto(buffer);
+        assertArrayEquals(saved, buffer.array());
+
+        if (!threadBean.isThreadAllocatedMemorySupported())
+            return;
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 20000; i++) { //warm up
+            level.loadFrom(buffer.rewind());
+            level.saveInto(buffer.rewind());
+        }
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1000; i++) {
+            level.loadFrom(buffer.rewind());
+            level.saveInto(buffer.rewind());
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertArrayEquals(saved, buffer.array());
+        assertTrue(allocated < 1000, "Saving and loading allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void buttonTables() {
+        emulator.openLevelset(new File("./testData/sets/CHIPS.DAT"));
+        for (int i = 1; i < emulator.lastLevelNumber(); i++) {
+            emulator.loadLevel(i);
+            MSLevel level = (MSLevel) emulator.getLevel();
+            for (int p = 0; p < 1024; p++) {
+                Position position = Position.fromIndex(p);
+                String where = "level " + i + " " + position;
+                assertSame(level.getGreenButtons().get(position), level.getButton(position, GreenButton.class), where);
+                assertSame(level.getRedButtons().get(position), level.getButton(position, RedButton.class), where);
+                assertSame(level.getBrownButtons().get(position), level.getButton(position, BrownButton.class), where);
+                assertSame(level.getBlueButtons().get(position), level.getButton(position, BlueButton.class), where);
+
+                Integer trapIndex = level.trapIndexMap.get(position);
+                assertEquals(trapIndex == null ? -1 : trapIndex, level.trapIndex(position), where);
+                List<BrownButton> trapButtons = level.getTrapButtons().getList(position);
+                assertArrayEquals(trapButtons == null ? new BrownButton[0] : trapButtons.toArray(), level.trapButtonsAt(position), where);
+                for (BrownButton b : level.firstBrownButtonsTo(position)) {
+                    assertSame(b, level.getBrownButtons().get(b.getButtonPosition()), where);
+                    assertEquals(position, b.getTargetPosition(), where);
+                }
+            }
+        }
+    }
+}
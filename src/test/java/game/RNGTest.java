@@ -0,0 +1,99 @@
+package game;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import emulator.TickFlags;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RNGTest {
+    private static final int[] SEEDS = {0, 1, 0x1234567, 0x7FFFFFFF};
+
+    @Test
+    void skip() {
+        for (int seed : SEEDS) {
+            RNG rng = new RNG(seed, 0, 0);
+            int[] values = new int[1001];
+            values[0] = seed;
+            for (int i = 1; i < values.length; i++)
+                values[i] = RNG.next(values[i - 1]);
+            for (int n : new int[] {0, 1, 2, 3, 64, 999, 1000})
+                assertEquals(values[n], RNG.skip(seed, n), "seed " + seed + " n " + n);
+            assertEquals(seed, RNG.skip(values[1000], -1000));
+            assertEquals(seed, RNG.skip(seed, 1L << 31));
+            assertEquals(RNG.skip(seed, 5), RNG.skip(seed, 5 - (3L << 31)));
+
+            rng.skip(1000);
+            assertEquals(values[1000], rng.getCurrentValue());
+            rng.skip(-999);
+            assertEquals(values[1], rng.getCurrentValue());
+            assertEquals(0, rng.getAdvances());
+        }
+    }
+
+    @Test
+    void outcomes() {
+        RNG.Call[] calls = {RNG.Call.RANDOM4, RNG.Call.PERMUTATION3, RNG.Call.PERMUTATION4, RNG.Call.RANDOM4};
+        for (int seed : SEEDS) {
+            RNG rng = new RNG(seed, 0, 0);
+            Integer[] three = {0, 1, 2}, four = {0, 1, 2, 3};
+            int random4 = rng.random4();
+            rng.randomPermutation3(three);
+            rng.randomPermutation4(four);
+            int[] expected = {random4, three[0] | three[1] << 2 | three[2] << 4,
+                    four[0] | four[1] << 2 | four[2] << 4 | four[3] << 6, rng.random4()};
+            assertArrayEquals(expected, RNG.outcomes(seed, calls));
+        }
+    }
+
+    @Test
+    void outcomeIndex() {
+        for (RNG.Call call : RNG.Call.values()) {
+            int[] outcomeOfIndex = new int[call.outcomes];
+            Arrays.fill(outcomeOfIndex, -1);
+            int value = 1;
+            for (int i = 0; i < 10000; i++) {
+                value = RNG.next(value);
+                int index = RNG.outcomeIndex(call, value);
+                if (outcomeOfIndex[index] < 0)
+                    outcomeOfIndex[index] = RNG.outcome(call, value);
+                assertEquals(outcomeOfIndex[index], RNG.outcome(call, value), call + " index " + index);
+            }
+            assertEquals(call.outcomes, Arrays.stream(outcomeOfIndex).distinct().filter(o -> o >= 0).count(), call.toString());
+        }
+    }
+
+    @Test
+    void traceLevel() throws Exception {
+        SuperCC emulator = new SuperCC(false);
+        emulator.openLevelset(new File("./testData/sets/CHIPS.DAT"));
+        emulator.setTWSFile(new File("./testData/tws/public_CHIPS.dac.tws"));
+        emulator.loadLevel(40); //random force floors
+        Solution s = emulator.twsReader.readSolution(emulator.getLevel());
+
+        RNGTrace[] traces = new RNGTrace[2];
+        for (int seed = 0; seed < traces.length; seed++) {
+            emulator.loadLevel(40, seed, s.step, false, s.ruleset, s.initialSlide);
+            traces[seed] = new RNGTrace(emulator.getLevel());
+            s.loadMoves(emulator, TickFlags.LIGHT, false);
+            traces[seed].detach();
+        }
+        RNGTrace trace = traces[0];
+        assertTrue(trace.size() > 0);
+        assertEquals(-1, trace.firstDifference(trace));
+        assertArrayEquals(RNG.outcomes(0, trace.getCalls()),
+                IntStream.range(0, trace.size()).map(trace::getResult).toArray());
+        for (int i = 1; i < trace.size(); i++)
+            assertTrue(trace.getTick(i) >= trace.getTick(i - 1));
+
+        int diff = trace.firstDifference(traces[1]);
+        assertTrue(diff >= 0);
+        for (int i = 0; i < diff; i++)
+            assertEquals(trace.getResult(i), traces[1].getResult(i));
+    }
+}
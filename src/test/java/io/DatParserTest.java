@@ -0,0 +1,74 @@
+package io;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import emulator.TickFlags;
+import game.Direction;
+import game.Level;
+import game.Ruleset;
+import game.Step;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatParserTest {
+
+    /**
+     * Plays a level loaded from the cache, then checks that loading it again
+     * gives the same level as a parser that has never loaded it.
+     */
+    private static void playedTemplate(String levelset, String tws, int levelNumber) throws IOException {
+        SuperCC emulator = new SuperCC(false);
+        emulator.openLevelset(new File(levelset));
+        emulator.setTWSFile(new File(tws));
+        emulator.loadLevel(levelNumber);
+        Solution s = emulator.twsReader.readSolution(emulator.getLevel());
+        for (int i = 0; i < 2; i++) {
+            emulator.loadLevel(levelNumber, s.rngSeed, s.step, false, s.ruleset, s.initialSlide);
+            s.loadMoves(emulator, TickFlags.LIGHT, false);
+            assertTrue(emulator.getLevel().isCompleted(), "play " + i);
+        }
+
+        DatParser cached = new DatParser(new File(levelset));
+        cached.parseLevel(levelNumber, 0, Step.EVEN, Ruleset.CURRENT, Direction.UP);
+        Level fresh = new DatParser(new File(levelset)).parseLevel(levelNumber, s.rngSeed, s.step, s.ruleset, s.initialSlide);
+        Level fork = cached.parseLevel(levelNumber, s.rngSeed, s.step, s.ruleset, s.initialSlide);
+        assertArrayEquals(fresh.save(), fork.save());
+        assertEquals(s.rngSeed, fork.getRngSeed());
+        assertEquals(s.step, fork.getStep());
+        if (s.ruleset == Ruleset.LYNX)
+            assertEquals(s.initialSlide, fork.getInitialRFFDirection());
+    }
+
+    @Test
+    void msTemplate() throws IOException {
+        playedTemplate("./testData/sets/CCLP1.DAT", "./testData/tws/public_CCLP1.dac.tws", 118);
+    }
+
+    @Test
+    void lynxTemplate() throws IOException {
+        playedTemplate("./testData/sets/CCLP1-Lynx.DAT", "./testData/tws/public_CCLP1-lynx.dac.tws", 118);
+    }
+
+    @Test
+    void rereadsChangedFile() throws IOException {
+        Path dat = Files.createTempFile("DatParserTest", ".dat");
+        try {
+            Files.copy(Path.of("./testData/sets/CHIPS.DAT"), dat, StandardCopyOption.REPLACE_EXISTING);
+            DatParser parser = new DatParser(dat.toFile());
+            String title = parser.parseLevel(1, 0, Step.EVEN, Ruleset.CURRENT, Direction.UP).getTitle();
+
+            Files.copy(Path.of("./testData/sets/CCLP1.DAT"), dat, StandardCopyOption.REPLACE_EXISTING);
+            assertNotEquals(title, parser.parseLevel(1, 0, Step.EVEN, Ruleset.CURRENT, Direction.UP).getTitle());
+        }
+        finally {
+            Files.delete(dat);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import game.Level;
+import game.Ruleset;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TWSReaderTest {
+
+    private static List<Level> levels(String levelset) {
+        SuperCC emulator = new SuperCC(false);
+        emulator.openLevelset(new File(levelset));
+        List<Level> levels = new ArrayList<>();
+        for (int i = 1; i < emulator.lastLevelNumber(); i++) {
+            emulator.loadLevel(i);
+            levels.add(emulator.getLevel());
+        }
+        return levels;
+    }
+
+    @Test
+    void concurrentReads() throws Exception {
+        List<Level> levels = levels("./testData/sets/CCLP1.DAT");
+        TWSReader reader = new TWSReader(new File("./testData/tws/public_CCLP1.dac.tws"));
+        List<Solution> expected = new ArrayList<>();
+        for (Level level : levels)
+            expected.add(reader.readSolution(level));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Solution>> futures = new ArrayList<>();
+            for (int i = levels.size() - 1; i >= 0; i--) {
+                Level level = levels.get(i);
+                futures.add(pool.submit(() -> reader.readSolution(level)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Solution e = expected.get(levels.size() - 1 - i);
+                Solution s = futures.get(i).get();
+                assertArrayEquals(e.basicMoves, s.basicMoves);
+                assertEquals(e.rngSeed, s.rngSeed);
+                assertEquals(e.step, s.step);
+                assertEquals(e.initialSlide, s.initialSlide);
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void rereadsChangedFile() throws IOException {
+        Path tws = Files.createTempFile("TWSReaderTest", ".tws");
+        try {
+            Files.copy(Path.of("./testData/tws/public_CHIPS.dac.tws"), tws, StandardCopyOption.REPLACE_EXISTING);
+            TWSReader reader = new TWSReader(tws.toFile());
+            Level level = levels("./testData/sets/CHIPS.DAT").get(0);
+            assertEquals(Ruleset.MS, reader.readSolution(level).ruleset);
+
+            Files.copy(Path.of("./testData/tws/public_CHIPS-lynx.dac.tws"), tws, StandardCopyOption.REPLACE_EXISTING);
+            assertEquals(Ruleset.LYNX, reader.readSolution(level).ruleset);
+
+            Files.write(tws, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+            assertThrows(IOException.class, () -> reader.readSolution(level));
+        }
+        finally {
+            Files.delete(tws);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package tools;
+
+import emulator.Solution;
+import emulator.SuperCC;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The CHIPS.DAT levels the seed tools are tested on, with their public
+ * solutions.
+ */
+final class ChipsSolutions {
+    static final File CHIPS = new File("./testData/sets/CHIPS.DAT");
+    static final int FLOORGASBORG = 40; //random force floors, the solution works with about a quarter of seeds
+    static final int SCOUNDREL = 60; //the solution works with about one seed in sixteen
+
+    private ChipsSolutions() {}
+
+    /**
+     * Opens a level of CHIPS.DAT and reads its public solution.
+     * @return The solution. The level is left loaded with seed 0 and the
+     * step, ruleset and initial slide of the solution.
+     */
+    static Solution load(SuperCC emulator, int levelNumber) throws IOException {
+        emulator.openLevelset(CHIPS);
+        emulator.setTWSFile(new File("./testData/tws/public_CHIPS.dac.tws"));
+        emulator.loadLevel(levelNumber);
+        Solution s = emulator.twsReader.readSolution(emulator.getLevel());
+        emulator.loadLevel(levelNumber, 0, s.step, false, s.ruleset, s.initialSlide);
+        return s;
+    }
+}
@@ -0,0 +1,47 @@
+package tools;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import emulator.TickFlags;
+import game.Level;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tools.ChipsSolutions.FLOORGASBORG;
+
+class OutcomeTrieTest {
+    private static final int SEEDS = 3000;
+
+    private final SuperCC emulator = new SuperCC(false);
+
+    private OutcomeTrie newTrie(Solution s, long maxBytes) {
+        emulator.loadLevel(FLOORGASBORG, 0, s.step, false, s.ruleset, s.initialSlide);
+        int rootMove = s.loadMovesUntilRng(emulator, TickFlags.LIGHT);
+        SuperCC own = new SuperCC(false); //each trie plays on its own level
+        own.setLevel(emulator.getLevel().fork());
+        return new OutcomeTrie(own, s, own.getLevel().save(), rootMove, Level::isCompleted, maxBytes);
+    }
+
+    @Test
+    void sameAsReplaying() throws Exception {
+        Solution s = ChipsSolutions.load(emulator, FLOORGASBORG);
+
+        boolean[] expected = new boolean[SEEDS];
+        for (int seed = 0; seed < SEEDS; seed++) {
+            emulator.loadLevel(FLOORGASBORG, seed, s.step, false, s.ruleset, s.initialSlide);
+            s.loadMoves(emulator, TickFlags.LIGHT, false);
+            expected[seed] = emulator.getLevel().isCompleted();
+        }
+
+        OutcomeTrie trie = newTrie(s, SeedSearchEngine.DEFAULT_OUTCOME_MEMORY);
+        OutcomeTrie plain = newTrie(s, 0);
+        for (int seed = 0; seed < SEEDS; seed++) {
+            assertEquals(expected[seed], trie.succeeds(seed), "seed " + seed);
+            assertEquals(expected[seed], plain.succeeds(seed), "seed " + seed);
+        }
+        assertTrue(trie.getBranches() > 0);
+        assertTrue(trie.getRuns() < SEEDS / 4, trie.getRuns() + " runs");
+        assertEquals(SEEDS, plain.getRuns());
+        assertEquals(0, plain.getBranches());
+    }
+}
@@ -0,0 +1,117 @@
+package tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeedBitmapTest {
+
+    private static SeedBitmap roundTrip(SeedBitmap bitmap) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.write(new DataOutputStream(bytes));
+        return SeedBitmap.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static void check(TreeSet<Integer> expected, SeedBitmap bitmap) {
+        assertEquals(expected.size(), bitmap.cardinality());
+        List<Integer> seeds = new ArrayList<>();
+        bitmap.forEach(seeds::add);
+        assertEquals(new ArrayList<>(expected), seeds);
+        for (int seed : expected)
+            assertTrue(bitmap.contains(seed));
+        int first = expected.isEmpty() ? -1 : expected.first();
+        assertEquals(first, bitmap.nextSeed(0));
+    }
+
+    @Test
+    void sparseAndDense() throws IOException {
+        Random random = new Random(1);
+        TreeSet<Integer> expected = new TreeSet<>();
+        SeedBitmap bitmap = new SeedBitmap();
+        for (int i = 0; i < 20000; i++) {         // sparse, across the whole range
+            int seed = random.nextInt(Integer.MAX_VALUE);
+            assertEquals(expected.add(seed), bitmap.add(seed));
+        }
+        for (int i = 0; i < 30000; i++) {         // dense enough to need a bitmap
+            int seed = 0x10000 + random.nextInt(0x10000);
+            assertEquals(expected.add(seed), bitmap.add(seed));
+        }
+        for (int seed = 0x30000; seed < 0x40000; seed += 2) //as many runs as seeds
+            expected.add(seed);
+        for (int seed = 0x30000; seed < 0x40000; seed += 2)
+            bitmap.add(seed);
+        check(expected, bitmap);
+        check(expected, roundTrip(bitmap));
+
+        for (int seed : new int[] {5, 0x10000, 0x3FFFF, Integer.MAX_VALUE - 1}) {
+            Integer next = expected.ceiling(seed);
+            assertEquals(next == null ? -1 : next, bitmap.nextSeed(seed));
+        }
+        assertFalse(bitmap.contains(-1));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+    }
+
+    @Test
+    void intersect() throws IOException {
+        Random random = new Random(2);
+        SeedBitmap a = new SeedBitmap(), b = new SeedBitmap();
+        TreeSet<Integer> inA = new TreeSet<>(), inB = new TreeSet<>();
+        for (int i = 0; i < 40000; i++) {
+            int seed = random.nextInt(0x40000);
+            (i % 2 == 0 ? inA : inB).add(seed);
+            (i % 2 == 0 ? a : b).add(seed);
+        }
+        a.addRange(0x50000, 0x6FFFF);
+        b.addRange(0x60000, 0x7FFFF);
+        inA.addAll(range(0x50000, 0x6FFFF));
+        inB.addAll(range(0x60000, 0x7FFFF));
+        TreeSet<Integer> both = new TreeSet<>(inA);
+        both.retainAll(inB);
+        check(both, a.and(b));
+        check(both, roundTrip(a).and(roundTrip(b)));
+    }
+
+    @Test
+    void runs() throws IOException {
+        TreeSet<Integer> expected = new TreeSet<>();
+        SeedBitmap bitmap = new SeedBitmap();
+        int[][] runs = {{0x20000, 0x20000}, {0x2003C, 0x20046}, {0x20080, 0x200BF}, {0x200C1, 0x21387},
+                {0x2FFFF - 5000, 0x2FFFF}, {0x4000A, 0x407D9}, {0x40800, 0x40800}};
+        for (int[] run : runs) {
+            bitmap.addRange(run[0], run[1]);
+            expected.addAll(range(run[0], run[1]));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.write(new DataOutputStream(bytes));
+        assertTrue(bytes.size() < 100, bytes.size() + " bytes"); //written as runs
+        check(expected, roundTrip(bitmap));
+    }
+
+    private static List<Integer> range(int first, int last) {
+        List<Integer> seeds = new ArrayList<>();
+        for (int seed = first; seed <= last; seed++)
+            seeds.add(seed);
+        return seeds;
+    }
+
+    @Test
+    void everySeed() throws IOException {
+        SeedBitmap bitmap = new SeedBitmap();
+        bitmap.add(12345);
+        bitmap.addRange(0, Integer.MAX_VALUE);
+        assertEquals(1L << 31, bitmap.cardinality());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.write(new DataOutputStream(bytes));
+        assertTrue(bytes.size() < 1 << 20, bytes.size() + " bytes");
+        SeedBitmap read = roundTrip(bitmap);
+        assertEquals(1L << 31, read.cardinality());
+        assertTrue(read.contains(Integer.MAX_VALUE));
+        assertEquals(1000, read.nextSeed(1000));
+    }
+}
@@ -0,0 +1,87 @@
+package tools;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tools.ChipsSolutions.FLOORGASBORG;
+
+class SeedSamplerTest {
+    private static final double SHARE = 0.25;
+
+    private final SuperCC emulator = new SuperCC(false);
+
+    private SeedSampler newSampler() throws Exception {
+        Solution s = ChipsSolutions.load(emulator, FLOORGASBORG);
+        SeedSampler sampler = new SeedSampler(emulator.getLevel(), s, null);
+        sampler.setRandomSeed(1);
+        return sampler;
+    }
+
+    @Test
+    void wilsonInterval() {
+        assertArrayEquals(new double[] {0, 1}, SeedSampler.wilsonInterval(0, 0));
+        assertArrayEquals(new double[] {0, 0.2775}, SeedSampler.wilsonInterval(0, 10), 1e-4);
+        assertArrayEquals(new double[] {0.4038, 0.5962}, SeedSampler.wilsonInterval(50, 100), 1e-4);
+        assertArrayEquals(new double[] {0.7225, 1}, SeedSampler.wilsonInterval(10, 10), 1e-4);
+    }
+
+    @Test
+    void sequentialTest() {
+        assertEquals(SeedSampler.Decision.UNDECIDED, SeedSampler.test(1, 2, 0.5, 0.05));
+        assertEquals(SeedSampler.Decision.ABOVE, SeedSampler.test(90, 100, 0.5, 0.05));
+        assertEquals(SeedSampler.Decision.BELOW, SeedSampler.test(10, 100, 0.5, 0.05));
+    }
+
+    @Test
+    void stopAtWidth() throws Exception {
+        SeedSampler sampler = newSampler();
+        sampler.setWidth(0.1);
+        sampler.run(2);
+        assertTrue(sampler.isConclusive());
+        assertTrue(sampler.getUpperBound() - sampler.getLowerBound() <= 0.1);
+        assertTrue(sampler.getLowerBound() < SHARE && SHARE < sampler.getUpperBound(),
+                sampler.getLowerBound() + " to " + sampler.getUpperBound());
+        assertEquals(SeedSampler.Decision.UNDECIDED, sampler.getDecision());
+    }
+
+    @Test
+    void stopAtThreshold() throws Exception {
+        SeedSampler sampler = newSampler();
+        sampler.setThreshold(0.5, 0.1);
+        sampler.run(1);
+        assertEquals(SeedSampler.Decision.BELOW, sampler.getDecision());
+        assertTrue(sampler.getSamples() < 200, sampler.getSamples() + " seeds");
+
+        SeedSampler capped = newSampler();
+        capped.setThreshold(SHARE, 0.01);
+        capped.setMaxSamples(100);
+        capped.run(1);
+        assertFalse(capped.isConclusive());
+        assertEquals(100, capped.getSamples());
+    }
+
+    @Test
+    void runOnExecutor() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2; i++) {
+                SeedSampler sampler = newSampler();
+                sampler.setWidth(0.2);
+                sampler.setMaxSamples(1000);
+                sampler.run(executor, 2);
+                assertTrue(sampler.isConclusive());
+                assertTrue(sampler.getSamples() <= 1000, sampler.getSamples() + " seeds");
+                assertTrue(sampler.getLowerBound() < SHARE && SHARE < sampler.getUpperBound(),
+                        sampler.getLowerBound() + " to " + sampler.getUpperBound());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
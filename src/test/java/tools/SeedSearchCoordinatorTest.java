@@ -0,0 +1,149 @@
+package tools;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tools.ChipsSolutions.CHIPS;
+import static tools.ChipsSolutions.SCOUNDREL;
+
+class SeedSearchCoordinatorTest {
+    private static final int LAST_SEED = 40 * SeedSearchEngine.CHUNK_SIZE - 1;
+    private static final long TIMEOUT_MILLIS = 3 * SeedSearchCoordinator.HEARTBEAT_MILLIS;
+
+    private final SuperCC emulator = new SuperCC(false);
+
+    private SeedSearchEngine newEngine() throws Exception {
+        Solution s = ChipsSolutions.load(emulator, SCOUNDREL);
+        return new SeedSearchEngine(emulator.getLevel(), s, null, 0, LAST_SEED);
+    }
+
+    private static List<Integer> seeds(SeedBitmap bitmap) {
+        List<Integer> seeds = new ArrayList<>();
+        bitmap.forEach(seeds::add);
+        return seeds;
+    }
+
+    private List<Integer> searchLocally() throws Exception {
+        SeedSearchEngine engine = newEngine();
+        engine.start(1);
+        engine.await();
+        return seeds(engine.getHits());
+    }
+
+    private static Process startWorker(int port) throws IOException {
+        String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "emulator.SuperCC",
+                "--seedworker", "localhost:" + port, "--threads", "1")
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    /**
+     * Connects to the coordinator as a worker and asks for one chunk.
+     * @return The chunk handed out.
+     */
+    private static int takeChunk(Socket socket) throws IOException {
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeInt(SeedSearchCoordinator.MAGIC);
+        out.writeInt(SeedSearchCoordinator.VERSION);
+        out.writeInt(1);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        in.readUTF();
+        in.skipNBytes(in.readInt());                    // levelset
+        in.readInt();                                   // level number
+        in.skipNBytes(in.readInt());                    // solution
+        in.readInt();                                   // goal
+        out.writeByte(SeedSearchCoordinator.REQUEST);
+        out.flush();
+        assertEquals(SeedSearchCoordinator.CHUNK, in.readByte());
+        return in.readInt();
+    }
+
+    /**
+     * Searches with worker processes, killing one of them part way through.
+     */
+    @Test
+    void workerProcesses() throws Exception {
+        SeedSearchEngine engine = newEngine();
+        try (SeedSearchCoordinator coordinator = new SeedSearchCoordinator(engine, CHIPS, 0, TIMEOUT_MILLIS)) {
+            List<Process> workers = new ArrayList<>();
+            for (int i = 0; i < 3; i++)
+                workers.add(startWorker(coordinator.getPort()));
+            long deadline = System.currentTimeMillis() + 60000;
+            while (engine.getAttempts() < 4 * SeedSearchEngine.CHUNK_SIZE && !engine.isFinished()) {
+                assertTrue(System.currentTimeMillis() < deadline, "workers never started searching");
+                Thread.sleep(10);
+            }
+            workers.get(0).destroyForcibly();
+            coordinator.await();
+            coordinator.close();
+
+            assertTrue(engine.isFinished());
+            assertEquals(LAST_SEED + 1, engine.getAttempts());
+            assertEquals(3, coordinator.getWorkers());
+            for (Process p : workers.subList(1, workers.size()))
+                assertEquals(0, p.waitFor(), "worker exit code");
+        }
+        assertEquals(searchLocally(), seeds(engine.getHits()));
+    }
+
+    /**
+     * A worker that takes a chunk and then goes quiet without disconnecting
+     * has its chunk handed to another worker once it times out.
+     */
+    @Test
+    void silentWorkerTimesOut() throws Exception {
+        SeedSearchEngine engine = newEngine();
+        try (SeedSearchCoordinator coordinator = new SeedSearchCoordinator(engine, CHIPS, 0, TIMEOUT_MILLIS);
+             Socket silent = new Socket("localhost", coordinator.getPort())) {
+            assertEquals(0, takeChunk(silent));
+
+            SeedSearchWorker worker = new SeedSearchWorker("localhost", coordinator.getPort(), 1, TIMEOUT_MILLIS);
+            worker.run();
+            assertTrue(engine.isFinished());
+            assertEquals(1, coordinator.getReassignedChunks());
+            assertEquals(40, worker.getChunks());
+        }
+        assertEquals(searchLocally(), seeds(engine.getHits()));
+    }
+
+    /**
+     * Local threads wait for the chunks still out with workers, and search
+     * a chunk given back by a worker that disconnects after they have run
+     * out of other chunks.
+     */
+    @Test
+    void localThreadsTakeLostChunk() throws Exception {
+        SeedSearchEngine engine = newEngine();
+        try (SeedSearchCoordinator coordinator = new SeedSearchCoordinator(engine, CHIPS, 0, TIMEOUT_MILLIS)) {
+            engine.start(1);
+            Socket lost = new Socket("localhost", coordinator.getPort());
+            takeChunk(lost);
+            long deadline = System.currentTimeMillis() + 60000;
+            while (engine.getAttempts() < LAST_SEED + 1 - SeedSearchEngine.CHUNK_SIZE) {
+                assertTrue(System.currentTimeMillis() < deadline, "local search never finished its chunks");
+                Thread.sleep(10);
+            }
+            assertFalse(engine.isFinished());
+            assertTrue(engine.isRunning(), "local thread stopped with a chunk still out");
+            lost.close();
+            assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+                coordinator.await();
+                engine.await();
+            });
+            assertTrue(engine.isFinished());
+            assertEquals(LAST_SEED + 1, engine.getAttempts());
+            assertEquals(1, coordinator.getReassignedChunks());
+        }
+        assertEquals(searchLocally(), seeds(engine.getHits()));
+    }
+}
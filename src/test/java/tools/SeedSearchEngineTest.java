@@ -0,0 +1,108 @@
+package tools;
+
+import emulator.Solution;
+import emulator.SuperCC;
+import emulator.TickFlags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tools.ChipsSolutions.FLOORGASBORG;
+
+class SeedSearchEngineTest {
+    private static final int LAST_SEED = 2999;
+
+    private final SuperCC emulator = new SuperCC(false);
+
+    private Solution loadSolution() throws Exception {
+        return ChipsSolutions.load(emulator, FLOORGASBORG);
+    }
+
+    /**
+     * @return The seeds the solution works with, found by playing it from the
+     * start for every seed.
+     */
+    private List<Integer> replayEverySeed(Solution s) {
+        List<Integer> seeds = new ArrayList<>();
+        for (int seed = 0; seed <= LAST_SEED; seed++) {
+            emulator.loadLevel(FLOORGASBORG, seed, s.step, false, s.ruleset, s.initialSlide);
+            s.loadMoves(emulator, TickFlags.LIGHT, false);
+            if (emulator.getLevel().isCompleted())
+                seeds.add(seed);
+        }
+        return seeds;
+    }
+
+    private static List<Integer> seeds(SeedBitmap bitmap) {
+        List<Integer> seeds = new ArrayList<>();
+        bitmap.forEach(seeds::add);
+        return seeds;
+    }
+
+    @Test
+    void findSeeds() throws Exception {
+        Solution s = loadSolution();
+        SeedSearchEngine engine = new SeedSearchEngine(emulator.getLevel(), s, null, 0, LAST_SEED);
+        List<Long> reports = new ArrayList<>();
+        engine.setProgressListener(e -> {
+            synchronized (reports) {
+                reports.add(e.getAttempts());
+            }
+        }, 0);
+        engine.start(3);
+        engine.await();
+
+        assertTrue(engine.isFinished());
+        assertFalse(engine.isRunning());
+        assertEquals(LAST_SEED + 1, engine.getAttempts());
+        List<Integer> expected = replayEverySeed(s);
+        assertFalse(expected.isEmpty());
+        assertTrue(expected.size() <= LAST_SEED / 2);
+        assertEquals(expected, seeds(engine.getHits()));
+        assertEquals(expected.size(), engine.getSuccesses());
+        assertTrue(expected.contains(engine.getLastSuccess()));
+        synchronized (reports) {
+            assertEquals(LAST_SEED + 1, reports.get(reports.size() - 1));
+        }
+    }
+
+    @Test
+    void resumeFromCheckpoint(@TempDir File dir) throws Exception {
+        Solution s = loadSolution();
+        File checkpoint = new File(dir, "search.checkpoint");
+        SeedSearchEngine first = new SeedSearchEngine(emulator.getLevel(), s, null, 0, LAST_SEED);
+        first.setCheckpoint(checkpoint, 0);
+        first.start(1);
+        first.stop();
+        first.await();
+        assertTrue(checkpoint.exists());
+
+        SeedSearchEngine other = new SeedSearchEngine(emulator.getLevel(), s, null, 1, LAST_SEED);
+        assertFalse(other.resume(checkpoint));
+        SuperCC otherSet = new SuperCC(false);
+        otherSet.openLevelset(new File("./testData/sets/CCLP1.DAT"));
+        otherSet.loadLevel(FLOORGASBORG, 0, s.step, false, s.ruleset, s.initialSlide);
+        SeedSearchEngine otherLevel = new SeedSearchEngine(otherSet.getLevel(), s, null, 0, LAST_SEED);
+        assertFalse(otherLevel.resume(checkpoint));
+
+        SeedSearchEngine second = new SeedSearchEngine(emulator.getLevel(), s, null, 0, LAST_SEED);
+        assertTrue(second.resume(checkpoint));
+        assertEquals(first.getAttempts(), second.getAttempts());
+        second.setCheckpoint(checkpoint, 0);
+        second.start(2);
+        second.await();
+        assertTrue(second.isFinished());
+        assertEquals(LAST_SEED + 1, second.getAttempts());
+        assertEquals(replayEverySeed(s), seeds(second.getHits()));
+
+        emulator.loadLevel(FLOORGASBORG, 0, s.step, false, s.ruleset, s.initialSlide);
+        SeedSearchEngine done = new SeedSearchEngine(emulator.getLevel(), s, null, 0, LAST_SEED);
+        assertTrue(done.resume(checkpoint));
+        assertTrue(done.isFinished());
+        assertEquals(seeds(second.getHits()), seeds(done.getHits()));
+    }
+}
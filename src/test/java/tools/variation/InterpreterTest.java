@@ -442,6 +442,18 @@ class InterpreterTest {
                 "1" + newLine + "1" + newLine + "1" + newLine + "1" + newLine + "true" + newLine + "true" + newLine + "true" + newLine + "true"));
     }
 
+    @Test
+    void successRate() {
+        emulator.loadLevel(1);
+        String code = "print successRate(); print successRate(0.2); [u](){}";
+
+        Interpreter interpreter = new Interpreter(emulator, variationTesting, console, code);
+        interpreter.interpret();
+        String consoleText = console.getText();
+
+        assertTrue(consoleText.contains("1" + newLine + "1" + newLine));
+    }
+
     @Test
     void deathHandling() {
         emulator.loadLevel(3);